@@ -4,6 +4,7 @@ import com.life.master_api.security.JwtAuthenticationEntryPoint;
 import com.life.master_api.security.JwtAuthenticationFilter;
 import com.life.master_api.security.JwtTokenProvider;
 import com.life.master_api.security.CustomUserDetailsService;
+import com.life.master_api.security.UserPrincipalCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -26,18 +27,21 @@ public class SecurityConfig {
     private final JwtAuthenticationEntryPoint authenticationEntryPoint;
     private final JwtTokenProvider tokenProvider;
     private final CustomUserDetailsService customUserDetailsService;
+    private final UserPrincipalCache principalCache;
 
     public SecurityConfig(JwtAuthenticationEntryPoint authenticationEntryPoint,
                          JwtTokenProvider tokenProvider,
-                         CustomUserDetailsService customUserDetailsService) {
+                         CustomUserDetailsService customUserDetailsService,
+                         UserPrincipalCache principalCache) {
         this.authenticationEntryPoint = authenticationEntryPoint;
         this.tokenProvider = tokenProvider;
         this.customUserDetailsService = customUserDetailsService;
+        this.principalCache = principalCache;
     }
 
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
-        return new JwtAuthenticationFilter(tokenProvider, customUserDetailsService);
+        return new JwtAuthenticationFilter(tokenProvider, customUserDetailsService, principalCache);
     }
 
     @Bean
@@ -6,7 +6,7 @@ import com.life.master_api.dto.RegisterDto;
 import com.life.master_api.entities.User;
 import com.life.master_api.repositories.UserRepository;
 import com.life.master_api.security.JwtTokenProvider;
-import com.life.master_api.services.SampleDataService;
+import com.life.master_api.services.SampleDataSeedingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
@@ -33,18 +33,18 @@ public class AuthController {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider tokenProvider;
-    private final SampleDataService sampleDataService;
+    private final SampleDataSeedingService seedingService;
 
     public AuthController(AuthenticationManager authenticationManager,
                           UserRepository userRepository,
                           PasswordEncoder passwordEncoder,
                           JwtTokenProvider tokenProvider,
-                          SampleDataService sampleDataService) {
+                          SampleDataSeedingService seedingService) {
         this.authenticationManager = authenticationManager;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.tokenProvider = tokenProvider;
-        this.sampleDataService = sampleDataService;
+        this.seedingService = seedingService;
     }
 
     @PostMapping("/login")
@@ -90,16 +90,9 @@ public class AuthController {
         user.setPassword(passwordEncoder.encode(registerDto.getPassword()));
         user.setCreatedAt(new Date());
 
-        User savedUser = userRepository.save(user);
-        
-        // Crear datos de ejemplo para el nuevo usuario
-        try {
-            sampleDataService.createSampleDataForUser(savedUser);
-        } catch (Exception e) {
-            System.err.println("Error creando datos de ejemplo para usuario " + savedUser.getUsername() + ": " + e.getMessage());
-            // No fallar el registro si hay error creando datos de ejemplo
-        }
+        // Los datos de ejemplo se crean en segundo plano; su estado se consulta en /users/me/sample-data
+        seedingService.register(user);
 
-        return new ResponseEntity<>("User registered successfully with sample data", HttpStatus.CREATED);
+        return new ResponseEntity<>("User registered successfully; sample data is being created", HttpStatus.CREATED);
     }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.life.master_api.controllers;
+
+import com.life.master_api.dto.BatchItemResult;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cuerpo de respuesta común de los endpoints {@code /batch}: un resultado por
+ * operación y los totales de éxitos y fallos.
+ */
+final class BatchResponses {
+
+    private BatchResponses() {
+    }
+
+    static Map<String, Object> of(List<BatchItemResult> results) {
+        long succeeded = results.stream().filter(BatchItemResult::succeeded).count();
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", results);
+        response.put("succeeded", succeeded);
+        response.put("failed", results.size() - succeeded);
+        return response;
+    }
+}
@@ -1,18 +1,24 @@
 package com.life.master_api.controllers;
 
+import com.life.master_api.dto.BatchOperation;
+import com.life.master_api.dto.TypeaheadItem;
 import com.life.master_api.entities.Category;
 import com.life.master_api.entities.CategoryHistory;
 import com.life.master_api.entities.Habit;
 import com.life.master_api.entities.Note;
 import com.life.master_api.entities.Task;
 import com.life.master_api.entities.User;
-import com.life.master_api.exceptions.ResourceNotFoundException;
-import com.life.master_api.repositories.CategoryHistoryRepository;
 import com.life.master_api.repositories.CategoryRepository;
 import com.life.master_api.repositories.HabitRepository;
+import com.life.master_api.repositories.KeysetPage;
+import com.life.master_api.repositories.KeysetRequest;
 import com.life.master_api.repositories.NoteRepository;
 import com.life.master_api.repositories.TaskRepository;
-import com.life.master_api.repositories.UserRepository;
+import com.life.master_api.repositories.Typeahead;
+import com.life.master_api.security.CurrentUser;
+import com.life.master_api.services.BatchService;
+import com.life.master_api.services.EntityHistoryService;
+import com.life.master_api.services.TypeaheadService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -26,8 +32,6 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.*;
@@ -40,44 +44,51 @@ import java.util.stream.Collectors;
 public class CategoryController {
 
     private final CategoryRepository categoryRepository;
-    private final CategoryHistoryRepository categoryHistoryRepository;
     private final TaskRepository taskRepository;
     private final NoteRepository noteRepository;
     private final HabitRepository habitRepository;
-    private final UserRepository userRepository;
+    private final EntityHistoryService historyService;
+    private final BatchService batchService;
+    private final TypeaheadService typeaheadService;
 
     public CategoryController(CategoryRepository categoryRepository,
-                                CategoryHistoryRepository categoryHistoryRepository,
                                 TaskRepository taskRepository,
                                 NoteRepository noteRepository,
                                 HabitRepository habitRepository,
-                                UserRepository userRepository) {
+                                EntityHistoryService historyService,
+                                BatchService batchService,
+                                TypeaheadService typeaheadService) {
         this.categoryRepository = categoryRepository;
-        this.categoryHistoryRepository = categoryHistoryRepository;
         this.taskRepository = taskRepository;
         this.noteRepository = noteRepository;
         this.habitRepository = habitRepository;
-        this.userRepository = userRepository;
-    }
-    
-    // Método para obtener el usuario autenticado actual
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", authentication.getName()));
+        this.historyService = historyService;
+        this.batchService = batchService;
+        this.typeaheadService = typeaheadService;
     }
 
     @Operation(summary = "Obtener todas las categorías del usuario autenticado")
     @ApiResponse(responseCode = "200", description = "Lista de categorías obtenida exitosamente")
     @GetMapping
     public ResponseEntity<Map<String, Object>> getAllCategories(
+            @CurrentUser User currentUser,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDir) {
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @Parameter(description = "Cursor opaco devuelto como nextCursor; activa la paginación por cursor")
+            @RequestParam(required = false) String after,
+            @Parameter(description = "Tamaño de página en modo cursor (máx. " + KeysetRequest.MAX_LIMIT + ")")
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
         
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
+        // Modo cursor: evita OFFSET y el count(*) salvo que se pida el total
+        if (after != null || limit != null) {
+            KeysetRequest request = KeysetRequest.of(after, limit != null ? limit : size, sortBy, sortDir);
+            KeysetPage<Category> cursorPage = categoryRepository.findByUser(currentUser, request);
+            return ResponseEntity.ok(CursorResponses.of(cursorPage, request.limit(), includeTotal,
+                    () -> categoryRepository.countByUser(currentUser)));
+        }
         
         Sort sort = sortDir.equalsIgnoreCase(Sort.Direction.ASC.name()) ? 
                 Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
@@ -94,16 +105,32 @@ public class CategoryController {
         return ResponseEntity.ok(response);
     }
 
+    @Operation(summary = "Autocompletar categorías del usuario autenticado por nombre",
+            description = "Pensado para llamarse en cada pulsación: devuelve sólo id y nombre (label) de las mejores "
+                    + "coincidencias, primero las que empiezan por el texto y, desde " + Typeahead.MIN_FUZZY_LENGTH
+                    + " caracteres, también las parecidas (tolera erratas) con el motor postgres y pg_trgm. "
+                    + "No calcula el total")
+    @ApiResponse(responseCode = "200", description = "Coincidencias ordenadas por relevancia")
+    @GetMapping("/typeahead")
+    public ResponseEntity<List<TypeaheadItem>> typeaheadCategories(
+            @CurrentUser User currentUser,
+            @Parameter(description = "Texto escrito hasta ahora") @RequestParam String q,
+            @Parameter(description = "Máximo de resultados (máx. " + Typeahead.MAX_LIMIT + ")")
+            @RequestParam(defaultValue = "10") int limit) {
+        String text = q.trim();
+        if (text.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+        return ResponseEntity.ok(typeaheadService.categories(currentUser, text, limit));
+    }
+
     @Operation(summary = "Obtener una categoría por ID del usuario autenticado")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Categoría encontrada"),
             @ApiResponse(responseCode = "404", description = "Categoría no encontrada o no pertenece al usuario")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<Category> getCategoryById(@Parameter(description = "ID de la categoría a obtener") @PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Category> getCategoryById(@CurrentUser User currentUser, @Parameter(description = "ID de la categoría a obtener") @PathVariable Long id) {
         return categoryRepository.findByIdAndUser(id, currentUser)
                 .map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
@@ -113,15 +140,13 @@ public class CategoryController {
     @ApiResponse(responseCode = "200", description = "Lista de categorías que coinciden con el nombre")
     @GetMapping("/search/by-name")
     public ResponseEntity<Map<String, Object>> getCategoriesByName(
+            @CurrentUser User currentUser,
             @Parameter(description = "Nombre a buscar en categorías") @RequestParam String name,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDir) {
         
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         Sort sort = sortDir.equalsIgnoreCase(Sort.Direction.ASC.name()) ? 
                 Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
         
@@ -143,16 +168,23 @@ public class CategoryController {
             @ApiResponse(responseCode = "400", description = "Solicitud inválida")
     })
     @PostMapping
-    public ResponseEntity<Category> createCategory(@Valid @RequestBody Category category) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Category> createCategory(@CurrentUser User currentUser, @Valid @RequestBody Category category) {
         category.setUser(currentUser);
         category.setCreation(new Date());
         Category savedCategory = categoryRepository.save(category);
         return new ResponseEntity<>(savedCategory, HttpStatus.CREATED);
     }
 
+    @Operation(summary = "Crear, actualizar o eliminar categorías en lote",
+            description = "Aplica una lista de operaciones CREATE, UPDATE (parcial, como PATCH) o DELETE en una sola transacción. "
+                    + "Devuelve un resultado por operación; las que fallan por datos inválidos o por no encontrar la entidad no impiden las demás")
+    @ApiResponse(responseCode = "200", description = "Lote procesado; ver el estado de cada operación")
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> batchCategories(@CurrentUser User currentUser,
+                                                               @RequestBody List<BatchOperation<Category>> operations) {
+        return ResponseEntity.ok(BatchResponses.of(batchService.applyCategories(currentUser, operations)));
+    }
+
     @Operation(summary = "Actualizar una categoría existente del usuario autenticado (reemplazo completo)")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Categoría actualizada exitosamente"),
@@ -160,22 +192,21 @@ public class CategoryController {
             @ApiResponse(responseCode = "400", description = "Solicitud inválida")
     })
     @PutMapping("/{id}")
-    public ResponseEntity<Category> updateCategory(@Parameter(description = "ID de la categoría a actualizar") @PathVariable Long id,
+    public ResponseEntity<Category> updateCategory(@CurrentUser User currentUser, @Parameter(description = "ID de la categoría a actualizar") @PathVariable Long id,
                                                   @Valid @RequestBody Category categoryDetails) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         return categoryRepository.findByIdAndUser(id, currentUser)
                 .map(existingCategory -> {
-                    // Save history before update
-                    saveCategoryHistory(existingCategory);
+                    // Captura la versión actual; sólo se guarda si la actualización cambia algo
+                    EntityHistoryService.PendingVersion version = historyService.captureCategory(existingCategory, currentUser);
 
                     existingCategory.setName(categoryDetails.getName());
                     existingCategory.setDescription(categoryDetails.getDescription());
                     // Mantener el usuario actual
                     existingCategory.setUser(currentUser);
-                    Category updatedCategory = categoryRepository.save(existingCategory);
-                    return ResponseEntity.ok(updatedCategory);
+                    // la versión se registra una vez guardada la entidad
+                    return version.saveIfChanged(() -> categoryRepository.save(existingCategory))
+                            .map(ResponseEntity::ok)
+                            .orElseGet(() -> ResponseEntity.ok(existingCategory)); // sin cambios: ni historial ni UPDATE
                 })
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
@@ -186,15 +217,12 @@ public class CategoryController {
             @ApiResponse(responseCode = "404", description = "Categoría no encontrada o no pertenece al usuario")
     })
     @PatchMapping("/{id}")
-    public ResponseEntity<Category> patchCategory(@Parameter(description = "ID de la categoría a actualizar") @PathVariable Long id,
+    public ResponseEntity<Category> patchCategory(@CurrentUser User currentUser, @Parameter(description = "ID de la categoría a actualizar") @PathVariable Long id,
                                                  @RequestBody Category categoryDetails) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         return categoryRepository.findByIdAndUser(id, currentUser)
                 .map(existingCategory -> {
-                    // Save history before update
-                    saveCategoryHistory(existingCategory);
+                    // Captura la versión actual; sólo se guarda si la actualización cambia algo
+                    EntityHistoryService.PendingVersion version = historyService.captureCategory(existingCategory, currentUser);
 
                     if (categoryDetails.getName() != null) {
                         existingCategory.setName(categoryDetails.getName());
@@ -204,8 +232,10 @@ public class CategoryController {
                     }
                     // Mantener el usuario actual
                     existingCategory.setUser(currentUser);
-                    Category patchedCategory = categoryRepository.save(existingCategory);
-                    return ResponseEntity.ok(patchedCategory);
+                    // la versión se registra una vez guardada la entidad
+                    return version.saveIfChanged(() -> categoryRepository.save(existingCategory))
+                            .map(ResponseEntity::ok)
+                            .orElseGet(() -> ResponseEntity.ok(existingCategory)); // sin cambios: ni historial ni UPDATE
                 })
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
@@ -216,12 +246,10 @@ public class CategoryController {
             @ApiResponse(responseCode = "404", description = "Categoría no encontrada o no pertenece al usuario")
     })
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteCategory(@Parameter(description = "ID de la categoría a eliminar") @PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> deleteCategory(@CurrentUser User currentUser, @Parameter(description = "ID de la categoría a eliminar") @PathVariable Long id) {
         return categoryRepository.findByIdAndUser(id, currentUser)
                 .map(category -> {
+                    historyService.awaitPending(category); // que no quede una versión suya por escribir
                     categoryRepository.delete(category);
                     return new ResponseEntity<Void>(HttpStatus.NO_CONTENT);
                 })
@@ -233,56 +261,28 @@ public class CategoryController {
     @Operation(summary = "Obtener todas las tareas de una categoría del usuario autenticado")
     @GetMapping("/{id}/tasks")
     public ResponseEntity<Map<String, Object>> getCategoryTasks(
+            @CurrentUser User currentUser,
             @PathVariable Long id,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDir) {
         
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         Optional<Category> categoryOpt = categoryRepository.findByIdAndUser(id, currentUser);
         if (!categoryOpt.isPresent()) {
             return ResponseEntity.notFound().build();
         }
         
-        Category category = categoryOpt.get();
-        List<Task> tasks = new ArrayList<>(category.getTasks());
-        
-        // Aplicar ordenamiento
-        Comparator<Task> comparator;
-        if (sortBy.equals("id")) {
-            comparator = Comparator.comparing(Task::getId);
-        } else if (sortBy.equals("title")) {
-            comparator = Comparator.comparing(Task::getTitle);
-        } else if (sortBy.equals("creation")) {
-            comparator = Comparator.comparing(Task::getCreation);
-        } else {
-            comparator = Comparator.comparing(Task::getId);
-        }
-        
-        if (sortDir.equalsIgnoreCase("desc")) {
-            comparator = comparator.reversed();
-        }
-        
-        tasks.sort(comparator);
-        
-        // Aplicar paginación
-        int totalItems = tasks.size();
-        int totalPages = (int) Math.ceil((double) totalItems / size);
-        
-        int fromIndex = page * size;
-        int toIndex = Math.min(fromIndex + size, totalItems);
-        
-        List<Task> pagedTasks = fromIndex < totalItems ? 
-                tasks.subList(fromIndex, toIndex) : new ArrayList<>();
+        // Paginación y ordenamiento en la base de datos, sin cargar la colección completa
+        Pageable pageable = PageRequest.of(page, size,
+                SortSupport.whitelisted(sortBy, sortDir, SortSupport.TASK_SORT_FIELDS));
+        Page<Task> taskPage = taskRepository.findByCategoryAndUser(categoryOpt.get(), currentUser, pageable);
         
         Map<String, Object> response = new HashMap<>();
-        response.put("content", pagedTasks);
-        response.put("currentPage", page);
-        response.put("totalItems", totalItems);
-        response.put("totalPages", totalPages);
+        response.put("content", taskPage.getContent());
+        response.put("currentPage", taskPage.getNumber());
+        response.put("totalItems", taskPage.getTotalElements());
+        response.put("totalPages", taskPage.getTotalPages());
         
         return ResponseEntity.ok(response);
     }
@@ -403,54 +403,33 @@ public class CategoryController {
 
     @Operation(summary = "Obtener el historial de versiones de una categoría")
     @GetMapping("/{id}/history")
-    public ResponseEntity<List<CategoryHistory>> getCategoryHistory(@Parameter(description = "ID de la categoría") @PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<List<CategoryHistory>> getCategoryHistory(@CurrentUser User currentUser, @Parameter(description = "ID de la categoría") @PathVariable Long id) {
         // Verificar que la categoría pertenece al usuario autenticado
         Optional<Category> categoryOpt = categoryRepository.findByIdAndUser(id, currentUser);
         if (!categoryOpt.isPresent()) {
             return ResponseEntity.notFound().build();
         }
         
-        List<CategoryHistory> history = categoryHistoryRepository.findByCategory_IdAndUserOrderByVersionIdDesc(id, currentUser);
+        historyService.awaitPending(categoryOpt.get()); // para ver también la última edición
+        List<CategoryHistory> history = historyService.getCategoryHistory(id);
         return ResponseEntity.ok(history);
     }
 
     @Operation(summary = "Obtener una versión específica del historial de una categoría")
     @GetMapping("/{id}/history/{versionId}")
     public ResponseEntity<CategoryHistory> getCategoryHistoryByVersion(
+            @CurrentUser User currentUser,
             @Parameter(description = "ID de la categoría") @PathVariable Long id,
             @Parameter(description = "ID de la versión del historial") @PathVariable Long versionId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         // Verificar que la categoría pertenece al usuario autenticado
         Optional<Category> categoryOpt = categoryRepository.findByIdAndUser(id, currentUser);
         if (!categoryOpt.isPresent()) {
             return ResponseEntity.notFound().build();
         }
         
-        List<CategoryHistory> historyVersion = categoryHistoryRepository.findByCategory_IdAndVersionIdAndUser(id, versionId, currentUser);
-        if (!historyVersion.isEmpty()) {
-            return ResponseEntity.ok(historyVersion.get(0)); // Assuming versionId is unique for each category
-        } else {
-            return ResponseEntity.notFound().build();
-        }
-    }
-
-
-    private void saveCategoryHistory(Category category) {
-        CategoryHistory history = new CategoryHistory();
-        history.setCategory(category);
-        history.setUser(getCurrentUser()); // Assign current user for data isolation
-        history.setName(category.getName());
-        history.setDescription(category.getDescription());
-        history.setCreation(category.getCreation());
-        history.setTimestamp(new Date()); // Current timestamp
-        // You might want to implement a more robust versioning logic here, e.g., incrementing versionId
-        // For simplicity, we are not setting versionId for now, you can add a version counter if needed.
-
-        categoryHistoryRepository.save(history);
+        historyService.awaitPending(categoryOpt.get()); // para ver también la última edición
+        return historyService.getCategoryVersion(id, versionId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.life.master_api.controllers;
+
+import com.life.master_api.repositories.KeysetPage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Cuerpo de respuesta común de los listados en modo cursor
+ * ({@code ?after=&limit=}). El total sólo se calcula si se pide con
+ * {@code includeTotal=true}, ya que exige un {@code count(*)} adicional.
+ */
+final class CursorResponses {
+
+    private CursorResponses() {
+    }
+
+    static Map<String, Object> of(KeysetPage<?> page, int limit, boolean includeTotal, LongSupplier totalItems) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("content", page.content());
+        response.put("nextCursor", page.nextCursor());
+        response.put("hasMore", page.hasMore());
+        response.put("limit", limit);
+        if (includeTotal) {
+            response.put("totalItems", totalItems.getAsLong());
+        }
+        return response;
+    }
+}
@@ -1,30 +1,34 @@
 package com.life.master_api.controllers;
 
 import com.life.master_api.dto.FileAttachmentDto;
+import com.life.master_api.dto.FileAttachmentSummary;
 import com.life.master_api.entities.FileAttachment;
+import com.life.master_api.entities.FileThumbnail;
 import com.life.master_api.entities.User;
 import com.life.master_api.exceptions.ResourceNotFoundException;
 import com.life.master_api.repositories.FileAttachmentRepository;
-import com.life.master_api.repositories.UserRepository;
+import com.life.master_api.security.CurrentUser;
+import com.life.master_api.services.FileAttachmentService;
+import com.life.master_api.services.ThumbnailService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @RestController
@@ -37,31 +41,23 @@ public class FileAttachmentController {
     private FileAttachmentRepository fileAttachmentRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private FileAttachmentService fileAttachmentService;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
 
     @PostMapping("/upload")
     @Operation(summary = "Upload file", description = "Upload a file and attach it to an entity")
     public ResponseEntity<FileAttachmentDto> uploadFile(
+            @CurrentUser User user,
             @RequestParam("file") MultipartFile file,
             @RequestParam("entityType") String entityType,
             @RequestParam("entityId") Long entityId) throws IOException {
 
-        // Get current authenticated user
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", authentication.getName()));
-
-        FileAttachment fileAttachment = new FileAttachment();
-        fileAttachment.setOriginalFileName(file.getOriginalFilename());
-        fileAttachment.setFileType(file.getContentType());
-        fileAttachment.setFileSize(file.getSize());
-        fileAttachment.setUploadDate(new Date()); // Usar java.util.Date en lugar de LocalDateTime
-        fileAttachment.setFileData(file.getBytes());
-        fileAttachment.setEntityType(entityType);
-        fileAttachment.setEntityId(entityId);
-        fileAttachment.setUser(user);
-
-        FileAttachment savedFile = fileAttachmentRepository.save(fileAttachment);
+        // El contenido se copia por streaming desde el multipart, sin file.getBytes()
+        FileAttachment savedFile = fileAttachmentService.store(user, file, entityType, entityId);
+        // Las miniaturas de las imágenes se generan en segundo plano
+        thumbnailService.scheduleFor(savedFile);
 
         // Convertir Date a LocalDateTime para el DTO
         LocalDateTime uploadDateTime = savedFile.getUploadDate() != null ? 
@@ -85,19 +81,15 @@ public class FileAttachmentController {
     @GetMapping("/entity/{entityType}/{entityId}")
     @Operation(summary = "Get files by entity", description = "Get all files attached to a specific entity")
     public ResponseEntity<List<FileAttachmentDto>> getFilesByEntity(
+            @CurrentUser User user,
             @PathVariable String entityType,
             @PathVariable Long entityId) {
 
-        // Get current authenticated user
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", authentication.getName()));
 
-        List<FileAttachment> files = fileAttachmentRepository.findByEntityTypeAndEntityIdAndUser(entityType, entityId, user);
+        // Proyección con sólo metadatos: no se lee el contenido de los archivos
+        List<FileAttachmentSummary> files = fileAttachmentRepository
+                .findSummariesByEntityTypeAndEntityIdAndUserOrderByIdAsc(entityType, entityId, user);
 
-        // Agregar log para depuración
-        System.out.println("Archivos encontrados: " + files.size());
-        
         List<FileAttachmentDto> fileAttachmentDtos = files.stream()
                 .map(file -> {
                     // Convertir Date a LocalDateTime para el DTO
@@ -122,34 +114,135 @@ public class FileAttachmentController {
     }
 
     @GetMapping("/download/{fileId}")
-    @Operation(summary = "Download file", description = "Download a file by its ID")
-    public ResponseEntity<Resource> downloadFile(@PathVariable Long fileId) {
-        // Get current authenticated user
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", authentication.getName()));
+    @Operation(summary = "Download file", description = "Download a file by its ID. Supports single byte ranges (Range/If-Range) and conditional requests (If-None-Match/If-Modified-Since)")
+    public ResponseEntity<StreamingResponseBody> downloadFile(@CurrentUser User user,
+                                                              @PathVariable Long fileId,
+                                                              @RequestHeader HttpHeaders requestHeaders,
+                                                              WebRequest webRequest) {
 
         FileAttachment fileAttachment = fileAttachmentRepository.findByIdAndUser(fileId, user)
                 .orElseThrow(() -> new ResourceNotFoundException("File", "id", fileId));
 
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(fileAttachment.getFileType()))
+        // ETag fuerte a partir del hash del contenido (los adjuntos sin migrar no lo tienen)
+        String eTag = fileAttachment.getContentHash() != null ? "\"" + fileAttachment.getContentHash() + "\"" : null;
+        long lastModified = fileAttachment.getUploadDate().getTime();
+        long length = fileAttachment.getFileSize();
+
+        // 304 sin tocar el almacenamiento si el cliente ya tiene esta versión
+        if (webRequest.checkNotModified(eTag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
+        // Un único rango: 206 leyendo sólo ese tramo. Varios rangos se responden con el archivo completo
+        List<HttpRange> ranges;
+        try {
+            ranges = rangeApplies(requestHeaders, eTag, lastModified) ? requestHeaders.getRange() : List.of();
+        } catch (IllegalArgumentException e) {
+            ranges = List.of();
+        }
+
+        long start = 0;
+        long count = length;
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (ranges.size() == 1) {
+            long end;
+            try {
+                start = ranges.get(0).getRangeStart(length);
+                end = ranges.get(0).getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                start = length;
+                end = length - 1;
+            }
+            // HttpRange no rechaza un inicio más allá del final (p. ej. bytes=100- de un archivo de 100 bytes)
+            if (start >= length || end < start) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                        .build();
+            }
+            count = end - start + 1;
+            response = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+
+        response.contentType(MediaType.parseMediaType(fileAttachment.getFileType()))
+                .contentLength(count)
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileAttachment.getOriginalFileName() + "\"")
-                .body(new ByteArrayResource(fileAttachment.getFileData()));
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .lastModified(lastModified);
+        if (eTag != null) {
+            response.eTag(eTag);
+        }
+
+        // El contenido se envía por bloques de tamaño fijo, no como un byte[] completo
+        long position = start;
+        long size = count;
+        StreamingResponseBody body = out -> fileAttachmentService.writeContent(fileAttachment, position, size, out);
+        return response.body(body);
+    }
+
+    @GetMapping("/{fileId}/thumbnail/{size}")
+    @Operation(summary = "Get thumbnail", description = "Get a resized preview of an image attachment. Size is the longest side in pixels (128, 256 or 512 by default)")
+    public ResponseEntity<StreamingResponseBody> getThumbnail(@CurrentUser User user,
+                                                              @PathVariable Long fileId,
+                                                              @PathVariable int size,
+                                                              WebRequest webRequest) {
+
+        FileAttachment fileAttachment = fileAttachmentRepository.findByIdAndUser(fileId, user)
+                .orElseThrow(() -> new ResourceNotFoundException("File", "id", fileId));
+
+        FileThumbnail thumbnail = thumbnailService.getThumbnail(fileAttachment, size).orElse(null);
+        if (thumbnail == null) {
+            // todavía generándose: el cliente puede reintentar en unos segundos
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .build();
+        }
+
+        // Un adjunto nunca cambia de contenido, así que su miniatura puede cachearse indefinidamente
+        String eTag = "\"" + thumbnail.getContentHash() + "\"";
+        CacheControl cacheControl = CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable();
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+        }
+
+        StreamingResponseBody body = out -> thumbnailService.writeContent(thumbnail, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(thumbnail.getContentType()))
+                .contentLength(thumbnail.getByteSize())
+                .cacheControl(cacheControl)
+                .eTag(eTag)
+                .body(body);
+    }
+
+    /**
+     * If-Range: el rango sólo se respeta si el cliente tiene la versión actual; si no,
+     * se envía el archivo completo.
+     */
+    private boolean rangeApplies(HttpHeaders requestHeaders, String eTag, long lastModified) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(eTag);
+        }
+        try {
+            // las fechas HTTP tienen precisión de segundos
+            return requestHeaders.getFirstDate(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
     }
 
     @DeleteMapping("/{fileId}")
     @Operation(summary = "Delete file", description = "Delete a file by its ID")
-    public ResponseEntity<String> deleteFile(@PathVariable Long fileId) {
-        // Get current authenticated user
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", authentication.getName()));
+    public ResponseEntity<String> deleteFile(@CurrentUser User user, @PathVariable Long fileId) {
 
         FileAttachment fileAttachment = fileAttachmentRepository.findByIdAndUser(fileId, user)
                 .orElseThrow(() -> new ResourceNotFoundException("File", "id", fileId));
 
-        fileAttachmentRepository.delete(fileAttachment);
+        fileAttachmentService.delete(fileAttachment);
 
         return ResponseEntity.ok("File deleted successfully");
     }
@@ -1,20 +1,23 @@
 package com.life.master_api.controllers;
 
+import com.life.master_api.dto.BatchOperation;
 import com.life.master_api.entities.Category;
 import com.life.master_api.entities.Habit;
 import com.life.master_api.entities.HabitHistory;
 import com.life.master_api.entities.Note;
 import com.life.master_api.entities.Task;
 import com.life.master_api.entities.User;
-import com.life.master_api.exceptions.ResourceNotFoundException;
 import com.life.master_api.repositories.CategoryRepository;
 import com.life.master_api.repositories.HabitHistoryRepository;
 import com.life.master_api.repositories.HabitRepository;
+import com.life.master_api.repositories.KeysetPage;
+import com.life.master_api.repositories.KeysetRequest;
 import com.life.master_api.repositories.NoteRepository;
 import com.life.master_api.repositories.TaskRepository;
-import com.life.master_api.repositories.UserRepository;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import com.life.master_api.security.CurrentUser;
+import com.life.master_api.services.BatchService;
+import com.life.master_api.services.EntityHistoryService;
+import com.life.master_api.security.UserPrincipal;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -37,8 +40,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.ArrayList;
-import java.util.Comparator;
 
 @RestController
 @RequestMapping("/api/v1/habits")
@@ -51,40 +52,47 @@ public class HabitController {
     private final CategoryRepository categoryRepository;
     private final NoteRepository noteRepository;
     private final TaskRepository taskRepository;
-    private final UserRepository userRepository;
+    private final EntityHistoryService historyService;
+    private final BatchService batchService;
 
     public HabitController(HabitRepository habitRepository,
                              HabitHistoryRepository habitHistoryRepository,
                              CategoryRepository categoryRepository,
                              NoteRepository noteRepository,
                              TaskRepository taskRepository,
-                             UserRepository userRepository) {
+                             EntityHistoryService historyService,
+                             BatchService batchService) {
         this.habitRepository = habitRepository;
         this.habitHistoryRepository = habitHistoryRepository;
         this.categoryRepository = categoryRepository;
         this.noteRepository = noteRepository;
         this.taskRepository = taskRepository;
-        this.userRepository = userRepository;
-    }
-    
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String currentUsername = authentication.getName();
-        return userRepository.findByUsername(currentUsername)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        this.historyService = historyService;
+        this.batchService = batchService;
     }
 
     @Operation(summary = "Obtener todos los hábitos del usuario autenticado")
     @ApiResponse(responseCode = "200", description = "Lista de hábitos obtenida exitosamente")
     @GetMapping
     public ResponseEntity<Map<String, Object>> getAllHabits(
+            @CurrentUser User currentUser,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDir) {
-        
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @Parameter(description = "Cursor opaco devuelto como nextCursor; activa la paginación por cursor")
+            @RequestParam(required = false) String after,
+            @Parameter(description = "Tamaño de página en modo cursor (máx. " + KeysetRequest.MAX_LIMIT + ")")
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        
+        // Modo cursor: evita OFFSET y el count(*) salvo que se pida el total
+        if (after != null || limit != null) {
+            KeysetRequest request = KeysetRequest.of(after, limit != null ? limit : size, sortBy, sortDir);
+            KeysetPage<Habit> cursorPage = habitRepository.findByUserAndActive(currentUser, null, request);
+            return ResponseEntity.ok(CursorResponses.of(cursorPage, request.limit(), includeTotal,
+                    () -> habitRepository.countByUser(currentUser)));
+        }
         
         Sort sort = sortDir.equalsIgnoreCase(Sort.Direction.ASC.name()) ? 
                 Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
@@ -107,26 +115,30 @@ public class HabitController {
             @ApiResponse(responseCode = "400", description = "Solicitud inválida")
     })
     @PostMapping
-    public ResponseEntity<Habit> createHabit(@Valid @RequestBody Habit habit) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Habit> createHabit(@CurrentUser User currentUser, @Valid @RequestBody Habit habit) {
         habit.setUser(currentUser);
         habit.setCreation(new Date());
         Habit savedHabit = habitRepository.save(habit);
         return new ResponseEntity<>(savedHabit, HttpStatus.CREATED);
     }
 
+    @Operation(summary = "Crear, actualizar o eliminar hábitos en lote",
+            description = "Aplica una lista de operaciones CREATE, UPDATE (parcial, como PATCH) o DELETE en una sola transacción. "
+                    + "Devuelve un resultado por operación; las que fallan por datos inválidos o por no encontrar la entidad no impiden las demás")
+    @ApiResponse(responseCode = "200", description = "Lote procesado; ver el estado de cada operación")
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> batchHabits(@CurrentUser User currentUser,
+                                                           @RequestBody List<BatchOperation<Habit>> operations) {
+        return ResponseEntity.ok(BatchResponses.of(batchService.applyHabits(currentUser, operations)));
+    }
+
     @Operation(summary = "Obtener un hábito por ID del usuario autenticado")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Hábito encontrado"),
             @ApiResponse(responseCode = "404", description = "Hábito no encontrado")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<Habit> getHabitById(@Parameter(description = "ID del hábito a obtener") @PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Habit> getHabitById(@CurrentUser User currentUser, @Parameter(description = "ID del hábito a obtener") @PathVariable Long id) {
         return habitRepository.findByIdAndUser(id, currentUser)
                 .map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
@@ -139,19 +151,18 @@ public class HabitController {
             @ApiResponse(responseCode = "400", description = "Solicitud inválida")
     })
     @PutMapping("/{id}")
-    public ResponseEntity<Habit> updateHabit(@Parameter(description = "ID del hábito a actualizar") @PathVariable Long id,
+    public ResponseEntity<Habit> updateHabit(@CurrentUser User currentUser, @Parameter(description = "ID del hábito a actualizar") @PathVariable Long id,
                                             @Valid @RequestBody Habit habitDetails) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         return habitRepository.findByIdAndUser(id, currentUser)
                 .map(existingHabit -> {
-                    // Save history before update
-                    saveHabitHistory(existingHabit);
+                    // Captura la versión actual; sólo se guarda si la actualización cambia algo
+                    EntityHistoryService.PendingVersion version = historyService.captureHabit(existingHabit);
 
                     existingHabit.setName(habitDetails.getName());
-                    Habit updatedHabit = habitRepository.save(existingHabit);
-                    return ResponseEntity.ok(updatedHabit);
+                    // la versión se registra una vez guardada la entidad
+                    return version.saveIfChanged(() -> habitRepository.save(existingHabit))
+                            .map(ResponseEntity::ok)
+                            .orElseGet(() -> ResponseEntity.ok(existingHabit)); // sin cambios: ni historial ni UPDATE
                 })
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
@@ -162,21 +173,20 @@ public class HabitController {
             @ApiResponse(responseCode = "404", description = "Hábito no encontrado")
     })
     @PatchMapping("/{id}")
-    public ResponseEntity<Habit> partialUpdateHabit(@Parameter(description = "ID del hábito a actualizar") @PathVariable Long id,
+    public ResponseEntity<Habit> partialUpdateHabit(@CurrentUser User currentUser, @Parameter(description = "ID del hábito a actualizar") @PathVariable Long id,
                                                    @RequestBody Habit habitDetails) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         return habitRepository.findByIdAndUser(id, currentUser)
                 .map(existingHabit -> {
-                    // Save history before update
-                    saveHabitHistory(existingHabit);
+                    // Captura la versión actual; sólo se guarda si la actualización cambia algo
+                    EntityHistoryService.PendingVersion version = historyService.captureHabit(existingHabit);
 
                     if (habitDetails.getName() != null) {
                         existingHabit.setName(habitDetails.getName());
                     }
-                    Habit updatedHabit = habitRepository.save(existingHabit);
-                    return ResponseEntity.ok(updatedHabit);
+                    // la versión se registra una vez guardada la entidad
+                    return version.saveIfChanged(() -> habitRepository.save(existingHabit))
+                            .map(ResponseEntity::ok)
+                            .orElseGet(() -> ResponseEntity.ok(existingHabit)); // sin cambios: ni historial ni UPDATE
                 })
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
@@ -187,12 +197,10 @@ public class HabitController {
             @ApiResponse(responseCode = "404", description = "Hábito no encontrado")
     })
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteHabit(@Parameter(description = "ID del hábito a eliminar") @PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> deleteHabit(@CurrentUser User currentUser, @Parameter(description = "ID del hábito a eliminar") @PathVariable Long id) {
         return habitRepository.findByIdAndUser(id, currentUser)
                 .map(habit -> {
+                    historyService.awaitPending(habit); // que no quede una versión suya por escribir
                     habitRepository.delete(habit);
                     return new ResponseEntity<Void>(HttpStatus.NO_CONTENT);
                 })
@@ -204,66 +212,35 @@ public class HabitController {
     @Operation(summary = "Obtener todas las categorías de un hábito del usuario autenticado")
     @GetMapping("/{id}/categories")
     public ResponseEntity<Map<String, Object>> getHabitCategories(
+            @CurrentUser User currentUser,
             @PathVariable Long id,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDir) {
         
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         Optional<Habit> habitOpt = habitRepository.findByIdAndUser(id, currentUser);
         if (!habitOpt.isPresent()) {
             return ResponseEntity.notFound().build();
         }
         
-        Habit habit = habitOpt.get();
-        List<Category> categories = new ArrayList<>(habit.getCategories());
-        
-        // Aplicar ordenamiento
-        Comparator<Category> comparator;
-        if (sortBy.equals("id")) {
-            comparator = Comparator.comparing(Category::getId);
-        } else if (sortBy.equals("name")) {
-            comparator = Comparator.comparing(Category::getName);
-        } else if (sortBy.equals("creation")) {
-            comparator = Comparator.comparing(category -> category.getCreation());
-        } else {
-            comparator = Comparator.comparing(Category::getId);
-        }
-        
-        if (sortDir.equalsIgnoreCase("desc")) {
-            comparator = comparator.reversed();
-        }
-        
-        categories.sort(comparator);
-        
-        // Aplicar paginación
-        int totalItems = categories.size();
-        int totalPages = (int) Math.ceil((double) totalItems / size);
-        
-        int fromIndex = page * size;
-        int toIndex = Math.min(fromIndex + size, totalItems);
-        
-        List<Category> pagedCategories = fromIndex < totalItems ? 
-                categories.subList(fromIndex, toIndex) : new ArrayList<>();
+        // Paginación y ordenamiento en la base de datos, sin cargar la colección completa
+        Pageable pageable = PageRequest.of(page, size,
+                SortSupport.whitelisted(sortBy, sortDir, SortSupport.CATEGORY_SORT_FIELDS));
+        Page<Category> categoryPage = categoryRepository.findByHabit(habitOpt.get(), pageable);
         
         Map<String, Object> response = new HashMap<>();
-        response.put("content", pagedCategories);
-        response.put("currentPage", page);
-        response.put("totalItems", totalItems);
-        response.put("totalPages", totalPages);
+        response.put("content", categoryPage.getContent());
+        response.put("currentPage", categoryPage.getNumber());
+        response.put("totalItems", categoryPage.getTotalElements());
+        response.put("totalPages", categoryPage.getTotalPages());
         
         return ResponseEntity.ok(response);
     }
 
     @Operation(summary = "Agregar una categoría a un hábito del usuario autenticado")
     @PostMapping("/{habitId}/categories/{categoryId}")
-    public ResponseEntity<Void> addCategoryToHabit(@PathVariable Long habitId, @PathVariable Long categoryId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> addCategoryToHabit(@CurrentUser User currentUser, @PathVariable Long habitId, @PathVariable Long categoryId) {
         Optional<Habit> habitOpt = habitRepository.findByIdAndUser(habitId, currentUser);
         Optional<Category> categoryOpt = categoryRepository.findByIdAndUser(categoryId, currentUser);
 
@@ -279,10 +256,7 @@ public class HabitController {
 
     @Operation(summary = "Eliminar una categoría de un hábito del usuario autenticado")
     @DeleteMapping("/{habitId}/categories/{categoryId}")
-    public ResponseEntity<Void> removeCategoryFromHabit(@PathVariable Long habitId, @PathVariable Long categoryId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> removeCategoryFromHabit(@CurrentUser User currentUser, @PathVariable Long habitId, @PathVariable Long categoryId) {
         Optional<Habit> habitOpt = habitRepository.findByIdAndUser(habitId, currentUser);
         Optional<Category> categoryOpt = categoryRepository.findByIdAndUser(categoryId, currentUser);
 
@@ -298,10 +272,7 @@ public class HabitController {
 
     @Operation(summary = "Obtener todas las notas relacionadas con un hábito del usuario autenticado")
     @GetMapping("/{id}/notes")
-    public ResponseEntity<Set<Note>> getHabitNotes(@PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Set<Note>> getHabitNotes(@CurrentUser User currentUser, @PathVariable Long id) {
         return habitRepository.findByIdAndUser(id, currentUser)
                 .map(habit -> ResponseEntity.ok(habit.getNotes()))
                 .orElseGet(() -> ResponseEntity.notFound().build());
@@ -309,10 +280,7 @@ public class HabitController {
 
     @Operation(summary = "Agregar una nota a un hábito del usuario autenticado")
     @PostMapping("/{habitId}/notes/{noteId}")
-    public ResponseEntity<Void> addNoteToHabit(@PathVariable Long habitId, @PathVariable Long noteId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> addNoteToHabit(@CurrentUser User currentUser, @PathVariable Long habitId, @PathVariable Long noteId) {
         Optional<Habit> habitOpt = habitRepository.findByIdAndUser(habitId, currentUser);
         Optional<Note> noteOpt = noteRepository.findByIdAndUser(noteId, currentUser);
 
@@ -328,10 +296,7 @@ public class HabitController {
 
     @Operation(summary = "Eliminar una nota de un hábito del usuario autenticado")
     @DeleteMapping("/{habitId}/notes/{noteId}")
-    public ResponseEntity<Void> removeNoteFromHabit(@PathVariable Long habitId, @PathVariable Long noteId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> removeNoteFromHabit(@CurrentUser User currentUser, @PathVariable Long habitId, @PathVariable Long noteId) {
         Optional<Habit> habitOpt = habitRepository.findByIdAndUser(habitId, currentUser);
         Optional<Note> noteOpt = noteRepository.findByIdAndUser(noteId, currentUser);
 
@@ -347,10 +312,7 @@ public class HabitController {
 
     @Operation(summary = "Obtener todas las tareas relacionadas con un hábito del usuario autenticado")
     @GetMapping("/{id}/tasks")
-    public ResponseEntity<Set<Task>> getHabitTasks(@PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Set<Task>> getHabitTasks(@CurrentUser User currentUser, @PathVariable Long id) {
         return habitRepository.findByIdAndUser(id, currentUser)
                 .map(habit -> ResponseEntity.ok(habit.getTasks()))
                 .orElseGet(() -> ResponseEntity.notFound().build());
@@ -358,10 +320,7 @@ public class HabitController {
 
     @Operation(summary = "Agregar una tarea a un hábito del usuario autenticado")
     @PostMapping("/{habitId}/tasks/{taskId}")
-    public ResponseEntity<Void> addTaskToHabit(@PathVariable Long habitId, @PathVariable Long taskId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> addTaskToHabit(@CurrentUser User currentUser, @PathVariable Long habitId, @PathVariable Long taskId) {
         Optional<Habit> habitOpt = habitRepository.findByIdAndUser(habitId, currentUser);
         Optional<Task> taskOpt = taskRepository.findByIdAndUser(taskId, currentUser);
 
@@ -377,10 +336,7 @@ public class HabitController {
 
     @Operation(summary = "Eliminar una tarea de un hábito del usuario autenticado")
     @DeleteMapping("/{habitId}/tasks/{taskId}")
-    public ResponseEntity<Void> removeTaskFromHabit(@PathVariable Long habitId, @PathVariable Long taskId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> removeTaskFromHabit(@CurrentUser User currentUser, @PathVariable Long habitId, @PathVariable Long taskId) {
         Optional<Habit> habitOpt = habitRepository.findByIdAndUser(habitId, currentUser);
         Optional<Task> taskOpt = taskRepository.findByIdAndUser(taskId, currentUser);
 
@@ -398,10 +354,7 @@ public class HabitController {
 
     @Operation(summary = "Obtener el historial de versiones de un hábito del usuario autenticado")
     @GetMapping("/{id}/history")
-    public ResponseEntity<List<HabitHistory>> getHabitHistory(@Parameter(description = "ID del hábito") @PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<List<HabitHistory>> getHabitHistory(@CurrentUser User currentUser, @Parameter(description = "ID del hábito") @PathVariable Long id) {
         // Verificar que el hábito pertenece al usuario autenticado
         Optional<Habit> habitOpt = habitRepository.findByIdAndUser(id, currentUser);
         if (!habitOpt.isPresent()) {
@@ -415,11 +368,9 @@ public class HabitController {
     @Operation(summary = "Obtener una versión específica del historial de un hábito del usuario autenticado")
     @GetMapping("/{id}/history/{versionId}")
     public ResponseEntity<HabitHistory> getHabitHistoryByVersion(
+            @CurrentUser User currentUser,
             @Parameter(description = "ID del hábito") @PathVariable Long id,
             @Parameter(description = "ID de la versión del historial") @PathVariable Long versionId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         // Verificar que el hábito pertenece al usuario autenticado
         Optional<Habit> habitOpt = habitRepository.findByIdAndUser(id, currentUser);
         if (!habitOpt.isPresent()) {
@@ -439,8 +390,7 @@ public class HabitController {
     @Operation(summary = "Obtener dashboard de hábitos de hoy")
     @ApiResponse(responseCode = "200", description = "Dashboard obtenido exitosamente")
     @GetMapping("/dashboard/today")
-    public ResponseEntity<Map<String, Object>> getTodayDashboard() {
-        User currentUser = getCurrentUser();
+    public ResponseEntity<Map<String, Object>> getTodayDashboard(@CurrentUser User currentUser) {
         List<Habit> activeHabits = habitRepository.findByUserAndActiveTrue(currentUser);
         
         Map<String, Object> dashboard = new HashMap<>();
@@ -468,9 +418,9 @@ public class HabitController {
     @Operation(summary = "Marcar hábito como completado (tipo BOOLEAN)")
     @ApiResponse(responseCode = "200", description = "Hábito marcado como completado")
     @PostMapping("/{id}/track/complete")
-    public ResponseEntity<Map<String, Object>> markHabitComplete(@PathVariable Long id) {
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Map<String, Object>> markHabitComplete(@CurrentUser User currentUser,
+                                                                 @CurrentUser UserPrincipal principal,
+                                                                 @PathVariable Long id) {
         Optional<Habit> habitOpt = habitRepository.findByIdAndUser(id, currentUser);
         if (!habitOpt.isPresent()) {
             return ResponseEntity.notFound().build();
@@ -490,8 +440,11 @@ public class HabitController {
             return ResponseEntity.badRequest().body(error);
         }
         
+        // "hoy" es el día local del usuario, el mismo que usa el reinicio diario
+        LocalDate today = LocalDate.now(principal.getZoneId());
+        habit.rollOverTo(today);
         habit.setTodayCompleted(true);
-        habit.setLastTrackedDate(LocalDate.now());
+        habit.setLastTrackedDate(today);
         habitRepository.save(habit);
         
         Map<String, Object> response = new HashMap<>();
@@ -505,11 +458,11 @@ public class HabitController {
     @ApiResponse(responseCode = "200", description = "Cantidad actualizada exitosamente")
     @PostMapping("/{id}/track/quantity")
     public ResponseEntity<Map<String, Object>> updateHabitQuantity(
+            @CurrentUser User currentUser,
+            @CurrentUser UserPrincipal principal,
             @PathVariable Long id, 
             @RequestBody Map<String, Integer> request) {
         
-        User currentUser = getCurrentUser();
-        
         Optional<Habit> habitOpt = habitRepository.findByIdAndUser(id, currentUser);
         if (!habitOpt.isPresent()) {
             return ResponseEntity.notFound().build();
@@ -536,8 +489,11 @@ public class HabitController {
             return ResponseEntity.badRequest().body(error);
         }
         
+        // "hoy" es el día local del usuario, el mismo que usa el reinicio diario
+        LocalDate today = LocalDate.now(principal.getZoneId());
+        habit.rollOverTo(today);
         habit.setTodayQuantity(quantity);
-        habit.setLastTrackedDate(LocalDate.now());
+        habit.setLastTrackedDate(today);
         habitRepository.save(habit);
         
         Map<String, Object> response = new HashMap<>();
@@ -553,9 +509,7 @@ public class HabitController {
     @Operation(summary = "Obtener estadísticas de un hábito")
     @ApiResponse(responseCode = "200", description = "Estadísticas obtenidas exitosamente")
     @GetMapping("/{id}/stats")
-    public ResponseEntity<Map<String, Object>> getHabitStats(@PathVariable Long id) {
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Map<String, Object>> getHabitStats(@CurrentUser User currentUser, @PathVariable Long id) {
         Optional<Habit> habitOpt = habitRepository.findByIdAndUser(id, currentUser);
         if (!habitOpt.isPresent()) {
             return ResponseEntity.notFound().build();
@@ -593,12 +547,24 @@ public class HabitController {
     @ApiResponse(responseCode = "200", description = "Hábitos activos obtenidos exitosamente")
     @GetMapping("/active")
     public ResponseEntity<Map<String, Object>> getActiveHabits(
+            @CurrentUser User currentUser,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDir) {
-        
-        User currentUser = getCurrentUser();
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @Parameter(description = "Cursor opaco devuelto como nextCursor; activa la paginación por cursor")
+            @RequestParam(required = false) String after,
+            @Parameter(description = "Tamaño de página en modo cursor (máx. " + KeysetRequest.MAX_LIMIT + ")")
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        
+        // Modo cursor: evita OFFSET y el count(*) salvo que se pida el total
+        if (after != null || limit != null) {
+            KeysetRequest request = KeysetRequest.of(after, limit != null ? limit : size, sortBy, sortDir);
+            KeysetPage<Habit> cursorPage = habitRepository.findByUserAndActive(currentUser, true, request);
+            return ResponseEntity.ok(CursorResponses.of(cursorPage, request.limit(), includeTotal,
+                    () -> habitRepository.countByUserAndActiveTrue(currentUser)));
+        }
         
         Sort sort = sortDir.equalsIgnoreCase(Sort.Direction.ASC.name()) ? 
                 Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
@@ -619,12 +585,24 @@ public class HabitController {
     @ApiResponse(responseCode = "200", description = "Hábitos inactivos obtenidos exitosamente")
     @GetMapping("/inactive")
     public ResponseEntity<Map<String, Object>> getInactiveHabits(
+            @CurrentUser User currentUser,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDir) {
-        
-        User currentUser = getCurrentUser();
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @Parameter(description = "Cursor opaco devuelto como nextCursor; activa la paginación por cursor")
+            @RequestParam(required = false) String after,
+            @Parameter(description = "Tamaño de página en modo cursor (máx. " + KeysetRequest.MAX_LIMIT + ")")
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        
+        // Modo cursor: evita OFFSET y el count(*) salvo que se pida el total
+        if (after != null || limit != null) {
+            KeysetRequest request = KeysetRequest.of(after, limit != null ? limit : size, sortBy, sortDir);
+            KeysetPage<Habit> cursorPage = habitRepository.findByUserAndActive(currentUser, false, request);
+            return ResponseEntity.ok(CursorResponses.of(cursorPage, request.limit(), includeTotal,
+                    () -> habitRepository.countByUserAndActiveFalse(currentUser)));
+        }
         
         Sort sort = sortDir.equalsIgnoreCase(Sort.Direction.ASC.name()) ? 
                 Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
@@ -644,9 +622,7 @@ public class HabitController {
     @Operation(summary = "Activar/Desactivar un hábito")
     @ApiResponse(responseCode = "200", description = "Estado del hábito actualizado exitosamente")
     @PutMapping("/{id}/toggle-active")
-    public ResponseEntity<Map<String, Object>> toggleHabitActive(@PathVariable Long id) {
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Map<String, Object>> toggleHabitActive(@CurrentUser User currentUser, @PathVariable Long id) {
         Optional<Habit> habitOpt = habitRepository.findByIdAndUser(id, currentUser);
         if (!habitOpt.isPresent()) {
             return ResponseEntity.notFound().build();
@@ -670,17 +646,4 @@ public class HabitController {
         
         return ResponseEntity.ok(response);
     }
-
-
-    private void saveHabitHistory(Habit habit) {
-        HabitHistory history = new HabitHistory();
-        history.setHabit(habit);
-        history.setName(habit.getName());
-        history.setCreation(habit.getCreation());
-        history.setTimestamp(new Date()); // Current timestamp
-        // You might want to implement a more robust versioning logic here, e.g., incrementing versionId
-        // For simplicity, we are not setting versionId for now.
-
-        habitHistoryRepository.save(history);
-    }
 }
\ No newline at end of file
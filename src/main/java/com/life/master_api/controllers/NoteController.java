@@ -1,20 +1,24 @@
 package com.life.master_api.controllers;
 
+import com.life.master_api.dto.BatchOperation;
+import com.life.master_api.dto.TypeaheadItem;
 import com.life.master_api.entities.Category;
 import com.life.master_api.entities.Habit;
 import com.life.master_api.entities.Note;
 import com.life.master_api.entities.NoteHistory;
 import com.life.master_api.entities.Task;
 import com.life.master_api.entities.User;
-import com.life.master_api.exceptions.ResourceNotFoundException;
 import com.life.master_api.repositories.CategoryRepository;
 import com.life.master_api.repositories.HabitRepository;
-import com.life.master_api.repositories.NoteHistoryRepository;
+import com.life.master_api.repositories.KeysetPage;
+import com.life.master_api.repositories.KeysetRequest;
 import com.life.master_api.repositories.NoteRepository;
 import com.life.master_api.repositories.TaskRepository;
-import com.life.master_api.repositories.UserRepository;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import com.life.master_api.repositories.Typeahead;
+import com.life.master_api.security.CurrentUser;
+import com.life.master_api.services.BatchService;
+import com.life.master_api.services.EntityHistoryService;
+import com.life.master_api.services.TypeaheadService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -36,8 +40,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.ArrayList;
-import java.util.Comparator;
 
 @RestController
 @RequestMapping("/api/v1/notes")
@@ -46,48 +48,51 @@ import java.util.Comparator;
 public class NoteController {
 
     private final NoteRepository noteRepository;
-    private final NoteHistoryRepository noteHistoryRepository;
     private final CategoryRepository categoryRepository;
     private final TaskRepository taskRepository;
     private final HabitRepository habitRepository;
-    private final UserRepository userRepository;
+    private final EntityHistoryService historyService;
+    private final BatchService batchService;
+    private final TypeaheadService typeaheadService;
 
     public NoteController(NoteRepository noteRepository,
-                            NoteHistoryRepository noteHistoryRepository,
                             CategoryRepository categoryRepository,
                             TaskRepository taskRepository,
                             HabitRepository habitRepository,
-                            UserRepository userRepository) {
+                            EntityHistoryService historyService,
+                            BatchService batchService,
+                            TypeaheadService typeaheadService) {
         this.noteRepository = noteRepository;
-        this.noteHistoryRepository = noteHistoryRepository;
         this.categoryRepository = categoryRepository;
         this.taskRepository = taskRepository;
         this.habitRepository = habitRepository;
-        this.userRepository = userRepository;
-    }
-
-    /**
-     * Obtiene el usuario autenticado actualmente
-     * @return Usuario autenticado
-     */
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado"));
+        this.historyService = historyService;
+        this.batchService = batchService;
+        this.typeaheadService = typeaheadService;
     }
 
     @Operation(summary = "Obtener todas las notas del usuario autenticado")
     @ApiResponse(responseCode = "200", description = "Lista de notas obtenida exitosamente")
     @GetMapping
     public ResponseEntity<Map<String, Object>> getAllNotes(
+            @CurrentUser User currentUser,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDir) {
-        
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @Parameter(description = "Cursor opaco devuelto como nextCursor; activa la paginación por cursor")
+            @RequestParam(required = false) String after,
+            @Parameter(description = "Tamaño de página en modo cursor (máx. " + KeysetRequest.MAX_LIMIT + ")")
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        
+        // Modo cursor: evita OFFSET y el count(*) salvo que se pida el total
+        if (after != null || limit != null) {
+            KeysetRequest request = KeysetRequest.of(after, limit != null ? limit : size, sortBy, sortDir);
+            KeysetPage<Note> cursorPage = noteRepository.findByUser(currentUser, request);
+            return ResponseEntity.ok(CursorResponses.of(cursorPage, request.limit(), includeTotal,
+                    () -> noteRepository.countByUser(currentUser)));
+        }
         
         Sort sort = sortDir.equalsIgnoreCase(Sort.Direction.ASC.name()) ? 
                 Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
@@ -110,26 +115,49 @@ public class NoteController {
             @ApiResponse(responseCode = "400", description = "Solicitud inválida")
     })
     @PostMapping
-    public ResponseEntity<Note> createNote(@Valid @RequestBody Note note) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Note> createNote(@CurrentUser User currentUser, @Valid @RequestBody Note note) {
         note.setCreation(new Date());
         note.setUser(currentUser);
         Note savedNote = noteRepository.save(note);
         return new ResponseEntity<>(savedNote, HttpStatus.CREATED);
     }
 
+    @Operation(summary = "Crear, actualizar o eliminar notas en lote",
+            description = "Aplica una lista de operaciones CREATE, UPDATE (parcial, como PATCH) o DELETE en una sola transacción. "
+                    + "Devuelve un resultado por operación; las que fallan por datos inválidos o por no encontrar la entidad no impiden las demás")
+    @ApiResponse(responseCode = "200", description = "Lote procesado; ver el estado de cada operación")
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> batchNotes(@CurrentUser User currentUser,
+                                                          @RequestBody List<BatchOperation<Note>> operations) {
+        return ResponseEntity.ok(BatchResponses.of(batchService.applyNotes(currentUser, operations)));
+    }
+
+    @Operation(summary = "Autocompletar notas del usuario autenticado por título",
+            description = "Pensado para llamarse en cada pulsación: devuelve sólo id y título (label) de las mejores "
+                    + "coincidencias, primero las que empiezan por el texto y, desde " + Typeahead.MIN_FUZZY_LENGTH
+                    + " caracteres, también las parecidas (tolera erratas) con el motor postgres y pg_trgm. "
+                    + "No calcula el total")
+    @ApiResponse(responseCode = "200", description = "Coincidencias ordenadas por relevancia")
+    @GetMapping("/typeahead")
+    public ResponseEntity<List<TypeaheadItem>> typeaheadNotes(
+            @CurrentUser User currentUser,
+            @Parameter(description = "Texto escrito hasta ahora") @RequestParam String q,
+            @Parameter(description = "Máximo de resultados (máx. " + Typeahead.MAX_LIMIT + ")")
+            @RequestParam(defaultValue = "10") int limit) {
+        String text = q.trim();
+        if (text.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+        return ResponseEntity.ok(typeaheadService.notes(currentUser, text, limit));
+    }
+
     @Operation(summary = "Obtener una nota por ID del usuario autenticado")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Nota encontrada"),
             @ApiResponse(responseCode = "404", description = "Nota no encontrada o no pertenece al usuario")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<Note> getNoteById(@Parameter(description = "ID de la nota a obtener") @PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Note> getNoteById(@CurrentUser User currentUser, @Parameter(description = "ID de la nota a obtener") @PathVariable Long id) {
         return noteRepository.findByIdAndUser(id, currentUser)
                 .map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
@@ -142,22 +170,21 @@ public class NoteController {
             @ApiResponse(responseCode = "400", description = "Solicitud inválida")
     })
     @PutMapping("/{id}")
-    public ResponseEntity<Note> updateNote(@Parameter(description = "ID de la nota a actualizar") @PathVariable Long id,
+    public ResponseEntity<Note> updateNote(@CurrentUser User currentUser, @Parameter(description = "ID de la nota a actualizar") @PathVariable Long id,
                                           @Valid @RequestBody Note noteDetails) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         return noteRepository.findByIdAndUser(id, currentUser)
                 .map(existingNote -> {
-                    // Save history before update
-                    saveNoteHistory(existingNote);
+                    // Captura la versión actual; sólo se guarda si la actualización cambia algo
+                    EntityHistoryService.PendingVersion version = historyService.captureNote(existingNote);
 
                     existingNote.setTitle(noteDetails.getTitle());
                     existingNote.setNote(noteDetails.getNote());
                     // Mantener el usuario actual
                     existingNote.setUser(currentUser);
-                    Note updatedNote = noteRepository.save(existingNote);
-                    return ResponseEntity.ok(updatedNote);
+                    // la versión se registra una vez guardada la entidad
+                    return version.saveIfChanged(() -> noteRepository.save(existingNote))
+                            .map(ResponseEntity::ok)
+                            .orElseGet(() -> ResponseEntity.ok(existingNote)); // sin cambios: ni historial ni UPDATE
                 })
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
@@ -168,15 +195,12 @@ public class NoteController {
             @ApiResponse(responseCode = "404", description = "Nota no encontrada o no pertenece al usuario")
     })
     @PatchMapping("/{id}")
-    public ResponseEntity<Note> partialUpdateNote(@Parameter(description = "ID de la nota a actualizar") @PathVariable Long id,
+    public ResponseEntity<Note> partialUpdateNote(@CurrentUser User currentUser, @Parameter(description = "ID de la nota a actualizar") @PathVariable Long id,
                                                  @RequestBody Note noteDetails) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         return noteRepository.findByIdAndUser(id, currentUser)
                 .map(existingNote -> {
-                    // Save history before update
-                    saveNoteHistory(existingNote);
+                    // Captura la versión actual; sólo se guarda si la actualización cambia algo
+                    EntityHistoryService.PendingVersion version = historyService.captureNote(existingNote);
 
                     if (noteDetails.getTitle() != null) {
                         existingNote.setTitle(noteDetails.getTitle());
@@ -186,8 +210,10 @@ public class NoteController {
                     }
                     // Mantener el usuario actual
                     existingNote.setUser(currentUser);
-                    Note updatedNote = noteRepository.save(existingNote);
-                    return ResponseEntity.ok(updatedNote);
+                    // la versión se registra una vez guardada la entidad
+                    return version.saveIfChanged(() -> noteRepository.save(existingNote))
+                            .map(ResponseEntity::ok)
+                            .orElseGet(() -> ResponseEntity.ok(existingNote)); // sin cambios: ni historial ni UPDATE
                 })
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
@@ -198,12 +224,10 @@ public class NoteController {
             @ApiResponse(responseCode = "404", description = "Nota no encontrada o no pertenece al usuario")
     })
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteNote(@Parameter(description = "ID de la nota a eliminar") @PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> deleteNote(@CurrentUser User currentUser, @Parameter(description = "ID de la nota a eliminar") @PathVariable Long id) {
         return noteRepository.findByIdAndUser(id, currentUser)
                 .map(note -> {
+                    historyService.awaitPending(note); // que no quede una versión suya por escribir
                     noteRepository.delete(note);
                     return new ResponseEntity<Void>(HttpStatus.NO_CONTENT);
                 })
@@ -215,66 +239,35 @@ public class NoteController {
     @Operation(summary = "Obtener todas las categorías de una nota del usuario autenticado")
     @GetMapping("/{id}/categories")
     public ResponseEntity<Map<String, Object>> getNoteCategories(
+            @CurrentUser User currentUser,
             @PathVariable Long id,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDir) {
         
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         Optional<Note> noteOpt = noteRepository.findByIdAndUser(id, currentUser);
         if (!noteOpt.isPresent()) {
             return ResponseEntity.notFound().build();
         }
         
-        Note note = noteOpt.get();
-        List<Category> categories = new ArrayList<>(note.getCategories());
-        
-        // Aplicar ordenamiento
-        Comparator<Category> comparator;
-        if (sortBy.equals("id")) {
-            comparator = Comparator.comparing(Category::getId);
-        } else if (sortBy.equals("name")) {
-            comparator = Comparator.comparing(Category::getName);
-        } else if (sortBy.equals("creation")) {
-            comparator = Comparator.comparing(category -> category.getCreation());
-        } else {
-            comparator = Comparator.comparing(Category::getId);
-        }
-        
-        if (sortDir.equalsIgnoreCase("desc")) {
-            comparator = comparator.reversed();
-        }
-        
-        categories.sort(comparator);
-        
-        // Aplicar paginación
-        int totalItems = categories.size();
-        int totalPages = (int) Math.ceil((double) totalItems / size);
-        
-        int fromIndex = page * size;
-        int toIndex = Math.min(fromIndex + size, totalItems);
-        
-        List<Category> pagedCategories = fromIndex < totalItems ? 
-                categories.subList(fromIndex, toIndex) : new ArrayList<>();
+        // Paginación y ordenamiento en la base de datos, sin cargar la colección completa
+        Pageable pageable = PageRequest.of(page, size,
+                SortSupport.whitelisted(sortBy, sortDir, SortSupport.CATEGORY_SORT_FIELDS));
+        Page<Category> categoryPage = categoryRepository.findByNote(noteOpt.get(), pageable);
         
         Map<String, Object> response = new HashMap<>();
-        response.put("content", pagedCategories);
-        response.put("currentPage", page);
-        response.put("totalItems", totalItems);
-        response.put("totalPages", totalPages);
+        response.put("content", categoryPage.getContent());
+        response.put("currentPage", categoryPage.getNumber());
+        response.put("totalItems", categoryPage.getTotalElements());
+        response.put("totalPages", categoryPage.getTotalPages());
         
         return ResponseEntity.ok(response);
     }
 
     @Operation(summary = "Agregar una categoría a una nota del usuario autenticado")
     @PostMapping("/{noteId}/categories/{categoryId}")
-    public ResponseEntity<Void> addCategoryToNote(@PathVariable Long noteId, @PathVariable Long categoryId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> addCategoryToNote(@CurrentUser User currentUser, @PathVariable Long noteId, @PathVariable Long categoryId) {
         Optional<Note> noteOpt = noteRepository.findByIdAndUser(noteId, currentUser);
         Optional<Category> categoryOpt = categoryRepository.findByIdAndUser(categoryId, currentUser);
 
@@ -290,10 +283,7 @@ public class NoteController {
 
     @Operation(summary = "Eliminar una categoría de una nota del usuario autenticado")
     @DeleteMapping("/{noteId}/categories/{categoryId}")
-    public ResponseEntity<Void> removeCategoryFromNote(@PathVariable Long noteId, @PathVariable Long categoryId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> removeCategoryFromNote(@CurrentUser User currentUser, @PathVariable Long noteId, @PathVariable Long categoryId) {
         Optional<Note> noteOpt = noteRepository.findByIdAndUser(noteId, currentUser);
         Optional<Category> categoryOpt = categoryRepository.findByIdAndUser(categoryId, currentUser);
 
@@ -309,10 +299,7 @@ public class NoteController {
 
     @Operation(summary = "Obtener todas las tareas relacionadas con una nota del usuario autenticado")
     @GetMapping("/{id}/tasks")
-    public ResponseEntity<Set<Task>> getNoteTasks(@PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Set<Task>> getNoteTasks(@CurrentUser User currentUser, @PathVariable Long id) {
         return noteRepository.findByIdAndUser(id, currentUser)
                 .map(note -> ResponseEntity.ok(note.getTasks()))
                 .orElseGet(() -> ResponseEntity.notFound().build());
@@ -320,10 +307,7 @@ public class NoteController {
 
     @Operation(summary = "Agregar una tarea a una nota del usuario autenticado")
     @PostMapping("/{noteId}/tasks/{taskId}")
-    public ResponseEntity<Void> addTaskToNote(@PathVariable Long noteId, @PathVariable Long taskId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> addTaskToNote(@CurrentUser User currentUser, @PathVariable Long noteId, @PathVariable Long taskId) {
         Optional<Note> noteOpt = noteRepository.findByIdAndUser(noteId, currentUser);
         Optional<Task> taskOpt = taskRepository.findByIdAndUser(taskId, currentUser);
 
@@ -339,10 +323,7 @@ public class NoteController {
 
     @Operation(summary = "Eliminar una tarea de una nota del usuario autenticado")
     @DeleteMapping("/{noteId}/tasks/{taskId}")
-    public ResponseEntity<Void> removeTaskFromNote(@PathVariable Long noteId, @PathVariable Long taskId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> removeTaskFromNote(@CurrentUser User currentUser, @PathVariable Long noteId, @PathVariable Long taskId) {
         Optional<Note> noteOpt = noteRepository.findByIdAndUser(noteId, currentUser);
         Optional<Task> taskOpt = taskRepository.findByIdAndUser(taskId, currentUser);
 
@@ -358,10 +339,7 @@ public class NoteController {
 
     @Operation(summary = "Obtener todos los hábitos relacionados con una nota del usuario autenticado")
     @GetMapping("/{id}/habits")
-    public ResponseEntity<Set<Habit>> getNoteHabits(@PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Set<Habit>> getNoteHabits(@CurrentUser User currentUser, @PathVariable Long id) {
         return noteRepository.findByIdAndUser(id, currentUser)
                 .map(note -> ResponseEntity.ok(note.getHabits()))
                 .orElseGet(() -> ResponseEntity.notFound().build());
@@ -369,10 +347,7 @@ public class NoteController {
 
     @Operation(summary = "Agregar un hábito a una nota del usuario autenticado")
     @PostMapping("/{noteId}/habits/{habitId}")
-    public ResponseEntity<Void> addHabitToNote(@PathVariable Long noteId, @PathVariable Long habitId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> addHabitToNote(@CurrentUser User currentUser, @PathVariable Long noteId, @PathVariable Long habitId) {
         Optional<Note> noteOpt = noteRepository.findByIdAndUser(noteId, currentUser);
         Optional<Habit> habitOpt = habitRepository.findByIdAndUser(habitId, currentUser);
 
@@ -388,10 +363,7 @@ public class NoteController {
 
     @Operation(summary = "Eliminar un hábito de una nota del usuario autenticado")
     @DeleteMapping("/{noteId}/habits/{habitId}")
-    public ResponseEntity<Void> removeHabitFromNote(@PathVariable Long noteId, @PathVariable Long habitId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> removeHabitFromNote(@CurrentUser User currentUser, @PathVariable Long noteId, @PathVariable Long habitId) {
         Optional<Note> noteOpt = noteRepository.findByIdAndUser(noteId, currentUser);
         Optional<Habit> habitOpt = habitRepository.findByIdAndUser(habitId, currentUser);
 
@@ -409,53 +381,33 @@ public class NoteController {
 
     @Operation(summary = "Obtener el historial de versiones de una nota del usuario autenticado")
     @GetMapping("/{id}/history")
-    public ResponseEntity<List<NoteHistory>> getNoteHistory(@Parameter(description = "ID de la nota") @PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<List<NoteHistory>> getNoteHistory(@CurrentUser User currentUser, @Parameter(description = "ID de la nota") @PathVariable Long id) {
         // Verificar que la nota pertenece al usuario autenticado
         Optional<Note> noteOpt = noteRepository.findByIdAndUser(id, currentUser);
         if (!noteOpt.isPresent()) {
             return ResponseEntity.notFound().build();
         }
         
-        List<NoteHistory> history = noteHistoryRepository.findByNote_IdOrderByVersionIdDesc(id);
+        historyService.awaitPending(noteOpt.get()); // para ver también la última edición
+        List<NoteHistory> history = historyService.getNoteHistory(id);
         return ResponseEntity.ok(history);
     }
 
     @Operation(summary = "Obtener una versión específica del historial de una nota del usuario autenticado")
     @GetMapping("/{id}/history/{versionId}")
     public ResponseEntity<NoteHistory> getNoteHistoryByVersion(
+            @CurrentUser User currentUser,
             @Parameter(description = "ID de la nota") @PathVariable Long id,
             @Parameter(description = "ID de la versión del historial") @PathVariable Long versionId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         // Verificar que la nota pertenece al usuario autenticado
         Optional<Note> noteOpt = noteRepository.findByIdAndUser(id, currentUser);
         if (!noteOpt.isPresent()) {
             return ResponseEntity.notFound().build();
         }
         
-        List<NoteHistory> historyVersion = noteHistoryRepository.findByNote_IdAndVersionId(id, versionId);
-        if (!historyVersion.isEmpty()) {
-            return ResponseEntity.ok(historyVersion.get(0)); // Assuming versionId is unique for each note
-        } else {
-            return ResponseEntity.notFound().build();
-        }
-    }
-
-
-    private void saveNoteHistory(Note note) {
-        NoteHistory history = new NoteHistory();
-        history.setNote(note);
-        history.setTitle(note.getTitle());
-        history.setNoteContent(note.getNote()); // Corrected line: using setNoteContent
-        history.setCreation(note.getCreation());
-        history.setTimestamp(new Date()); // Current timestamp
-        // You might want to implement a more robust versioning logic here, e.g., incrementing versionId
-        // For simplicity, we are not setting versionId for now.
-
-        noteHistoryRepository.save(history);
+        historyService.awaitPending(noteOpt.get()); // para ver también la última edición
+        return historyService.getNoteVersion(id, versionId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 }
\ No newline at end of file
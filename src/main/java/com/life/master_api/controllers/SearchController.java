@@ -0,0 +1,61 @@
+package com.life.master_api.controllers;
+
+import com.life.master_api.dto.SearchHit;
+import com.life.master_api.dto.SearchResultType;
+import com.life.master_api.entities.User;
+import com.life.master_api.exceptions.BadRequestException;
+import com.life.master_api.repositories.KeysetPage;
+import com.life.master_api.repositories.KeysetRequest;
+import com.life.master_api.search.SearchEngine;
+import com.life.master_api.security.CurrentUser;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/search")
+@Tag(name = "Search", description = "Búsqueda de texto completo en notas, tareas, hábitos y categorías")
+@SecurityRequirement(name = "bearerAuth")
+public class SearchController {
+
+    private static final int MAX_QUERY_LENGTH = 200;
+
+    private final SearchEngine searchEngine;
+
+    public SearchController(SearchEngine searchEngine) {
+        this.searchEngine = searchEngine;
+    }
+
+    @Operation(summary = "Buscar en las notas, tareas, hábitos y categorías del usuario autenticado",
+            description = "Resultados ordenados por relevancia, con los términos encontrados marcados con <mark> en el título "
+                    + "y en los fragmentos del cuerpo. Admite \"frases\"; con el motor postgres también or y -palabra para excluir, "
+                    + "con el motor lucene prefijos (palabr*), AND/OR/NOT y -palabra")
+    @ApiResponse(responseCode = "200", description = "Página de resultados; nextCursor es null en la última")
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> search(
+            @CurrentUser User currentUser,
+            @Parameter(description = "Texto a buscar") @RequestParam String q,
+            @Parameter(description = "Tipos en los que buscar (por defecto todos)") @RequestParam(required = false) List<SearchResultType> types,
+            @Parameter(description = "Cursor opaco devuelto como nextCursor")
+            @RequestParam(required = false) String after,
+            @Parameter(description = "Tamaño de página (máx. " + KeysetRequest.MAX_LIMIT + ")")
+            @RequestParam(defaultValue = "20") int limit) {
+
+        if (q.isBlank() || q.length() > MAX_QUERY_LENGTH) {
+            throw new BadRequestException("La búsqueda debe tener entre 1 y " + MAX_QUERY_LENGTH + " caracteres");
+        }
+        int boundedLimit = Math.max(1, Math.min(limit, KeysetRequest.MAX_LIMIT));
+        KeysetPage<SearchHit> page = searchEngine.search(currentUser, q, types, after, boundedLimit);
+        return ResponseEntity.ok(CursorResponses.of(page, boundedLimit, false, () -> 0));
+    }
+}
@@ -0,0 +1,26 @@
+package com.life.master_api.controllers;
+
+import org.springframework.data.domain.Sort;
+
+import java.util.Set;
+
+/**
+ * Ordenación de los listados de relaciones. El campo se valida contra una lista
+ * blanca (cualquier otro valor ordena por id, como hasta ahora) y se añade el id
+ * como desempate para que OFFSET/LIMIT devuelva páginas estables.
+ */
+final class SortSupport {
+
+    static final Set<String> TASK_SORT_FIELDS = Set.of("id", "title", "creation");
+    static final Set<String> CATEGORY_SORT_FIELDS = Set.of("id", "name", "creation");
+
+    private SortSupport() {
+    }
+
+    static Sort whitelisted(String sortBy, String sortDir, Set<String> allowed) {
+        Sort.Direction direction = sortDir.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
+        String property = allowed.contains(sortBy) ? sortBy : "id";
+        Sort sort = Sort.by(direction, property);
+        return "id".equals(property) ? sort : sort.and(Sort.by(direction, "id"));
+    }
+}
@@ -1,18 +1,24 @@
 package com.life.master_api.controllers;
 
+import com.life.master_api.dto.BatchOperation;
+import com.life.master_api.dto.TypeaheadItem;
 import com.life.master_api.entities.Category;
 import com.life.master_api.entities.Habit;
 import com.life.master_api.entities.Note;
 import com.life.master_api.entities.Task;
 import com.life.master_api.entities.TaskHistory;
 import com.life.master_api.entities.User;
-import com.life.master_api.exceptions.ResourceNotFoundException;
 import com.life.master_api.repositories.CategoryRepository;
 import com.life.master_api.repositories.HabitRepository;
+import com.life.master_api.repositories.KeysetPage;
+import com.life.master_api.repositories.KeysetRequest;
 import com.life.master_api.repositories.NoteRepository;
-import com.life.master_api.repositories.TaskHistoryRepository;
 import com.life.master_api.repositories.TaskRepository;
-import com.life.master_api.repositories.UserRepository;
+import com.life.master_api.repositories.Typeahead;
+import com.life.master_api.security.CurrentUser;
+import com.life.master_api.services.BatchService;
+import com.life.master_api.services.EntityHistoryService;
+import com.life.master_api.services.TypeaheadService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -26,8 +32,6 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Date;
@@ -37,8 +41,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.ArrayList;
-import java.util.Comparator;
 
 @RestController
 @RequestMapping("/api/v1/tasks")
@@ -47,44 +49,51 @@ import java.util.Comparator;
 public class TaskController {
 
     private final TaskRepository taskRepository;
-    private final TaskHistoryRepository taskHistoryRepository;
     private final CategoryRepository categoryRepository;
     private final NoteRepository noteRepository;
     private final HabitRepository habitRepository;
-    private final UserRepository userRepository;
+    private final EntityHistoryService historyService;
+    private final BatchService batchService;
+    private final TypeaheadService typeaheadService;
 
     public TaskController(TaskRepository taskRepository,
-                            TaskHistoryRepository taskHistoryRepository,
                             CategoryRepository categoryRepository,
                             NoteRepository noteRepository,
                             HabitRepository habitRepository,
-                            UserRepository userRepository) {
+                            EntityHistoryService historyService,
+                            BatchService batchService,
+                            TypeaheadService typeaheadService) {
         this.taskRepository = taskRepository;
-        this.taskHistoryRepository = taskHistoryRepository;
         this.categoryRepository = categoryRepository;
         this.noteRepository = noteRepository;
         this.habitRepository = habitRepository;
-        this.userRepository = userRepository;
-    }
-    
-    // Método para obtener el usuario autenticado actual
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", authentication.getName()));
+        this.historyService = historyService;
+        this.batchService = batchService;
+        this.typeaheadService = typeaheadService;
     }
 
     @Operation(summary = "Obtener todas las tareas del usuario autenticado")
     @ApiResponse(responseCode = "200", description = "Lista de tareas obtenida exitosamente")
     @GetMapping
     public ResponseEntity<Map<String, Object>> getAllTasks(
+            @CurrentUser User currentUser,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDir) {
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @Parameter(description = "Cursor opaco devuelto como nextCursor; activa la paginación por cursor")
+            @RequestParam(required = false) String after,
+            @Parameter(description = "Tamaño de página en modo cursor (máx. " + KeysetRequest.MAX_LIMIT + ")")
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
         
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
+        // Modo cursor: evita OFFSET y el count(*) salvo que se pida el total
+        if (after != null || limit != null) {
+            KeysetRequest request = KeysetRequest.of(after, limit != null ? limit : size, sortBy, sortDir);
+            KeysetPage<Task> cursorPage = taskRepository.findByUser(currentUser, request);
+            return ResponseEntity.ok(CursorResponses.of(cursorPage, request.limit(), includeTotal,
+                    () -> taskRepository.countByUser(currentUser)));
+        }
         
         Sort sort = sortDir.equalsIgnoreCase(Sort.Direction.ASC.name()) ? 
                 Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
@@ -107,25 +116,49 @@ public class TaskController {
             @ApiResponse(responseCode = "400", description = "Solicitud inválida")
     })
     @PostMapping
-    public ResponseEntity<Task> createTask(@Valid @RequestBody Task task) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Task> createTask(@CurrentUser User currentUser, @Valid @RequestBody Task task) {
         task.setUser(currentUser);
         task.setCreation(new Date());
         Task savedTask = taskRepository.save(task);
         return new ResponseEntity<>(savedTask, HttpStatus.CREATED);
     }
 
+    @Operation(summary = "Crear, actualizar o eliminar tareas en lote",
+            description = "Aplica una lista de operaciones CREATE, UPDATE (parcial, como PATCH) o DELETE en una sola transacción. "
+                    + "Devuelve un resultado por operación; las que fallan por datos inválidos o por no encontrar la entidad no impiden las demás")
+    @ApiResponse(responseCode = "200", description = "Lote procesado; ver el estado de cada operación")
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> batchTasks(@CurrentUser User currentUser,
+                                                          @RequestBody List<BatchOperation<Task>> operations) {
+        return ResponseEntity.ok(BatchResponses.of(batchService.applyTasks(currentUser, operations)));
+    }
+
+    @Operation(summary = "Autocompletar tareas del usuario autenticado por título",
+            description = "Pensado para llamarse en cada pulsación: devuelve sólo id y título (label) de las mejores "
+                    + "coincidencias, primero las que empiezan por el texto y, desde " + Typeahead.MIN_FUZZY_LENGTH
+                    + " caracteres, también las parecidas (tolera erratas) con el motor postgres y pg_trgm. "
+                    + "No calcula el total")
+    @ApiResponse(responseCode = "200", description = "Coincidencias ordenadas por relevancia")
+    @GetMapping("/typeahead")
+    public ResponseEntity<List<TypeaheadItem>> typeaheadTasks(
+            @CurrentUser User currentUser,
+            @Parameter(description = "Texto escrito hasta ahora") @RequestParam String q,
+            @Parameter(description = "Máximo de resultados (máx. " + Typeahead.MAX_LIMIT + ")")
+            @RequestParam(defaultValue = "10") int limit) {
+        String text = q.trim();
+        if (text.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+        return ResponseEntity.ok(typeaheadService.tasks(currentUser, text, limit));
+    }
+
     @Operation(summary = "Obtener una tarea por ID del usuario autenticado")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Tarea encontrada"),
             @ApiResponse(responseCode = "404", description = "Tarea no encontrada o no pertenece al usuario")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<Task> getTaskById(@Parameter(description = "ID de la tarea a obtener") @PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
+    public ResponseEntity<Task> getTaskById(@CurrentUser User currentUser, @Parameter(description = "ID de la tarea a obtener") @PathVariable Long id) {
         return taskRepository.findByIdAndUser(id, currentUser)
                 .map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
@@ -138,22 +171,21 @@ public class TaskController {
             @ApiResponse(responseCode = "400", description = "Solicitud inválida")
     })
     @PutMapping("/{id}")
-    public ResponseEntity<Task> updateTask(@Parameter(description = "ID de la tarea a actualizar") @PathVariable Long id,
+    public ResponseEntity<Task> updateTask(@CurrentUser User currentUser, @Parameter(description = "ID de la tarea a actualizar") @PathVariable Long id,
                                           @Valid @RequestBody Task taskDetails) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         return taskRepository.findByIdAndUser(id, currentUser)
                 .map(existingTask -> {
-                    // Save history before update
-                    saveTaskHistory(existingTask);
+                    // Captura la versión actual; sólo se guarda si la actualización cambia algo
+                    EntityHistoryService.PendingVersion version = historyService.captureTask(existingTask, currentUser);
 
                     existingTask.setTitle(taskDetails.getTitle());
                     existingTask.setDescription(taskDetails.getDescription());
                     // Mantener el usuario actual
                     existingTask.setUser(currentUser);
-                    Task updatedTask = taskRepository.save(existingTask);
-                    return ResponseEntity.ok(updatedTask);
+                    // la versión se registra una vez guardada la entidad
+                    return version.saveIfChanged(() -> taskRepository.save(existingTask))
+                            .map(ResponseEntity::ok)
+                            .orElseGet(() -> ResponseEntity.ok(existingTask)); // sin cambios: ni historial ni UPDATE
                 })
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
@@ -164,15 +196,12 @@ public class TaskController {
             @ApiResponse(responseCode = "404", description = "Tarea no encontrada o no pertenece al usuario")
     })
     @PatchMapping("/{id}")
-    public ResponseEntity<Task> partialUpdateTask(@Parameter(description = "ID de la tarea a actualizar") @PathVariable Long id,
+    public ResponseEntity<Task> partialUpdateTask(@CurrentUser User currentUser, @Parameter(description = "ID de la tarea a actualizar") @PathVariable Long id,
                                                  @RequestBody Task taskDetails) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         return taskRepository.findByIdAndUser(id, currentUser)
                 .map(existingTask -> {
-                    // Save history before update
-                    saveTaskHistory(existingTask);
+                    // Captura la versión actual; sólo se guarda si la actualización cambia algo
+                    EntityHistoryService.PendingVersion version = historyService.captureTask(existingTask, currentUser);
 
                     if (taskDetails.getTitle() != null) {
                         existingTask.setTitle(taskDetails.getTitle());
@@ -182,8 +211,10 @@ public class TaskController {
                     }
                     // Mantener el usuario actual
                     existingTask.setUser(currentUser);
-                    Task updatedTask = taskRepository.save(existingTask);
-                    return ResponseEntity.ok(updatedTask);
+                    // la versión se registra una vez guardada la entidad
+                    return version.saveIfChanged(() -> taskRepository.save(existingTask))
+                            .map(ResponseEntity::ok)
+                            .orElseGet(() -> ResponseEntity.ok(existingTask)); // sin cambios: ni historial ni UPDATE
                 })
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
@@ -194,12 +225,10 @@ public class TaskController {
             @ApiResponse(responseCode = "404", description = "Tarea no encontrada o no pertenece al usuario")
     })
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteTask(@Parameter(description = "ID de la tarea a eliminar") @PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> deleteTask(@CurrentUser User currentUser, @Parameter(description = "ID de la tarea a eliminar") @PathVariable Long id) {
         return taskRepository.findByIdAndUser(id, currentUser)
                 .map(task -> {
+                    historyService.awaitPending(task); // que no quede una versión suya por escribir
                     taskRepository.delete(task);
                     return new ResponseEntity<Void>(HttpStatus.NO_CONTENT);
                 })
@@ -211,66 +240,35 @@ public class TaskController {
     @Operation(summary = "Obtener todas las categorías de una tarea del usuario autenticado")
     @GetMapping("/{id}/categories")
     public ResponseEntity<Map<String, Object>> getTaskCategories(
+            @CurrentUser User currentUser,
             @PathVariable Long id,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDir) {
         
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         Optional<Task> taskOpt = taskRepository.findByIdAndUser(id, currentUser);
         if (!taskOpt.isPresent()) {
             return ResponseEntity.notFound().build();
         }
         
-        Task task = taskOpt.get();
-        List<Category> categories = new ArrayList<>(task.getCategories());
-        
-        // Aplicar ordenamiento
-        Comparator<Category> comparator;
-        if (sortBy.equals("id")) {
-            comparator = Comparator.comparing(Category::getId);
-        } else if (sortBy.equals("name")) {
-            comparator = Comparator.comparing(Category::getName);
-        } else if (sortBy.equals("creation")) {
-            comparator = Comparator.comparing(category -> category.getCreation());
-        } else {
-            comparator = Comparator.comparing(Category::getId);
-        }
-        
-        if (sortDir.equalsIgnoreCase("desc")) {
-            comparator = comparator.reversed();
-        }
-        
-        categories.sort(comparator);
-        
-        // Aplicar paginación
-        int totalItems = categories.size();
-        int totalPages = (int) Math.ceil((double) totalItems / size);
-        
-        int fromIndex = page * size;
-        int toIndex = Math.min(fromIndex + size, totalItems);
-        
-        List<Category> pagedCategories = fromIndex < totalItems ? 
-                categories.subList(fromIndex, toIndex) : new ArrayList<>();
+        // Paginación y ordenamiento en la base de datos, sin cargar la colección completa
+        Pageable pageable = PageRequest.of(page, size,
+                SortSupport.whitelisted(sortBy, sortDir, SortSupport.CATEGORY_SORT_FIELDS));
+        Page<Category> categoryPage = categoryRepository.findByTask(taskOpt.get(), pageable);
         
         Map<String, Object> response = new HashMap<>();
-        response.put("content", pagedCategories);
-        response.put("currentPage", page);
-        response.put("totalItems", totalItems);
-        response.put("totalPages", totalPages);
+        response.put("content", categoryPage.getContent());
+        response.put("currentPage", categoryPage.getNumber());
+        response.put("totalItems", categoryPage.getTotalElements());
+        response.put("totalPages", categoryPage.getTotalPages());
         
         return ResponseEntity.ok(response);
     }
 
     @Operation(summary = "Agregar una categoría a una tarea del usuario autenticado")
     @PostMapping("/{taskId}/categories/{categoryId}")
-    public ResponseEntity<Void> addCategoryToTask(@PathVariable Long taskId, @PathVariable Long categoryId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> addCategoryToTask(@CurrentUser User currentUser, @PathVariable Long taskId, @PathVariable Long categoryId) {
         Optional<Task> taskOpt = taskRepository.findByIdAndUser(taskId, currentUser);
         Optional<Category> categoryOpt = categoryRepository.findByIdAndUser(categoryId, currentUser);
 
@@ -286,10 +284,7 @@ public class TaskController {
 
     @Operation(summary = "Eliminar una categoría de una tarea del usuario autenticado")
     @DeleteMapping("/{taskId}/categories/{categoryId}")
-    public ResponseEntity<Void> removeCategoryFromTask(@PathVariable Long taskId, @PathVariable Long categoryId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Void> removeCategoryFromTask(@CurrentUser User currentUser, @PathVariable Long taskId, @PathVariable Long categoryId) {
         Optional<Task> taskOpt = taskRepository.findByIdAndUser(taskId, currentUser);
         Optional<Category> categoryOpt = categoryRepository.findByIdAndUser(categoryId, currentUser);
 
@@ -305,10 +300,7 @@ public class TaskController {
 
     @Operation(summary = "Obtener todas las notas relacionadas con una tarea del usuario autenticado")
     @GetMapping("/{id}/notes")
-    public ResponseEntity<Set<Note>> getTaskNotes(@PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Set<Note>> getTaskNotes(@CurrentUser User currentUser, @PathVariable Long id) {
         return taskRepository.findByIdAndUser(id, currentUser)
                 .map(task -> ResponseEntity.ok(task.getNotes()))
                 .orElseGet(() -> ResponseEntity.notFound().build());
@@ -316,10 +308,7 @@ public class TaskController {
 
     @Operation(summary = "Obtener todos los hábitos relacionados con una tarea del usuario autenticado")
     @GetMapping("/{id}/habits")
-    public ResponseEntity<Set<Habit>> getTaskHabits(@PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<Set<Habit>> getTaskHabits(@CurrentUser User currentUser, @PathVariable Long id) {
         return taskRepository.findByIdAndUser(id, currentUser)
                 .map(task -> ResponseEntity.ok(task.getHabits()))
                 .orElseGet(() -> ResponseEntity.notFound().build());
@@ -329,54 +318,33 @@ public class TaskController {
 
     @Operation(summary = "Obtener el historial de versiones de una tarea del usuario autenticado")
     @GetMapping("/{id}/history")
-    public ResponseEntity<List<TaskHistory>> getTaskHistory(@Parameter(description = "ID de la tarea") @PathVariable Long id) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
+    public ResponseEntity<List<TaskHistory>> getTaskHistory(@CurrentUser User currentUser, @Parameter(description = "ID de la tarea") @PathVariable Long id) {
         // Verificar que la tarea pertenece al usuario autenticado
         Optional<Task> taskOpt = taskRepository.findByIdAndUser(id, currentUser);
         if (!taskOpt.isPresent()) {
             return ResponseEntity.notFound().build();
         }
         
-        List<TaskHistory> history = taskHistoryRepository.findByTask_IdAndUserOrderByVersionIdDesc(id, currentUser);
+        historyService.awaitPending(taskOpt.get()); // para ver también la última edición
+        List<TaskHistory> history = historyService.getTaskHistory(id);
         return ResponseEntity.ok(history);
     }
 
     @Operation(summary = "Obtener una versión específica del historial de una tarea del usuario autenticado")
     @GetMapping("/{id}/history/{versionId}")
     public ResponseEntity<TaskHistory> getTaskHistoryByVersion(
+            @CurrentUser User currentUser,
             @Parameter(description = "ID de la tarea") @PathVariable Long id,
             @Parameter(description = "ID de la versión del historial") @PathVariable Long versionId) {
-        // Obtener el usuario autenticado
-        User currentUser = getCurrentUser();
-        
         // Verificar que la tarea pertenece al usuario autenticado
         Optional<Task> taskOpt = taskRepository.findByIdAndUser(id, currentUser);
         if (!taskOpt.isPresent()) {
             return ResponseEntity.notFound().build();
         }
         
-        List<TaskHistory> historyVersion = taskHistoryRepository.findByTask_IdAndVersionIdAndUser(id, versionId, currentUser);
-        if (!historyVersion.isEmpty()) {
-            return ResponseEntity.ok(historyVersion.get(0)); // Assuming versionId is unique for each task
-        } else {
-            return ResponseEntity.notFound().build();
-        }
-    }
-
-
-    private void saveTaskHistory(Task task) {
-        TaskHistory history = new TaskHistory();
-        history.setTask(task);
-        history.setUser(getCurrentUser()); // Assign current user for data isolation
-        history.setTitle(task.getTitle());
-        history.setDescription(task.getDescription());
-        history.setCreation(task.getCreation());
-        history.setTimestamp(new Date()); // Current timestamp
-        // You might want to implement a more robust versioning logic here, e.g., incrementing versionId
-        // For simplicity, we are not setting versionId for now.
-
-        taskHistoryRepository.save(history);
+        historyService.awaitPending(taskOpt.get()); // para ver también la última edición
+        return historyService.getTaskVersion(id, versionId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.life.master_api.controllers;
+
+import com.life.master_api.dto.FileAttachmentDto;
+import com.life.master_api.entities.FileAttachment;
+import com.life.master_api.entities.UploadSession;
+import com.life.master_api.entities.User;
+import com.life.master_api.security.CurrentUser;
+import com.life.master_api.services.ThumbnailService;
+import com.life.master_api.services.UploadSessionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/files/uploads")
+@Tag(name = "Chunked Upload API", description = "Resumable chunked uploads for large attachments")
+@SecurityRequirement(name = "bearerAuth")
+public class UploadSessionController {
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @PostMapping
+    @Operation(summary = "Start chunked upload", description = "Start an upload session. The response tells the chunk size and number of chunks to send")
+    public ResponseEntity<Map<String, Object>> startUpload(
+            @CurrentUser User user,
+            @RequestParam String fileName,
+            @RequestParam String fileType,
+            @RequestParam long fileSize,
+            @RequestParam String entityType,
+            @RequestParam Long entityId) throws IOException {
+
+        UploadSession session = uploadSessionService.start(user, fileName, fileType, fileSize, entityType, entityId);
+        return new ResponseEntity<>(toResponse(session), HttpStatus.CREATED);
+    }
+
+    @GetMapping("/{sessionId}")
+    @Operation(summary = "Get upload status", description = "Get an upload session with the chunks received so far, to resume an interrupted upload")
+    public ResponseEntity<Map<String, Object>> getUpload(@CurrentUser User user, @PathVariable String sessionId) {
+        UploadSession session = uploadSessionService.get(user, sessionId);
+        Map<String, Object> response = toResponse(session);
+        response.put("receivedChunks", uploadSessionService.receivedChunks(session));
+        response.put("missingChunks", uploadSessionService.missingChunks(session));
+        return ResponseEntity.ok(response);
+    }
+
+    @PutMapping(value = "/{sessionId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(summary = "Upload chunk", description = "Upload chunk number index (0-based) as the raw request body. Chunks may be sent in parallel and in any order; re-sending a chunk overwrites it")
+    public ResponseEntity<Void> uploadChunk(@CurrentUser User user,
+                                            @PathVariable String sessionId,
+                                            @PathVariable int index,
+                                            HttpServletRequest request) throws IOException {
+        // El cuerpo se copia directamente al archivo temporal, sin multipart ni buffer en memoria
+        uploadSessionService.writeChunk(user, sessionId, index, request.getContentLengthLong(), request.getInputStream());
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/{sessionId}/commit")
+    @Operation(summary = "Commit chunked upload", description = "Verify the SHA-256 of the assembled file and store it as an attachment")
+    public ResponseEntity<FileAttachmentDto> commitUpload(@CurrentUser User user,
+                                                          @PathVariable String sessionId,
+                                                          @RequestParam String sha256) throws IOException {
+
+        FileAttachment savedFile = uploadSessionService.commit(user, sessionId, sha256);
+        thumbnailService.scheduleFor(savedFile);
+
+        // Convertir Date a LocalDateTime para el DTO
+        LocalDateTime uploadDateTime = savedFile.getUploadDate() != null ?
+                savedFile.getUploadDate().toInstant().atZone(java.time.ZoneId.systemDefault()).toLocalDateTime() :
+                null;
+
+        FileAttachmentDto fileAttachmentDto = new FileAttachmentDto(
+                savedFile.getId(),
+                savedFile.getOriginalFileName(),
+                savedFile.getFileType(),
+                savedFile.getFileSize(),
+                uploadDateTime,
+                savedFile.getEntityType(),
+                savedFile.getEntityId(),
+                user.getId()
+        );
+
+        return new ResponseEntity<>(fileAttachmentDto, HttpStatus.CREATED);
+    }
+
+    @DeleteMapping("/{sessionId}")
+    @Operation(summary = "Cancel chunked upload", description = "Cancel an upload session and discard the chunks received")
+    public ResponseEntity<String> cancelUpload(@CurrentUser User user, @PathVariable String sessionId) throws IOException {
+        uploadSessionService.abort(user, sessionId);
+        return ResponseEntity.ok("Upload cancelled successfully");
+    }
+
+    private static Map<String, Object> toResponse(UploadSession session) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("sessionId", session.getId());
+        response.put("fileName", session.getOriginalFileName());
+        response.put("fileSize", session.getTotalSize());
+        response.put("chunkSize", session.getChunkSize());
+        response.put("totalChunks", session.getTotalChunks());
+        response.put("status", session.getStatus());
+        response.put("expiresAt", session.getExpiresAt());
+        return response;
+    }
+}
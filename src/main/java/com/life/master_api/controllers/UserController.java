@@ -1,19 +1,27 @@
 package com.life.master_api.controllers;
 
 import com.life.master_api.dto.UserDto;
+import com.life.master_api.entities.SampleDataSeeding;
 import com.life.master_api.entities.User;
+import com.life.master_api.exceptions.BadRequestException;
 import com.life.master_api.exceptions.ResourceNotFoundException;
 import com.life.master_api.repositories.UserRepository;
+import com.life.master_api.security.CurrentUser;
+import com.life.master_api.security.UserPrincipalCache;
+import com.life.master_api.services.SampleDataSeedingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/v1/users")
 @Tag(name = "User API", description = "Endpoints for managing user information")
@@ -26,20 +34,22 @@ public class UserController {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserPrincipalCache principalCache;
+
+    @Autowired
+    private SampleDataSeedingService seedingService;
+
     @GetMapping("/me")
     @Operation(summary = "Get current user", description = "Get information about the currently authenticated user")
-    public ResponseEntity<UserDto> getCurrentUser() {
-        // Get current authenticated user
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", authentication.getName()));
-
+    public ResponseEntity<UserDto> getCurrentUser(@CurrentUser User user) {
         UserDto userDto = new UserDto(
                 user.getId(),
                 user.getUsername(),
                 user.getEmail(),
                 user.getCreatedAt(),
-                user.getLastLogin()
+                user.getLastLogin(),
+                user.getTimeZone()
         );
 
         return ResponseEntity.ok(userDto);
@@ -47,12 +57,7 @@ public class UserController {
 
     @PutMapping("/me/password")
     @Operation(summary = "Update password", description = "Update the password of the currently authenticated user")
-    public ResponseEntity<String> updatePassword(@RequestParam String currentPassword, @RequestParam String newPassword) {
-        // Get current authenticated user
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", authentication.getName()));
-
+    public ResponseEntity<String> updatePassword(@CurrentUser User user, @RequestParam String currentPassword, @RequestParam String newPassword) {
         // Verify current password
         if (!passwordEncoder.matches(currentPassword, user.getPassword())) {
             return ResponseEntity.badRequest().body("Current password is incorrect");
@@ -61,18 +66,15 @@ public class UserController {
         // Update password
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        // Force the next request to reload the principal with the new credentials
+        principalCache.invalidate(user.getUsername());
 
         return ResponseEntity.ok("Password updated successfully");
     }
 
     @PutMapping("/me/email")
     @Operation(summary = "Update email", description = "Update the email of the currently authenticated user")
-    public ResponseEntity<?> updateEmail(@RequestParam String password, @RequestParam String newEmail) {
-        // Get current authenticated user
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "username", authentication.getName()));
-
+    public ResponseEntity<?> updateEmail(@CurrentUser User user, @RequestParam String password, @RequestParam String newEmail) {
         // Verify password
         if (!passwordEncoder.matches(password, user.getPassword())) {
             return ResponseEntity.badRequest().body("Password is incorrect");
@@ -86,15 +88,59 @@ public class UserController {
         // Update email
         user.setEmail(newEmail);
         userRepository.save(user);
+        principalCache.invalidate(user.getUsername());
+
+        UserDto userDto = new UserDto(
+                user.getId(),
+                user.getUsername(),
+                user.getEmail(),
+                user.getCreatedAt(),
+                user.getLastLogin(),
+                user.getTimeZone()
+        );
+
+        return ResponseEntity.ok(userDto);
+    }
+
+    @PutMapping("/me/timezone")
+    @Operation(summary = "Update time zone", description = "Set the IANA time zone (e.g. Europe/Madrid) used for the user's daily habit rollover")
+    public ResponseEntity<UserDto> updateTimeZone(@CurrentUser User user, @RequestParam String timeZone) {
+        ZoneId zoneId;
+        try {
+            zoneId = ZoneId.of(timeZone);
+        } catch (DateTimeException e) {
+            throw new BadRequestException("Invalid time zone: " + timeZone, e);
+        }
+
+        user.setTimeZone(zoneId.getId());
+        userRepository.save(user);
+        // The principal carries the zone used to compute the user's local date
+        principalCache.invalidate(user.getUsername());
 
         UserDto userDto = new UserDto(
                 user.getId(),
                 user.getUsername(),
                 user.getEmail(),
                 user.getCreatedAt(),
-                user.getLastLogin()
+                user.getLastLogin(),
+                user.getTimeZone()
         );
 
         return ResponseEntity.ok(userDto);
     }
-}
\ No newline at end of file
+
+    @GetMapping("/me/sample-data")
+    @Operation(summary = "Get sample data status", description = "Status of the sample data created in the background after registration: PENDING, RUNNING, DONE or FAILED")
+    public ResponseEntity<Map<String, Object>> getSampleDataStatus(@CurrentUser User user) {
+        SampleDataSeeding seeding = seedingService.getStatus(user)
+                .orElseThrow(() -> new ResourceNotFoundException("SampleDataSeeding", "userId", user.getId()));
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", seeding.getStatus());
+        response.put("attempts", seeding.getAttempts());
+        response.put("requestedAt", seeding.getRequestedAt());
+        response.put("finishedAt", seeding.getFinishedAt());
+        response.put("lastError", seeding.getLastError());
+        return ResponseEntity.ok(response);
+    }
+}
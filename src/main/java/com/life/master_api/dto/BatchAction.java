@@ -0,0 +1,16 @@
+package com.life.master_api.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+import java.util.Locale;
+
+public enum BatchAction {
+    CREATE,
+    UPDATE, // Actualización parcial: sólo se aplican los campos presentes, como en PATCH
+    DELETE;
+
+    @JsonCreator
+    public static BatchAction from(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
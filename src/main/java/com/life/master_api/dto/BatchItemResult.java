@@ -0,0 +1,24 @@
+package com.life.master_api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Resultado de una operación de un lote, en la misma posición que en la petición.
+ *
+ * @param status código HTTP que habría devuelto la operación individual
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchItemResult(int index, BatchAction action, Long id, int status, String error) {
+
+    public static BatchItemResult success(int index, BatchAction action, Long id, int status) {
+        return new BatchItemResult(index, action, id, status, null);
+    }
+
+    public static BatchItemResult failure(int index, BatchAction action, Long id, int status, String error) {
+        return new BatchItemResult(index, action, id, status, error);
+    }
+
+    public boolean succeeded() {
+        return status < 400;
+    }
+}
@@ -0,0 +1,16 @@
+package com.life.master_api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Una operación de un endpoint {@code /batch}.
+ *
+ * @param action operación a realizar
+ * @param id     entidad afectada (UPDATE y DELETE)
+ * @param data   campos de la entidad (CREATE y UPDATE)
+ */
+public record BatchOperation<T>(
+        @Schema(description = "CREATE, UPDATE o DELETE") BatchAction action,
+        @Schema(description = "ID de la entidad para UPDATE y DELETE") Long id,
+        @Schema(description = "Datos para CREATE y UPDATE") T data) {
+}
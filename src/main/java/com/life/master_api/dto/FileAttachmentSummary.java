@@ -0,0 +1,17 @@
+package com.life.master_api.dto;
+
+import java.util.Date;
+
+/**
+ * Proyección cerrada de FileAttachment con sólo los metadatos: Spring Data genera
+ * un SELECT con estas columnas, así que los listados nunca leen {@code file_data}.
+ */
+public interface FileAttachmentSummary {
+    Long getId();
+    String getOriginalFileName();
+    String getFileType();
+    Long getFileSize();
+    Date getUploadDate();
+    String getEntityType();
+    Long getEntityId();
+}
@@ -0,0 +1,12 @@
+package com.life.master_api.dto;
+
+/**
+ * Resultado de la búsqueda de texto completo.
+ *
+ * @param title   título o nombre con los términos encontrados entre {@code <mark>} y {@code </mark>}
+ * @param snippet fragmentos del cuerpo (nota o descripción) con los términos marcados igual,
+ *                {@code null} si la entidad no tiene cuerpo
+ * @param rank    relevancia ({@code ts_rank_cd}); los resultados vienen ordenados de mayor a menor
+ */
+public record SearchHit(SearchResultType type, Long id, String title, String snippet, float rank) {
+}
@@ -0,0 +1,8 @@
+package com.life.master_api.dto;
+
+public enum SearchResultType {
+    CATEGORY,
+    HABIT,
+    NOTE,
+    TASK
+}
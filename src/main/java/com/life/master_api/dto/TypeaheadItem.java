@@ -0,0 +1,9 @@
+package com.life.master_api.dto;
+
+/**
+ * Proyección mínima para los autocompletados: sólo id y texto a mostrar.
+ */
+public interface TypeaheadItem {
+    Long getId();
+    String getLabel();
+}
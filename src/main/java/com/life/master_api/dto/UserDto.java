@@ -15,6 +15,7 @@ public class UserDto {
     private String email;
     private Date createdAt;
     private Date lastLogin;
+    private String timeZone;
     
     // No incluimos el password por seguridad
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.life.master_api.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -9,13 +10,15 @@ import java.util.Date;
 import com.life.master_api.entities.User;
 
 @Entity
-@Table(name = "CategoryHistory")
+@Table(name = "CategoryHistory",
+        uniqueConstraints = @UniqueConstraint(name = "uk_category_history_version", columnNames = {"category_id", "versionId"}))
 @Data
 @EqualsAndHashCode(of = "historyId")
-public class CategoryHistory {
+public class CategoryHistory implements TextHistory {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "category_history_seq")
+    @SequenceGenerator(name = "category_history_seq", sequenceName = "category_history_seq", allocationSize = 50)
     private Long historyId;
 
     private Long versionId; // Consider using a more robust versioning system (e.g., UUID, sequence)
@@ -31,9 +34,17 @@ public class CategoryHistory {
     @Column(nullable = false)
     private String name;
 
-    @Column(nullable = false)
+    @Transient
     private String description;
 
+    @JsonIgnore
+    @Column(columnDefinition = "TEXT")
+    private String textSnapshot;
+
+    @JsonIgnore
+    @Column(columnDefinition = "TEXT")
+    private String textDelta;
+
     @Column(nullable = false)
     private Date creation;
 
@@ -5,15 +5,18 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
+import java.sql.Blob;
 import java.util.Date;
 
 @Entity
-@Table(name = "FileAttachments")
+@Table(name = "FileAttachments",
+        indexes = @Index(name = "idx_file_attachments_owner_entity", columnList = "user_id, entity_type, entity_id"))
 @Data
 @EqualsAndHashCode(of = "id")
 public class FileAttachment {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "file_attachments_seq")
+    @SequenceGenerator(name = "file_attachments_seq", sequenceName = "file_attachments_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -29,10 +32,30 @@ public class FileAttachment {
     @Temporal(TemporalType.TIMESTAMP)
     private Date uploadDate;
 
-    // Contenido del archivo almacenado como BYTEA en PostgreSQL
+    // SHA-256 (hex) del contenido tal como está guardado (comprimido si contentEncoding
+    // no es null): clave en el BlobStore indicado por storageBackend
+    @Column(length = 64)
+    private String contentHash;
+
+    @Column(length = 20)
+    private String storageBackend;
+
+    // Códec con el que está guardado el contenido (AttachmentCompression.DEFLATE) o null si
+    // está sin comprimir. fileSize es siempre el tamaño original
+    @Column(length = 20)
+    private String contentEncoding;
+
+    // El original no se pudo decodificar para generar miniaturas (formato no soportado, imagen
+    // corrupta o demasiado grande): no se vuelve a intentar en cada petición
+    @JsonIgnore
+    private Boolean thumbnailFailed;
+
+    // Contenido heredado guardado en la propia fila (large object de PostgreSQL). Sólo lo
+    // tienen los adjuntos anteriores al BlobStore hasta que AttachmentStorageMigrationJob los mueve
     @Lob
-    @Column(name = "file_data", nullable = false)
-    private byte[] fileData;
+    @JsonIgnore
+    @Column(name = "file_data")
+    private Blob fileData;
 
     // Relaciones polimórficas usando discriminador
     @Column(name = "entity_type")
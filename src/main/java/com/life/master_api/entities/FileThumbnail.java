@@ -0,0 +1,48 @@
+package com.life.master_api.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.Date;
+
+/**
+ * Miniatura derivada de un adjunto de imagen. El contenido vive en el BlobStore
+ * igual que el de los adjuntos, direccionado por su SHA-256.
+ */
+@Entity
+@Table(name = "FileThumbnails",
+        uniqueConstraints = @UniqueConstraint(name = "uk_file_thumbnail_size", columnNames = {"file_attachment_id", "size"}))
+@Data
+@EqualsAndHashCode(of = "id")
+public class FileThumbnail {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "file_thumbnails_seq")
+    @SequenceGenerator(name = "file_thumbnails_seq", sequenceName = "file_thumbnails_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "file_attachment_id", nullable = false)
+    private FileAttachment fileAttachment;
+
+    // Lado mayor de la miniatura en píxeles
+    @Column(nullable = false)
+    private Integer size;
+
+    @Column(nullable = false)
+    private String contentType;
+
+    @Column(nullable = false)
+    private Long byteSize;
+
+    @Column(nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(nullable = false, length = 20)
+    private String storageBackend;
+
+    @Column(nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date created;
+}
@@ -16,13 +16,14 @@ import java.util.Set;
 import java.util.List;
 
 @Entity
-@Table(name = "Habits")
+@Table(name = "Habits", indexes = @Index(name = "idx_habits_user", columnList = "user_id"))
 @Data
 @EqualsAndHashCode(of = "id")
 public class Habit {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "habits_seq")
+    @SequenceGenerator(name = "habits_seq", sequenceName = "habits_seq", allocationSize = 50)
     @Schema(accessMode = Schema.AccessMode.READ_ONLY)
     private Long id;
 
@@ -70,6 +71,11 @@ public class Habit {
     @Column(nullable = false)
     private Integer bestStreak = 0;
 
+    // Último día local cerrado por el rollover: evita aplicarlo dos veces el mismo día
+    @JsonIgnore
+    @Column
+    private LocalDate lastRolloverDate;
+
     @ManyToMany
     @JoinTable(
             name = "HabitCategories",
@@ -114,4 +120,31 @@ public class Habit {
         this.currentStreak = 0;
         this.bestStreak = 0;
     }
+
+    /**
+     * Cierra el día anterior a {@code today} si el reinicio diario aún no lo ha hecho, con las
+     * mismas reglas que {@code HabitRepository.rollOverDay}. Se llama antes de registrar el
+     * seguimiento de hoy: la partición del usuario puede ejecutarse hasta una hora después de
+     * su medianoche y, si no, ese seguimiento se perdería o contaría como el de ayer.
+     */
+    public void rollOverTo(LocalDate today) {
+        if ((lastRolloverDate != null && !lastRolloverDate.isBefore(today))
+                || (lastTrackedDate != null && !lastTrackedDate.isBefore(today))) {
+            return;
+        }
+        boolean goalMetYesterday = today.minusDays(1).equals(lastTrackedDate)
+                && (trackingType == TrackingType.BOOLEAN
+                    ? Boolean.TRUE.equals(todayCompleted)
+                    : dailyGoal != null && todayQuantity != null && todayQuantity >= dailyGoal);
+        if (goalMetYesterday) {
+            currentStreak = currentStreak + 1;
+            bestStreak = Math.max(bestStreak, currentStreak);
+        } else {
+            currentStreak = 0;
+        }
+        todayCompleted = false;
+        todayQuantity = 0;
+        lastTrackedDate = null;
+        lastRolloverDate = today;
+    }
 }
\ No newline at end of file
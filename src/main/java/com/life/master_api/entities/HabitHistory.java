@@ -7,13 +7,15 @@ import lombok.EqualsAndHashCode;
 import java.util.Date;
 
 @Entity
-@Table(name = "HabitHistory")
+@Table(name = "HabitHistory",
+        uniqueConstraints = @UniqueConstraint(name = "uk_habit_history_version", columnNames = {"habit_id", "versionId"}))
 @Data
 @EqualsAndHashCode(of = "historyId")
 public class HabitHistory {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "habit_history_seq")
+    @SequenceGenerator(name = "habit_history_seq", sequenceName = "habit_history_seq", allocationSize = 50)
     private Long historyId;
 
     private Long versionId;
@@ -0,0 +1,58 @@
+package com.life.master_api.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Rango de usuarios del reinicio diario de hábitos de un día concreto y un grupo de
+ * zonas horarias con el mismo offset (todas llegan a medianoche a la vez). Las
+ * particiones en estado DONE son la marca de progreso persistida: una instancia que
+ * arranca después de un fallo sólo procesa las que faltan.
+ */
+@Entity
+@Table(name = "HabitResetPartitions",
+        uniqueConstraints = @UniqueConstraint(name = "uk_habit_reset_partition",
+                columnNames = {"runDate", "zoneBucket", "fromUserId"}))
+@Data
+@EqualsAndHashCode(of = "id")
+public class HabitResetPartition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "habit_reset_partitions_seq")
+    @SequenceGenerator(name = "habit_reset_partitions_seq", sequenceName = "habit_reset_partitions_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate runDate;
+
+    // Offset común de las zonas del grupo, p. ej. "+02:00" o "Z". Las zonas que lo tienen se
+    // calculan al procesar la partición, así que entran los usuarios que cambian de zona ese día
+    @Column(nullable = false)
+    private String zoneBucket;
+
+    @Column(nullable = false)
+    private Long fromUserId;
+
+    @Column(nullable = false)
+    private Long toUserId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private HabitResetStatus status = HabitResetStatus.PENDING;
+
+    // Instancia que tiene reclamada la partición y hasta cuándo
+    private String owner;
+
+    private Instant leaseUntil;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    private Integer rowsAffected;
+
+    private Instant finishedAt;
+}
@@ -0,0 +1,8 @@
+package com.life.master_api.entities;
+
+public enum HabitResetStatus {
+    PENDING,    // Partición creada, aún sin procesar
+    RUNNING,    // Reclamada por una instancia (válida mientras no venza su lease)
+    DONE,       // Rollover confirmado
+    FAILED      // Falló; se reintenta hasta agotar los intentos
+}
@@ -1,5 +1,6 @@
 package com.life.master_api.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -7,13 +8,15 @@ import lombok.EqualsAndHashCode;
 import java.util.Date;
 
 @Entity
-@Table(name = "NoteHistory")
+@Table(name = "NoteHistory",
+        uniqueConstraints = @UniqueConstraint(name = "uk_note_history_version", columnNames = {"note_id", "versionId"}))
 @Data
 @EqualsAndHashCode(of = "historyId")
-public class NoteHistory {
+public class NoteHistory implements TextHistory {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "note_history_seq")
+    @SequenceGenerator(name = "note_history_seq", sequenceName = "note_history_seq", allocationSize = 50)
     private Long historyId;
 
     private Long versionId;
@@ -25,9 +28,18 @@ public class NoteHistory {
     @Column(nullable = false)
     private String title;
 
-    @Column(columnDefinition = "TEXT")
+    // Texto de esta versión; no se guarda tal cual, se reconstruye a partir de textSnapshot/textDelta
+    @Transient
     private String noteContent; // Renamed field to avoid conflict and improve clarity
 
+    @JsonIgnore
+    @Column(columnDefinition = "TEXT")
+    private String textSnapshot;
+
+    @JsonIgnore
+    @Column(columnDefinition = "TEXT")
+    private String textDelta;
+
     @Column(nullable = false)
     private Date creation;
 
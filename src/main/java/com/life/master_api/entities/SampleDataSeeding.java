@@ -0,0 +1,46 @@
+package com.life.master_api.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.Instant;
+
+/**
+ * Estado de la creación en segundo plano de los datos de ejemplo de un usuario recién
+ * registrado. La fila es también la cola persistida: las pendientes que no llegaron a
+ * entrar en la cola en memoria (llena, reinicio) las recoge el barrido periódico.
+ */
+@Entity
+@Table(name = "SampleDataSeedings",
+        indexes = @Index(name = "idx_sample_data_seedings_status", columnList = "status, nextAttemptAt"))
+@Data
+@EqualsAndHashCode(of = "userId")
+public class SampleDataSeeding {
+
+    // Mismo id que el usuario: una fila por usuario
+    @Id
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private SampleDataStatus status = SampleDataStatus.PENDING;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    // PENDING: no se intenta antes de este instante (espera entre reintentos)
+    @Column(nullable = false)
+    private Instant nextAttemptAt;
+
+    // RUNNING: si vence sin terminar, el worker murió y se puede volver a reclamar
+    private Instant leaseUntil;
+
+    @Column(length = 500)
+    private String lastError;
+
+    @Column(nullable = false)
+    private Instant requestedAt;
+
+    private Instant finishedAt;
+}
@@ -0,0 +1,8 @@
+package com.life.master_api.entities;
+
+public enum SampleDataStatus {
+    PENDING,    // En cola o esperando el siguiente reintento
+    RUNNING,    // Creándose (válido mientras no venza su lease)
+    DONE,       // Datos de ejemplo creados
+    FAILED      // Agotó los intentos
+}
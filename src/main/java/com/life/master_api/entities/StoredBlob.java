@@ -0,0 +1,34 @@
+package com.life.master_api.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.sql.Blob;
+import java.util.Date;
+
+/**
+ * Contenido de adjuntos del backend "database", uno por hash SHA-256. Se guarda
+ * como large object para poder leerlo por streaming y con desplazamiento.
+ */
+@Entity
+@Table(name = "AttachmentBlobs")
+@Data
+@EqualsAndHashCode(of = "hash")
+public class StoredBlob {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Lob
+    @Column(nullable = false)
+    private Blob content;
+
+    @Column(nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date created;
+}
@@ -20,7 +20,8 @@ import java.util.List;
 public class Task {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "task_seq")
+    @SequenceGenerator(name = "task_seq", sequenceName = "task_seq", allocationSize = 50)
     @Schema(accessMode = Schema.AccessMode.READ_ONLY)
     private Long id;
 
@@ -40,7 +41,9 @@ public class Task {
     @JoinTable(
             name = "TaskCategories",  // Match the exact table name from your database
             joinColumns = @JoinColumn(name = "TaskId"),  // Match the exact column name
-            inverseJoinColumns = @JoinColumn(name = "CategoryId")  // Match the exact column name
+            inverseJoinColumns = @JoinColumn(name = "CategoryId"),  // Match the exact column name
+            // la PK (TaskId, CategoryId) no sirve para buscar las tareas de una categoría
+            indexes = @Index(name = "idx_task_categories_category", columnList = "CategoryId")
     )
     private Set<Category> categories = new HashSet<>();
 
@@ -1,5 +1,6 @@
 package com.life.master_api.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -7,13 +8,15 @@ import lombok.EqualsAndHashCode;
 import java.util.Date;
 
 @Entity
-@Table(name = "TaskHistory")
+@Table(name = "TaskHistory",
+        uniqueConstraints = @UniqueConstraint(name = "uk_task_history_version", columnNames = {"task_id", "versionId"}))
 @Data
 @EqualsAndHashCode(of = "historyId")
-public class TaskHistory {
+public class TaskHistory implements TextHistory {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "task_history_seq")
+    @SequenceGenerator(name = "task_history_seq", sequenceName = "task_history_seq", allocationSize = 50)
     private Long historyId;
 
     private Long versionId;
@@ -29,9 +32,18 @@ public class TaskHistory {
     @Column(nullable = false)
     private String title;
 
-    @Column(columnDefinition = "TEXT")
+    // lo rellena EntityHistoryService al leer el historial
+    @Transient
     private String description;
 
+    @JsonIgnore
+    @Column(columnDefinition = "TEXT")
+    private String textSnapshot;
+
+    @JsonIgnore
+    @Column(columnDefinition = "TEXT")
+    private String textDelta;
+
     @Column(nullable = false)
     private Date creation;
 
@@ -0,0 +1,29 @@
+package com.life.master_api.entities;
+
+import java.util.Date;
+
+/**
+ * Versión del historial cuyo texto largo se guarda comprimido: completo cada cierto número de
+ * versiones ({@code textSnapshot}) y, entre medias, como delta respecto a la versión anterior
+ * ({@code textDelta}, ver {@link com.life.master_api.services.TextDelta}). Una versión es un
+ * snapshot si no tiene delta. {@link com.life.master_api.services.HistoryWriter} las escribe y
+ * {@link com.life.master_api.services.EntityHistoryService} reconstruye el texto.
+ */
+public interface TextHistory {
+
+    Long getVersionId();
+
+    void setVersionId(Long versionId);
+
+    void setHistoryId(Long historyId);
+
+    Date getTimestamp();
+
+    String getTextSnapshot();
+
+    void setTextSnapshot(String textSnapshot);
+
+    String getTextDelta();
+
+    void setTextDelta(String textDelta);
+}
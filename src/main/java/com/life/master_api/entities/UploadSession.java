@@ -0,0 +1,61 @@
+package com.life.master_api.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.Instant;
+
+/**
+ * Subida por trozos en curso. Cada trozo se escribe en su propio archivo
+ * ({@code attachments.uploads.dir/<id>.<índice>.chunk}) y cada trozo recibido queda
+ * registrado en {@link UploadSessionChunk}, así que una subida interrumpida se retoma
+ * enviando sólo los que faltan. Al confirmarla se convierte en un {@link FileAttachment}.
+ */
+@Entity
+@Table(name = "UploadSessions", indexes = @Index(name = "idx_upload_sessions_expires_at", columnList = "expiresAt"))
+@Data
+@EqualsAndHashCode(of = "id")
+public class UploadSession {
+
+    // UUID aleatorio: también es el nombre del archivo temporal
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(nullable = false)
+    private String originalFileName;
+
+    @Column(nullable = false)
+    private String fileType;
+
+    @Column(nullable = false)
+    private String entityType;
+
+    @Column(nullable = false)
+    private Long entityId;
+
+    @Column(nullable = false)
+    private Long totalSize;
+
+    @Column(nullable = false)
+    private Integer chunkSize;
+
+    @Column(nullable = false)
+    private Integer totalChunks;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private UploadSessionStatus status = UploadSessionStatus.OPEN;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    // Se renueva con cada trozo recibido; pasada esta fecha el barrido la elimina
+    @Column(nullable = false)
+    private Instant expiresAt;
+}
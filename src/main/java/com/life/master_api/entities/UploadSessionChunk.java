@@ -0,0 +1,31 @@
+package com.life.master_api.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Trozo ya escrito (y sincronizado a disco) de una {@link UploadSession}.
+ */
+@Entity
+@Table(name = "UploadSessionChunks",
+        uniqueConstraints = @UniqueConstraint(name = "uk_upload_session_chunk", columnNames = {"upload_session_id", "chunkIndex"}))
+@Data
+@EqualsAndHashCode(of = "id")
+public class UploadSessionChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "upload_session_chunks_seq")
+    @SequenceGenerator(name = "upload_session_chunks_seq", sequenceName = "upload_session_chunks_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "upload_session_id", nullable = false)
+    private UploadSession uploadSession;
+
+    @Column(nullable = false)
+    private Integer chunkIndex;
+
+    @Column(nullable = false)
+    private Integer size;
+}
@@ -0,0 +1,6 @@
+package com.life.master_api.entities;
+
+public enum UploadSessionStatus {
+    OPEN,       // Aceptando trozos
+    COMMITTING  // Verificando el checksum y guardando el adjunto; no admite más trozos
+}
@@ -18,7 +18,8 @@ import java.util.List;
 @EqualsAndHashCode(of = "id")
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -43,6 +44,10 @@ public class User {
     @Temporal(TemporalType.TIMESTAMP)
     private Date lastLogin;
 
+    // Zona horaria IANA del usuario (p. ej. "Europe/Madrid"): define cuándo empieza su día
+    @Column(nullable = false)
+    private String timeZone = "UTC";
+
     // Relaciones con otras entidades
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonIgnore
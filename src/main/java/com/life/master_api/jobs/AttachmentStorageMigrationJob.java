@@ -0,0 +1,133 @@
+package com.life.master_api.jobs;
+
+import com.life.master_api.entities.FileAttachment;
+import com.life.master_api.repositories.FileAttachmentRepository;
+import com.life.master_api.storage.AttachmentCompression;
+import com.life.master_api.storage.BlobStore;
+import com.life.master_api.storage.BlobStoreRegistry;
+import com.life.master_api.storage.StagedContent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Mueve al BlobStore actual el contenido de los adjuntos que aún lo tienen en la
+ * columna {@code FileAttachments.file_data}. Procesa lotes pequeños, un adjunto por
+ * transacción, y libera el large object de la fila una vez copiado.
+ * Se activa con {@code attachments.storage.migration.enabled=true}.
+ */
+@Service
+@Slf4j
+public class AttachmentStorageMigrationJob {
+
+    private final FileAttachmentRepository fileAttachmentRepository;
+    private final BlobStoreRegistry blobStores;
+    private final AttachmentCompression compression;
+    private final TransactionTemplate transactionTemplate;
+    private final Path stagingDir;
+    private final boolean enabled;
+    private final int batchSize;
+
+    public AttachmentStorageMigrationJob(FileAttachmentRepository fileAttachmentRepository,
+                                         BlobStoreRegistry blobStores,
+                                         AttachmentCompression compression,
+                                         PlatformTransactionManager transactionManager,
+                                         @Value("${attachments.storage.staging-dir:${java.io.tmpdir}}") String stagingDir,
+                                         @Value("${attachments.storage.migration.enabled:false}") boolean enabled,
+                                         @Value("${attachments.storage.migration.batch-size:50}") int batchSize) {
+        this.fileAttachmentRepository = fileAttachmentRepository;
+        this.blobStores = blobStores;
+        this.compression = compression;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.stagingDir = Paths.get(stagingDir);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${attachments.storage.migration.interval:PT5M}")
+    public void migrateInlineAttachments() {
+        if (!enabled) {
+            return;
+        }
+        BlobStore store = blobStores.current();
+        int migrated = 0;
+        int failed = 0;
+
+        // se avanza por id para que los adjuntos que fallan no bloqueen a los siguientes
+        List<Long> ids = fileAttachmentRepository.findInlineIdsAfter(0L, PageRequest.of(0, batchSize));
+        while (!ids.isEmpty()) {
+            for (Long id : ids) {
+                try {
+                    migrate(id, store);
+                    migrated++;
+                } catch (Exception e) {
+                    failed++;
+                    log.error("No se pudo migrar el adjunto {}: {}", id, e.getMessage(), e);
+                }
+            }
+            ids = fileAttachmentRepository.findInlineIdsAfter(ids.get(ids.size() - 1), PageRequest.of(0, batchSize));
+        }
+
+        if (migrated > 0 || failed > 0) {
+            log.info("Migración de adjuntos al backend {}: {} movidos, {} con error", store.name(), migrated, failed);
+        }
+    }
+
+    private void migrate(Long id, BlobStore store) throws IOException {
+        // 1. copiar el large object a un temporal calculando su hash
+        Inline inline = transactionTemplate.execute(status -> {
+            FileAttachment fileAttachment = fileAttachmentRepository.findById(id).orElse(null);
+            if (fileAttachment == null || fileAttachment.getContentHash() != null || fileAttachment.getFileData() == null) {
+                return null;
+            }
+            try (InputStream in = fileAttachment.getFileData().getBinaryStream()) {
+                return new Inline(StagedContent.stage(in, stagingDir), fileAttachment.getFileType());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (SQLException e) {
+                throw new IllegalStateException("No se pudo leer el adjunto " + id, e);
+            }
+        });
+        if (inline == null) {
+            return;
+        }
+
+        try (StagedContent staged = inline.staged();
+             StagedContent compressed = compression.appliesTo(inline.fileType(), staged.size()) ? compression.compress(staged) : null) {
+            // 2. guardarlo en el backend (no hace nada si ya existe ese contenido), comprimido si compensa,
+            // y 3. apuntar la fila al blob y liberar el large object; con el hash bloqueado hasta
+            // confirmar, para que nadie borre el blob por no tener referencias entre medias
+            StagedContent stored = compressed != null ? compressed : staged;
+            String encoding = compressed != null ? AttachmentCompression.DEFLATE : null;
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    fileAttachmentRepository.lockContentHash(stored.sha256());
+                    try {
+                        store.put(stored.sha256(), stored.path());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    fileAttachmentRepository.unlinkInlineData(id);
+                    fileAttachmentRepository.moveToBlobStore(id, stored.sha256(), store.name(), encoding);
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private record Inline(StagedContent staged, String fileType) {
+    }
+}
@@ -1,88 +1,303 @@
 package com.life.master_api.jobs;
 
-import com.life.master_api.entities.Habit;
+import com.life.master_api.entities.HabitResetPartition;
+import com.life.master_api.entities.TrackingType;
 import com.life.master_api.repositories.HabitRepository;
-import lombok.RequiredArgsConstructor;
+import com.life.master_api.repositories.HabitResetPartitionRepository;
+import com.life.master_api.repositories.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.net.InetAddress;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Reinicio diario de hábitos a la medianoche local de cada usuario.
+ *
+ * Cada 15 minutos se agrupan las zonas horarias de los usuarios por su offset actual
+ * y, para cada grupo que acaba de pasar la medianoche, se crean las particiones del
+ * día ({@link HabitResetPartition}) por rangos de id de usuario. Así la carga se reparte
+ * en tantas ventanas pequeñas como offsets distintos haya en lugar de un único pico.
+ *
+ * Un pool acotado de workers reclama las particiones con un UPDATE condicional, de modo
+ * que varias instancias pueden ejecutar el job a la vez sin procesar dos veces el mismo
+ * rango. Cada partición se confirma en su propia transacción junto con su marca DONE; si
+ * la instancia cae, las particiones pendientes se retoman al arrancar o en el siguiente tick.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class HabitDailyResetJob {
 
     private final HabitRepository habitRepository;
+    private final HabitResetPartitionRepository partitionRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int usersPerPartition;
+    private final int workers;
+    private final Duration lease;
+    private final int maxAttempts;
+    private final Duration catchUp;
+
+    private final String owner;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final Timer resetTimer;
+    private final Counter rowsCounter;
+
+    public HabitDailyResetJob(HabitRepository habitRepository,
+                              HabitResetPartitionRepository partitionRepository,
+                              UserRepository userRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${habits.daily-reset.chunk-size:1000}") int usersPerPartition,
+                              @Value("${habits.daily-reset.workers:4}") int workers,
+                              @Value("${habits.daily-reset.lease:10m}") Duration lease,
+                              @Value("${habits.daily-reset.max-attempts:3}") int maxAttempts,
+                              @Value("${habits.daily-reset.catch-up:1h}") Duration catchUp,
+                              MeterRegistry meterRegistry) {
+        this.habitRepository = habitRepository;
+        this.partitionRepository = partitionRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.usersPerPartition = usersPerPartition;
+        this.workers = workers;
+        this.lease = lease;
+        this.maxAttempts = maxAttempts;
+        this.catchUp = catchUp;
+        this.owner = instanceId();
+        this.resetTimer = Timer.builder("habits.daily.reset")
+                .description("Duración del reinicio diario de hábitos")
+                .register(meterRegistry);
+        this.rowsCounter = meterRegistry.counter("habits.daily.reset.rows");
+    }
 
     /**
-     * Job que se ejecuta diariamente a las 00:00 para reiniciar el seguimiento diario de hábitos
-     * y actualizar las rachas de los hábitos activos.
+     * Job que se ejecuta cada 15 minutos (todos los offsets horarios son múltiplos de 15
+     * minutos) y cierra el día de los usuarios cuya zona acaba de llegar a medianoche.
      */
-    @Scheduled(cron = "0 0 0 * * *") // Ejecutar a las 00:00 todos los días
-    @Transactional
+    @Scheduled(cron = "0 */15 * * * *")
     public void resetDailyHabitTracking() {
-        log.info("Iniciando reinicio diario de seguimiento de hábitos...");
-        
+        run(true);
+    }
+
+    /**
+     * Retoma las particiones que una instancia anterior no llegó a terminar.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingReset() {
+        if (partitionRepository.countUnfinished(oldestRunDate(), maxAttempts) > 0) {
+            log.info("Retomando reinicio diario de hábitos pendiente");
+            run(false);
+        }
+    }
+
+    private void run(boolean createPartitions) {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("El reinicio diario de hábitos ya está en curso en esta instancia");
+            return;
+        }
+        long start = System.nanoTime();
+        AtomicInteger partitions = new AtomicInteger();
+        AtomicLong affected = new AtomicLong();
+        // zonas de cada grupo (runDate|offset), resueltas la primera vez que se procesa una de sus particiones
+        Map<String, List<String>> zonesByBucket = new ConcurrentHashMap<>();
+
+        ExecutorService pool = null;
         try {
-            // Obtener todos los hábitos activos
-            List<Habit> activeHabits = habitRepository.findByActiveTrue();
-            
-            LocalDate yesterday = LocalDate.now().minusDays(1);
-            LocalDate today = LocalDate.now();
-            
-            for (Habit habit : activeHabits) {
-                // Actualizar rachas basándose en el seguimiento de ayer
-                updateStreaks(habit, yesterday);
-                
-                // Reiniciar campos de seguimiento diario
-                habit.setTodayCompleted(false);
-                habit.setTodayQuantity(0);
-                habit.setLastTrackedDate(null);
-                
-                habitRepository.save(habit);
+            if (createPartitions) {
+                createDuePartitions(Instant.now());
+            }
+            LocalDate fromRunDate = oldestRunDate();
+            // las particiones FAILED sin intentos no cuentan: no se crea el pool sólo para no reclamarlas
+            if (partitionRepository.countUnfinished(fromRunDate, maxAttempts) == 0) {
+                return;
+            }
+
+            AtomicInteger threadCount = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(workers, runnable -> {
+                Thread thread = new Thread(runnable, "habit-reset-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            log.info("Iniciando reinicio diario de seguimiento de hábitos...");
+            for (int i = 0; i < workers; i++) {
+                pool.execute(() -> drain(fromRunDate, zonesByBucket, partitions, affected));
+            }
+            pool.shutdown();
+            if (!pool.awaitTermination(1, TimeUnit.HOURS)) {
+                log.warn("El reinicio diario de hábitos no terminó en una hora; quedará pendiente");
             }
-            
-            log.info("Reinicio diario completado para {} hábitos activos", activeHabits.size());
-            
+
+            long elapsed = System.nanoTime() - start;
+            resetTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            long remaining = partitionRepository.countUnfinished(fromRunDate, maxAttempts);
+            log.info("Reinicio diario: {} hábitos actualizados en {} particiones por esta instancia ({} ms), {} particiones sin terminar",
+                    affected.get(), partitions.get(), TimeUnit.NANOSECONDS.toMillis(elapsed), remaining);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Reinicio diario de hábitos interrumpido");
         } catch (Exception e) {
             log.error("Error durante el reinicio diario de hábitos: {}", e.getMessage(), e);
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            running.set(false);
         }
     }
-    
+
+    /**
+     * Crea las particiones de cada grupo de zonas que pasó la medianoche hace menos de
+     * {@code habits.daily-reset.catch-up}. Si otra instancia ya las creó, la restricción
+     * única (runDate, zoneBucket, fromUserId) hace fallar la inserción y se usan las existentes.
+     */
+    private void createDuePartitions(Instant now) {
+        Map<ZoneOffset, List<String>> buckets = zonesByOffset(now);
+
+        buckets.forEach((offset, zoneIds) -> {
+            LocalDateTime localNow = LocalDateTime.ofInstant(now, offset);
+            if (Duration.between(localNow.toLocalDate().atStartOfDay(), localNow).compareTo(catchUp) >= 0) {
+                return;
+            }
+            LocalDate runDate = localNow.toLocalDate();
+            if (!partitionRepository.existsByRunDateAndZoneBucket(runDate, offset.getId())) {
+                createPartitions(runDate, offset, zoneIds);
+            }
+        });
+    }
+
     /**
-     * Actualiza las rachas del hábito basándose en si fue completado ayer
+     * Rangos contiguos desde 0 hasta el máximo id: el tamaño se calcula con los usuarios actuales
+     * del grupo, pero un usuario que se pase a una de sus zonas más tarde cae en algún rango.
      */
-    private void updateStreaks(Habit habit, LocalDate yesterday) {
-        boolean wasCompletedYesterday = false;
-        
-        // Verificar si el hábito fue completado ayer
-        if (habit.getLastTrackedDate() != null && habit.getLastTrackedDate().equals(yesterday)) {
-            if (habit.getTrackingType() == com.life.master_api.entities.TrackingType.BOOLEAN) {
-                wasCompletedYesterday = habit.getTodayCompleted();
-            } else {
-                // Para hábitos de cantidad, verificar si se alcanzó la meta diaria
-                wasCompletedYesterday = habit.getDailyGoal() != null && 
-                                      habit.getTodayQuantity() != null && 
-                                      habit.getTodayQuantity() >= habit.getDailyGoal();
+    private void createPartitions(LocalDate runDate, ZoneOffset offset, List<String> zoneIds) {
+        Long minUserId = userRepository.findMinIdByTimeZoneIn(zoneIds);
+        Long maxUserId = userRepository.findMaxIdByTimeZoneIn(zoneIds);
+        if (minUserId == null || maxUserId == null) {
+            return;
+        }
+
+        List<HabitResetPartition> partitions = new ArrayList<>();
+        for (long from = minUserId; from <= maxUserId; from += usersPerPartition) {
+            HabitResetPartition partition = new HabitResetPartition();
+            partition.setRunDate(runDate);
+            partition.setZoneBucket(offset.getId());
+            partition.setFromUserId(from == minUserId ? 0 : from);
+            long to = from + usersPerPartition - 1;
+            partition.setToUserId(to >= maxUserId ? Long.MAX_VALUE : to);
+            partitions.add(partition);
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> partitionRepository.saveAll(partitions));
+            log.info("Creadas {} particiones del reinicio diario para {} (offset {})", partitions.size(), runDate, offset.getId());
+        } catch (DataIntegrityViolationException e) {
+            log.info("Las particiones del {} (offset {}) ya fueron creadas por otra instancia", runDate, offset.getId());
+        }
+    }
+
+    // Las fechas locales van de UTC-12 a UTC+14: dos días atrás cubre cualquier partición en curso
+    private static LocalDate oldestRunDate() {
+        return LocalDate.now(ZoneOffset.UTC).minusDays(2);
+    }
+
+    // Cada worker reclama y procesa particiones hasta que no queda ninguna disponible
+    private void drain(LocalDate fromRunDate, Map<String, List<String>> zonesByBucket,
+                       AtomicInteger partitions, AtomicLong affected) {
+        boolean claimedAny = true;
+        while (claimedAny && !Thread.currentThread().isInterrupted()) {
+            claimedAny = false;
+            Instant now = Instant.now();
+            for (Long id : partitionRepository.findClaimableIds(fromRunDate, maxAttempts, now)) {
+                if (partitionRepository.claim(id, owner, Instant.now().plus(lease), maxAttempts, Instant.now()) == 1) {
+                    claimedAny = true;
+                    Integer rows = process(id, zonesByBucket);
+                    if (rows != null) {
+                        rowsCounter.increment(rows);
+                        partitions.incrementAndGet();
+                        affected.addAndGet(rows);
+                    }
+                }
             }
         }
-        
-        if (wasCompletedYesterday) {
-            // Incrementar racha actual
-            int newStreak = habit.getCurrentStreak() + 1;
-            habit.setCurrentStreak(newStreak);
-            
-            // Actualizar mejor racha si es necesario
-            if (newStreak > habit.getBestStreak()) {
-                habit.setBestStreak(newStreak);
+    }
+
+    private Integer process(Long partitionId, Map<String, List<String>> zonesByBucket) {
+        try {
+            return transactionTemplate.execute(status -> {
+                HabitResetPartition partition = partitionRepository.findById(partitionId).orElseThrow();
+                // las zonas del grupo se calculan ahora, no al crear la partición: un usuario que
+                // cambió de zona (aunque sea a otra con el mismo offset) entra en el grupo que le toca
+                List<String> zoneIds = zonesByBucket.computeIfAbsent(partition.getRunDate() + "|" + partition.getZoneBucket(),
+                        key -> {
+                            ZoneOffset offset = ZoneOffset.of(partition.getZoneBucket());
+                            Instant midnight = partition.getRunDate().atStartOfDay().toInstant(offset);
+                            return zonesByOffset(midnight).getOrDefault(offset, List.of());
+                        });
+                int rows = zoneIds.isEmpty() ? 0 : habitRepository.rollOverDay(partition.getRunDate(),
+                        partition.getRunDate().minusDays(1), TrackingType.BOOLEAN, zoneIds,
+                        partition.getFromUserId(), partition.getToUserId());
+                // el rollover y la marca DONE se confirman juntos: nunca se aplica dos veces
+                if (partitionRepository.complete(partitionId, owner, rows, Instant.now()) == 0) {
+                    throw new IllegalStateException("Se perdió el lease de la partición " + partitionId);
+                }
+                return rows;
+            });
+        } catch (Exception e) {
+            log.error("Error en la partición {} del reinicio diario: {}", partitionId, e.getMessage(), e);
+            partitionRepository.fail(partitionId, owner);
+            return null;
+        }
+    }
+
+    // Zonas de los usuarios agrupadas por su offset en ese instante
+    private Map<ZoneOffset, List<String>> zonesByOffset(Instant instant) {
+        Map<ZoneOffset, List<String>> buckets = new TreeMap<>();
+        for (String zone : userRepository.findDistinctTimeZones()) {
+            try {
+                buckets.computeIfAbsent(ZoneId.of(zone).getRules().getOffset(instant), offset -> new ArrayList<>()).add(zone);
+            } catch (DateTimeException e) {
+                log.warn("Zona horaria no válida ignorada en el reinicio diario: {}", zone);
             }
-        } else {
-            // Reiniciar racha actual si no fue completado ayer
-            habit.setCurrentStreak(0);
         }
+        return buckets;
+    }
+
+    private static String instanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
     }
-}
\ No newline at end of file
+}
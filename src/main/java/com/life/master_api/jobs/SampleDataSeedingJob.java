@@ -0,0 +1,33 @@
+package com.life.master_api.jobs;
+
+import com.life.master_api.services.SampleDataSeedingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Vuelve a encolar la creación de datos de ejemplo de los usuarios que no entraron en la
+ * cola al registrarse (cola llena o reinicio), que esperan un reintento o cuyo worker murió.
+ */
+@Service
+@Slf4j
+public class SampleDataSeedingJob {
+
+    private final SampleDataSeedingService seedingService;
+
+    public SampleDataSeedingJob(SampleDataSeedingService seedingService) {
+        this.seedingService = seedingService;
+    }
+
+    @Scheduled(fixedDelayString = "${sample-data.seeding.sweep-interval:PT30S}")
+    public void resubmitPendingSeedings() {
+        try {
+            int submitted = seedingService.resubmitDue();
+            if (submitted > 0) {
+                log.info("Encolados {} usuarios pendientes de datos de ejemplo", submitted);
+            }
+        } catch (Exception e) {
+            log.error("Error al encolar los datos de ejemplo pendientes: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.life.master_api.jobs;
+
+import com.life.master_api.search.LuceneSearchEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Escribe a disco los cambios del índice de búsqueda local. Las búsquedas ya los ven antes
+ * (reapertura near-real-time); el commit sólo acota lo que se pierde si la aplicación se cae.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "search.engine", havingValue = "lucene")
+public class SearchIndexCommitJob {
+
+    private final LuceneSearchEngine searchEngine;
+
+    public SearchIndexCommitJob(LuceneSearchEngine searchEngine) {
+        this.searchEngine = searchEngine;
+    }
+
+    @Scheduled(fixedDelayString = "${search.lucene.commit-interval:PT30S}")
+    public void commitSearchIndex() {
+        try {
+            searchEngine.commit();
+        } catch (Exception e) {
+            log.error("Error al escribir el índice de búsqueda: {}", e.getMessage(), e);
+        }
+    }
+}
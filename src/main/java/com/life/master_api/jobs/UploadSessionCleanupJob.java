@@ -0,0 +1,33 @@
+package com.life.master_api.jobs;
+
+import com.life.master_api.services.UploadSessionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Elimina las subidas por trozos abandonadas: sesiones que no han recibido ningún trozo
+ * durante {@code attachments.uploads.expiry}, junto con sus archivos temporales.
+ */
+@Service
+@Slf4j
+public class UploadSessionCleanupJob {
+
+    private final UploadSessionService uploadSessionService;
+
+    public UploadSessionCleanupJob(UploadSessionService uploadSessionService) {
+        this.uploadSessionService = uploadSessionService;
+    }
+
+    @Scheduled(fixedDelayString = "${attachments.uploads.cleanup-interval:PT15M}")
+    public void discardExpiredUploads() {
+        try {
+            int discarded = uploadSessionService.discardExpired();
+            if (discarded > 0) {
+                log.info("Eliminadas {} subidas por trozos caducadas", discarded);
+            }
+        } catch (Exception e) {
+            log.error("Error al limpiar las subidas por trozos caducadas: {}", e.getMessage(), e);
+        }
+    }
+}
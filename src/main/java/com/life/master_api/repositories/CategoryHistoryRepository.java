@@ -1,16 +1,42 @@
 package com.life.master_api.repositories;
 
 import com.life.master_api.entities.CategoryHistory;
-import com.life.master_api.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
 
 public interface CategoryHistoryRepository extends JpaRepository<CategoryHistory, Long> {
 
-    List<CategoryHistory> findByCategory_IdOrderByVersionIdDesc(Long categoryId);
-    List<CategoryHistory> findByCategory_IdAndVersionId(Long categoryId, Long versionId);
-    
-    // User-based filtering methods for data isolation
-    List<CategoryHistory> findByCategory_IdAndUserOrderByVersionIdDesc(Long categoryId, User user);
-    List<CategoryHistory> findByCategory_IdAndVersionIdAndUser(Long categoryId, Long versionId, User user);
-}
\ No newline at end of file
+    List<CategoryHistory> findByCategory_IdOrderByVersionIdAsc(Long categoryId);
+
+    /**
+     * Versiones necesarias para reconstruir el texto de {@code version}: desde el último
+     * snapshot anterior o igual hasta ella, en orden.
+     */
+    @Query("""
+            select h from CategoryHistory h
+            where h.category.id = :categoryId and h.versionId <= :version
+              and h.versionId >= (select coalesce(max(s.versionId), 0) from CategoryHistory s
+                                  where s.category.id = :categoryId and s.versionId <= :version and s.textDelta is null)
+            order by h.versionId""")
+    List<CategoryHistory> findChain(@Param("categoryId") Long categoryId, @Param("version") long version);
+
+    /**
+     * Última cadena (desde el último snapshot hasta la última versión) de cada una de las
+     * entidades, ordenadas por entidad y versión.
+     */
+    @Query("""
+            select h from CategoryHistory h
+            where h.category.id in :categoryIds
+              and h.versionId >= (select coalesce(max(s.versionId), 0) from CategoryHistory s
+                                  where s.category.id = h.category.id and s.textDelta is null)
+            order by h.category.id, h.versionId""")
+    List<CategoryHistory> findLatestChains(@Param("categoryIds") Collection<Long> categoryIds);
+
+    // Bloquea las filas de las entidades mientras se numeran sus nuevas versiones; devuelve las que siguen existiendo
+    @Query(value = "select id from categories where id in (:ids) order by id for update", nativeQuery = true)
+    List<Long> lockCategories(@Param("ids") Collection<Long> categoryIds);
+}
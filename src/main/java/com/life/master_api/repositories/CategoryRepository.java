@@ -1,15 +1,19 @@
 package com.life.master_api.repositories;
 
+import com.life.master_api.dto.TypeaheadItem;
 import com.life.master_api.entities.Category;
 import com.life.master_api.entities.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface CategoryRepository extends JpaRepository<Category, Long> {
+public interface CategoryRepository extends JpaRepository<Category, Long>, CategoryRepositoryCustom {
 
     List<Category> findByNameContains(String name);
     
@@ -21,7 +25,54 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     
     Page<Category> findByUser(User user, Pageable pageable);
     
+    long countByUser(User user);
+    
     Optional<Category> findByIdAndUser(Long id, User user);
+
+    // Carga en una sola consulta las entidades de un lote
+    List<Category> findByUserAndIdIn(User user, Collection<Long> ids);
     
     Page<Category> findByUserAndNameContains(User user, String name, Pageable pageable);
-}
\ No newline at end of file
+
+    /**
+     * Autocompletado sobre {@code name}: las {@code limit} mejores coincidencias, sin count.
+     * Ver {@link Typeahead} para el criterio y el orden.
+     */
+    default List<TypeaheadItem> typeahead(User user, String text, int limit) {
+        return typeahead(user.getId(), text, Typeahead.containsPattern(text), Typeahead.prefixPattern(text),
+                Typeahead.MIN_FUZZY_LENGTH, Typeahead.boundedLimit(limit));
+    }
+
+    @Query(value = """
+            select e.id as id, e.name as label from categories e
+            where e.user_id = :userId
+              and (e.name ilike :contains escape '\\' or (length(:text) >= :minFuzzy and :text <% e.name))
+            order by e.name ilike :prefix escape '\\' desc, word_similarity(:text, e.name) desc, e.name, e.id
+            limit :limit
+            """, nativeQuery = true)
+    List<TypeaheadItem> typeahead(@Param("userId") Long userId,
+                                  @Param("text") String text,
+                                  @Param("contains") String contains,
+                                  @Param("prefix") String prefix,
+                                  @Param("minFuzzy") int minFuzzy,
+                                  @Param("limit") int limit);
+
+    /**
+     * Autocompletado sólo por prefijo de {@code name}, sin mayúsculas, para cuando
+     * {@code pg_trgm} no está disponible. Usa el índice {@code lower(name) text_pattern_ops}
+     * de {@code db/typeahead.sql}.
+     */
+    default List<TypeaheadItem> typeaheadByPrefix(User user, String text, int limit) {
+        return typeaheadByPrefix(user.getId(), Typeahead.prefixPattern(text), Typeahead.boundedLimit(limit));
+    }
+
+    @Query(value = """
+            select e.id as id, e.name as label from categories e
+            where e.user_id = :userId and lower(e.name) like lower(:prefix) escape '\\'
+            order by lower(e.name), e.id
+            limit :limit
+            """, nativeQuery = true)
+    List<TypeaheadItem> typeaheadByPrefix(@Param("userId") Long userId,
+                                          @Param("prefix") String prefix,
+                                          @Param("limit") int limit);
+}
@@ -0,0 +1,16 @@
+package com.life.master_api.repositories;
+
+import com.life.master_api.entities.Category;
+import com.life.master_api.entities.Habit;
+import com.life.master_api.entities.Note;
+import com.life.master_api.entities.Task;
+import com.life.master_api.entities.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+public interface CategoryRepositoryCustom {
+    KeysetPage<Category> findByUser(User user, KeysetRequest request);
+    Page<Category> findByTask(Task task, Pageable pageable);
+    Page<Category> findByNote(Note note, Pageable pageable);
+    Page<Category> findByHabit(Habit habit, Pageable pageable);
+}
@@ -0,0 +1,86 @@
+package com.life.master_api.repositories;
+
+import com.life.master_api.entities.Category;
+import com.life.master_api.entities.Habit;
+import com.life.master_api.entities.Note;
+import com.life.master_api.entities.Task;
+import com.life.master_api.entities.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CategoryRepositoryCustomImpl implements CategoryRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public KeysetPage<Category> findByUser(User user, KeysetRequest request) {
+        // Paginación por cursor: sin OFFSET ni count(*)
+        return KeysetQuery.fetch(entityManager, Category.class, request,
+                (cb, category) -> cb.equal(category.get("user"), user));
+    }
+
+    @Override
+    public Page<Category> findByTask(Task task, Pageable pageable) {
+        return findCategoriesOf(Task.class, task, pageable);
+    }
+
+    @Override
+    public Page<Category> findByNote(Note note, Pageable pageable) {
+        return findCategoriesOf(Note.class, note, pageable);
+    }
+
+    @Override
+    public Page<Category> findByHabit(Habit habit, Pageable pageable) {
+        return findCategoriesOf(Habit.class, habit, pageable);
+    }
+
+    /**
+     * Página de las categorías asociadas a {@code owner} resuelta con un join sobre
+     * la tabla intermedia, sin inicializar la colección {@code categories}.
+     */
+    private <O> Page<Category> findCategoriesOf(Class<O> ownerType, O owner, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        // Consulta para obtener los resultados paginados
+        CriteriaQuery<Category> query = cb.createQuery(Category.class);
+        Root<O> ownerRoot = query.from(ownerType);
+        Join<O, Category> category = ownerRoot.join("categories", JoinType.INNER);
+        query.select(category).where(cb.equal(ownerRoot, owner));
+
+        // Aplicar ordenamiento si está presente en el Pageable
+        if (pageable.getSort().isSorted()) {
+            List<Order> orders = new ArrayList<>();
+            pageable.getSort().forEach(sort -> {
+                if (sort.isAscending()) {
+                    orders.add(cb.asc(category.get(sort.getProperty())));
+                } else {
+                    orders.add(cb.desc(category.get(sort.getProperty())));
+                }
+            });
+            query.orderBy(orders);
+        }
+
+        List<Category> categories = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+
+        // Consulta para contar el total de resultados
+        CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+        Root<O> ownerCount = countQuery.from(ownerType);
+        Join<O, Category> categoryCount = ownerCount.join("categories", JoinType.INNER);
+        countQuery.select(cb.count(categoryCount)).where(cb.equal(ownerCount, owner));
+
+        Long total = entityManager.createQuery(countQuery).getSingleResult();
+
+        return new PageImpl<>(categories, pageable, total);
+    }
+}
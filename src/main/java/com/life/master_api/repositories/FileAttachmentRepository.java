@@ -1,8 +1,14 @@
 package com.life.master_api.repositories;
 
+import com.life.master_api.dto.FileAttachmentSummary;
 import com.life.master_api.entities.FileAttachment;
 import com.life.master_api.entities.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -10,6 +16,49 @@ import java.util.Optional;
 public interface FileAttachmentRepository extends JpaRepository<FileAttachment, Long> {
     List<FileAttachment> findByEntityTypeAndEntityId(String entityType, Long entityId);
     List<FileAttachment> findByEntityTypeAndEntityIdAndUser(String entityType, Long entityId, User user);
+    
+    // Listados: sólo metadatos, sin tocar el contenido
+    List<FileAttachmentSummary> findSummariesByEntityTypeAndEntityIdAndUserOrderByIdAsc(String entityType, Long entityId, User user);
     Optional<FileAttachment> findByIdAndUser(Long id, User user);
     void deleteByEntityTypeAndEntityId(String entityType, Long entityId);
+
+    // Adjuntos que comparten el mismo contenido en un backend (deduplicación)
+    long countByContentHashAndStorageBackend(String contentHash, String storageBackend);
+
+    // Serializa por hash guardar un blob (y la fila que lo referencia) con borrarlo por no tener
+    // referencias; el bloqueo dura hasta el final de la transacción
+    @Query(value = "select count(*) from pg_advisory_xact_lock(hashtextextended(:hash, 0))", nativeQuery = true)
+    Long lockContentHash(@Param("hash") String contentHash);
+
+    // Guardar una miniatura (for share) y borrar el adjunto (for update) se excluyen: o la
+    // miniatura ve que el adjunto ya no existe, o el borrado la encuentra y borra su blob
+    @Query(value = "select id from file_attachments where id = :id for share", nativeQuery = true)
+    Optional<Long> lockForThumbnail(@Param("id") Long id);
+
+    @Query(value = "select id from file_attachments where id = :id for update", nativeQuery = true)
+    Optional<Long> lockForDelete(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("update FileAttachment f set f.thumbnailFailed = true where f.id = :id")
+    int markThumbnailFailed(@Param("id") Long id);
+
+    // Métodos para AttachmentStorageMigrationJob
+    @Query("select f.id from FileAttachment f where f.contentHash is null and f.id > :afterId order by f.id")
+    List<Long> findInlineIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(value = "select lo_unlink(file_data) from file_attachments where id = :id and file_data is not null", nativeQuery = true)
+    List<Integer> unlinkInlineData(@Param("id") Long id);
+
+    @Modifying
+    @Query("""
+            update FileAttachment f
+            set f.contentHash = :contentHash, f.storageBackend = :storageBackend,
+                f.contentEncoding = :contentEncoding, f.fileData = null
+            where f.id = :id and f.contentHash is null
+            """)
+    int moveToBlobStore(@Param("id") Long id,
+                        @Param("contentHash") String contentHash,
+                        @Param("storageBackend") String storageBackend,
+                        @Param("contentEncoding") String contentEncoding);
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.life.master_api.repositories;
+
+import com.life.master_api.entities.FileThumbnail;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface FileThumbnailRepository extends JpaRepository<FileThumbnail, Long> {
+    Optional<FileThumbnail> findByFileAttachment_IdAndSize(Long fileAttachmentId, Integer size);
+    List<FileThumbnail> findByFileAttachment_Id(Long fileAttachmentId);
+    long countByContentHashAndStorageBackend(String contentHash, String storageBackend);
+}
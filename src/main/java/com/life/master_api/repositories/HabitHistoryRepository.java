@@ -2,10 +2,25 @@ package com.life.master_api.repositories;
 
 import com.life.master_api.entities.HabitHistory;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
 
 public interface HabitHistoryRepository extends JpaRepository<HabitHistory, Long> {
 
     List<HabitHistory> findByHabit_IdOrderByVersionIdDesc(Long habitId);
     List<HabitHistory> findByHabit_IdAndVersionId(Long habitId, Long versionId);
-}
\ No newline at end of file
+
+    // Última versión de cada uno de los hábitos
+    @Query("""
+            select h from HabitHistory h
+            where h.habit.id in :habitIds
+              and h.versionId = (select max(s.versionId) from HabitHistory s where s.habit.id = h.habit.id)""")
+    List<HabitHistory> findLatest(@Param("habitIds") Collection<Long> habitIds);
+
+    // Bloquea las filas de los hábitos mientras se numeran sus nuevas versiones; devuelve los que siguen existiendo
+    @Query(value = "select id from habits where id in (:ids) order by id for update", nativeQuery = true)
+    List<Long> lockHabits(@Param("ids") Collection<Long> habitIds);
+}
@@ -2,11 +2,18 @@ package com.life.master_api.repositories;
 
 import com.life.master_api.entities.Category;
 import com.life.master_api.entities.Habit;
+import com.life.master_api.entities.TrackingType;
 import com.life.master_api.entities.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,7 +24,12 @@ public interface HabitRepository extends JpaRepository<Habit, Long>, HabitReposi
     
     Page<Habit> findByUser(User user, Pageable pageable);
     
+    long countByUser(User user);
+    
     Optional<Habit> findByIdAndUser(Long id, User user);
+
+    // Carga en una sola consulta las entidades de un lote
+    List<Habit> findByUserAndIdIn(User user, Collection<Long> ids);
     
     // El método findByCategories ahora es implementado por HabitRepositoryCustomImpl
     // usando Criteria API para mayor seguridad
@@ -32,4 +44,54 @@ public interface HabitRepository extends JpaRepository<Habit, Long>, HabitReposi
     Page<Habit> findByUserAndActiveTrue(User user, Pageable pageable);
     
     Page<Habit> findByUserAndActiveFalse(User user, Pageable pageable);
+    
+    long countByUserAndActiveTrue(User user);
+    
+    long countByUserAndActiveFalse(User user);
+    
+    /**
+     * Cierra el día {@code runDate - 1} para los hábitos activos de los usuarios con id en
+     * {@code [fromUserId, toUserId]} cuya zona horaria está en {@code zoneIds}
+     * (HabitDailyResetJob) en una sola sentencia: suma uno a la racha si ayer se cumplió
+     * el objetivo (o la pone a cero si no), sube {@code bestStreak} con GREATEST y reinicia
+     * el seguimiento del día. Todas las expresiones del SET ven los valores previos a la
+     * actualización, y {@code lastRolloverDate} hace que repetirla el mismo día no tenga efecto.
+     * Los hábitos ya seguidos en {@code runDate} (antes de que llegara su partición) no se tocan:
+     * el seguimiento cerró el día anterior al registrarse ({@link Habit#rollOverTo}).
+     *
+     * @return número de hábitos actualizados
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            update Habit h set
+                h.currentStreak = case
+                    when h.lastTrackedDate = :yesterday
+                         and ((h.trackingType = :booleanType and h.todayCompleted = true)
+                              or (h.trackingType <> :booleanType and h.dailyGoal is not null
+                                  and h.todayQuantity >= h.dailyGoal))
+                    then h.currentStreak + 1 else 0 end,
+                h.bestStreak = case
+                    when h.lastTrackedDate = :yesterday
+                         and ((h.trackingType = :booleanType and h.todayCompleted = true)
+                              or (h.trackingType <> :booleanType and h.dailyGoal is not null
+                                  and h.todayQuantity >= h.dailyGoal))
+                    then greatest(h.bestStreak, h.currentStreak + 1) else h.bestStreak end,
+                h.todayCompleted = false,
+                h.todayQuantity = 0,
+                h.lastTrackedDate = null,
+                h.lastRolloverDate = :runDate
+            where h.active = true
+              and (h.lastRolloverDate is null or h.lastRolloverDate < :runDate)
+              and (h.lastTrackedDate is null or h.lastTrackedDate < :runDate)
+              and h.user.id in (select u.id from User u
+                                where u.id between :fromUserId and :toUserId
+                                  and u.timeZone in :zoneIds)
+            """)
+    int rollOverDay(@Param("runDate") LocalDate runDate,
+                    @Param("yesterday") LocalDate yesterday,
+                    @Param("booleanType") TrackingType booleanType,
+                    @Param("zoneIds") Collection<String> zoneIds,
+                    @Param("fromUserId") Long fromUserId,
+                    @Param("toUserId") Long toUserId);
 }
\ No newline at end of file
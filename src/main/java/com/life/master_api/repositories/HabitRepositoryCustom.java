@@ -2,9 +2,15 @@ package com.life.master_api.repositories;
 
 import com.life.master_api.entities.Category;
 import com.life.master_api.entities.Habit;
+import com.life.master_api.entities.User;
 
 import java.util.List;
 
 public interface HabitRepositoryCustom {
     List<Habit> findByCategories(Category category);
+
+    /**
+     * Hábitos del usuario en modo cursor; {@code active} a {@code null} no filtra por estado.
+     */
+    KeysetPage<Habit> findByUserAndActive(User user, Boolean active, KeysetRequest request);
 }
\ No newline at end of file
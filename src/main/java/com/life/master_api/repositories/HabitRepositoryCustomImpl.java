@@ -2,6 +2,7 @@ package com.life.master_api.repositories;
 
 import com.life.master_api.entities.Category;
 import com.life.master_api.entities.Habit;
+import com.life.master_api.entities.User;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.criteria.*;
@@ -27,4 +28,12 @@ public class HabitRepositoryCustomImpl implements HabitRepositoryCustom {
         
         return entityManager.createQuery(query).getResultList();
     }
+
+    @Override
+    public KeysetPage<Habit> findByUserAndActive(User user, Boolean active, KeysetRequest request) {
+        return KeysetQuery.fetch(entityManager, Habit.class, request, (cb, habit) -> {
+            Predicate userPredicate = cb.equal(habit.get("user"), user);
+            return active == null ? userPredicate : cb.and(userPredicate, cb.equal(habit.get("active"), active));
+        });
+    }
 }
\ No newline at end of file
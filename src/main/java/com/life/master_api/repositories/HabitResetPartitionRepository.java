@@ -0,0 +1,94 @@
+package com.life.master_api.repositories;
+
+import com.life.master_api.entities.HabitResetPartition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface HabitResetPartitionRepository extends JpaRepository<HabitResetPartition, Long> {
+
+    boolean existsByRunDateAndZoneBucket(LocalDate runDate, String zoneBucket);
+
+    /**
+     * Particiones desde {@code fromRunDate} que aún pueden terminarse: pendientes, en curso o
+     * fallidas con intentos restantes. Las fallidas sin intentos ya no son trabajo pendiente.
+     */
+    @Query("""
+            select count(p) from HabitResetPartition p
+            where p.runDate >= :fromRunDate
+              and (p.status = com.life.master_api.entities.HabitResetStatus.PENDING
+                   or p.status = com.life.master_api.entities.HabitResetStatus.RUNNING
+                   or (p.status = com.life.master_api.entities.HabitResetStatus.FAILED and p.attempts < :maxAttempts))
+            """)
+    long countUnfinished(@Param("fromRunDate") LocalDate fromRunDate, @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Particiones desde {@code fromRunDate} que se pueden reclamar: pendientes, fallidas
+     * con intentos restantes o en curso con el lease vencido (la instancia que la tenía murió).
+     */
+    @Query("""
+            select p.id from HabitResetPartition p
+            where p.runDate >= :fromRunDate
+              and (p.status = com.life.master_api.entities.HabitResetStatus.PENDING
+                   or (p.status = com.life.master_api.entities.HabitResetStatus.FAILED and p.attempts < :maxAttempts)
+                   or (p.status = com.life.master_api.entities.HabitResetStatus.RUNNING and p.leaseUntil < :now))
+            order by p.runDate, p.zoneBucket, p.fromUserId
+            """)
+    List<Long> findClaimableIds(@Param("fromRunDate") LocalDate fromRunDate,
+                                @Param("maxAttempts") int maxAttempts,
+                                @Param("now") Instant now);
+
+    /**
+     * Reclama la partición de forma atómica: el UPDATE sólo afecta a la fila si sigue
+     * siendo reclamable, así que dos instancias nunca procesan la misma partición.
+     *
+     * @return 1 si esta instancia obtuvo la partición, 0 si otra se adelantó
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            update HabitResetPartition p
+            set p.status = com.life.master_api.entities.HabitResetStatus.RUNNING,
+                p.owner = :owner, p.leaseUntil = :leaseUntil, p.attempts = p.attempts + 1
+            where p.id = :id
+              and (p.status = com.life.master_api.entities.HabitResetStatus.PENDING
+                   or (p.status = com.life.master_api.entities.HabitResetStatus.FAILED and p.attempts < :maxAttempts)
+                   or (p.status = com.life.master_api.entities.HabitResetStatus.RUNNING and p.leaseUntil < :now))
+            """)
+    int claim(@Param("id") Long id,
+              @Param("owner") String owner,
+              @Param("leaseUntil") Instant leaseUntil,
+              @Param("maxAttempts") int maxAttempts,
+              @Param("now") Instant now);
+
+    /**
+     * Marca la partición como terminada si esta instancia sigue siendo la dueña.
+     * Se ejecuta en la misma transacción que el rollover del rango.
+     */
+    @Modifying
+    @Query("""
+            update HabitResetPartition p
+            set p.status = com.life.master_api.entities.HabitResetStatus.DONE,
+                p.rowsAffected = :rows, p.finishedAt = :now, p.leaseUntil = null
+            where p.id = :id and p.owner = :owner
+              and p.status = com.life.master_api.entities.HabitResetStatus.RUNNING
+            """)
+    int complete(@Param("id") Long id, @Param("owner") String owner,
+                 @Param("rows") int rows, @Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("""
+            update HabitResetPartition p
+            set p.status = com.life.master_api.entities.HabitResetStatus.FAILED, p.leaseUntil = null
+            where p.id = :id and p.owner = :owner
+              and p.status = com.life.master_api.entities.HabitResetStatus.RUNNING
+            """)
+    int fail(@Param("id") Long id, @Param("owner") String owner);
+}
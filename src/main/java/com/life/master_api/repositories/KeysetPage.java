@@ -0,0 +1,17 @@
+package com.life.master_api.repositories;
+
+import java.util.List;
+
+/**
+ * Página obtenida en modo cursor. No incluye el total de elementos: contarlo
+ * exige un {@code count(*)} aparte que sólo se hace si el cliente lo pide.
+ *
+ * @param content    elementos de la página
+ * @param nextCursor cursor opaco para pedir la página siguiente, {@code null} si no hay más
+ */
+public record KeysetPage<T>(List<T> content, String nextCursor) {
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,156 @@
+package com.life.master_api.repositories;
+
+import com.life.master_api.exceptions.BadRequestException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.*;
+import jakarta.persistence.metamodel.SingularAttribute;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Consultas keyset sobre Criteria API compartidas por los repositorios custom.
+ * En lugar de {@code OFFSET n} filtra por {@code (sortKey, id)} a partir de la
+ * última fila devuelta, de modo que cualquier página cuesta lo mismo que la primera
+ * y no se necesita el {@code count(*)} para saber si hay más resultados.
+ */
+final class KeysetQuery {
+
+    private static final String ID = "id";
+
+    private KeysetQuery() {
+    }
+
+    static <T> KeysetPage<T> fetch(EntityManager entityManager, Class<T> type, KeysetRequest request,
+                                   BiFunction<CriteriaBuilder, Root<T>, Predicate> filter) {
+        SingularAttribute<? super T, ?> attribute = sortAttribute(entityManager, type, request.sortBy());
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(type);
+        Root<T> root = query.from(type);
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(filter.apply(cb, root));
+        if (!request.isFirstPage()) {
+            predicates.add(seek(cb, root, attribute, request));
+        }
+        query.where(predicates.toArray(new Predicate[0]));
+
+        // id como desempate para que el orden sea total y el cursor no repita ni salte filas
+        if (request.ascending()) {
+            query.orderBy(cb.asc(root.get(attribute.getName())), cb.asc(root.get(ID)));
+        } else {
+            query.orderBy(cb.desc(root.get(attribute.getName())), cb.desc(root.get(ID)));
+        }
+
+        // una fila de más para saber si existe la página siguiente sin contar
+        List<T> rows = entityManager.createQuery(query)
+                .setMaxResults(request.limit() + 1)
+                .getResultList();
+
+        if (rows.size() <= request.limit()) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> content = new ArrayList<>(rows.subList(0, request.limit()));
+        T last = content.get(content.size() - 1);
+        Object lastValue = read(last, attribute);
+        Long lastId = (Long) entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(last);
+        String cursor = KeysetRequest.encodeCursor(attribute.getName(), request.ascending(), format(lastValue), lastId);
+        return new KeysetPage<>(content, cursor);
+    }
+
+    private static <T> SingularAttribute<? super T, ?> sortAttribute(EntityManager entityManager, Class<T> type, String sortBy) {
+        SingularAttribute<? super T, ?> attribute;
+        try {
+            attribute = entityManager.getMetamodel().entity(type).getSingularAttribute(sortBy);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Campo de ordenación no válido: " + sortBy, e);
+        }
+        Class<?> javaType = attribute.getJavaType();
+        if (attribute.isAssociation() || !(javaType == String.class || javaType == Long.class
+                || javaType == Integer.class || javaType == Date.class || javaType == LocalDate.class)) {
+            throw new BadRequestException("El campo " + sortBy + " no admite paginación por cursor");
+        }
+        return attribute;
+    }
+
+    /**
+     * Predicado "estrictamente después de la última fila" para el orden {@code (sortKey, id)}.
+     * PostgreSQL coloca los NULL al final en orden ascendente y al principio en
+     * descendente, así que se tratan como el valor más alto.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Predicate seek(CriteriaBuilder cb, Root<T> root, SingularAttribute<? super T, ?> attribute,
+                                      KeysetRequest request) {
+        Path<Comparable> sortPath = root.get(attribute.getName());
+        Path<Long> idPath = root.get(ID);
+        Long lastId = request.afterId();
+
+        if (request.afterValue() == null) {
+            Predicate sameNullKey = cb.and(cb.isNull(sortPath),
+                    request.ascending() ? cb.gt(idPath, lastId) : cb.lt(idPath, lastId));
+            // asc: sólo quedan NULLs; desc: detrás de los NULLs vienen todos los valores
+            return request.ascending() ? sameNullKey : cb.or(sameNullKey, cb.isNotNull(sortPath));
+        }
+
+        Comparable value = parse(attribute.getJavaType(), request.afterValue());
+        if (request.ascending()) {
+            return cb.or(
+                    cb.greaterThan(sortPath, value),
+                    cb.and(cb.equal(sortPath, value), cb.gt(idPath, lastId)),
+                    cb.isNull(sortPath));
+        }
+        return cb.or(
+                cb.lessThan(sortPath, value),
+                cb.and(cb.equal(sortPath, value), cb.lt(idPath, lastId)));
+    }
+
+    private static Object read(Object entity, SingularAttribute<?, ?> attribute) {
+        try {
+            Member member = attribute.getJavaMember();
+            if (member instanceof Field field) {
+                field.setAccessible(true);
+                return field.get(entity);
+            }
+            return ((Method) member).invoke(entity);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo leer " + attribute.getName(), e);
+        }
+    }
+
+    private static String format(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Date date) {
+            return Long.toString(date.getTime());
+        }
+        return value.toString();
+    }
+
+    private static Comparable<?> parse(Class<?> javaType, String raw) {
+        try {
+            if (javaType == Long.class) {
+                return Long.valueOf(raw);
+            }
+            if (javaType == Integer.class) {
+                return Integer.valueOf(raw);
+            }
+            if (javaType == Date.class) {
+                return new Date(Long.parseLong(raw));
+            }
+            if (javaType == LocalDate.class) {
+                return LocalDate.parse(raw);
+            }
+            return raw;
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Cursor inválido", e);
+        }
+    }
+}
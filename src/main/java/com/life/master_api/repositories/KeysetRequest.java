@@ -0,0 +1,58 @@
+package com.life.master_api.repositories;
+
+import com.life.master_api.exceptions.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Petición de una página en modo cursor (keyset): ordena por {@code (sortBy, id)}
+ * y continúa después de la última fila devuelta en lugar de usar OFFSET.
+ *
+ * @param sortBy     propiedad de ordenación
+ * @param ascending  dirección de la ordenación
+ * @param afterValue valor de {@code sortBy} de la última fila vista, {@code null} si era NULL o en la primera página
+ * @param afterId    id de la última fila vista, {@code null} en la primera página
+ * @param limit      número máximo de elementos a devolver
+ */
+public record KeysetRequest(String sortBy, boolean ascending, String afterValue, Long afterId, int limit) {
+
+    public static final int MAX_LIMIT = 100;
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Construye la petición a partir de los parámetros del endpoint. Si llega un
+     * cursor, su ordenación prevalece sobre {@code sortBy}/{@code sortDir} para que
+     * las páginas siguientes sean coherentes con la primera.
+     */
+    public static KeysetRequest of(String after, int limit, String sortBy, String sortDir) {
+        int boundedLimit = Math.max(1, Math.min(limit, MAX_LIMIT));
+        if (after == null || after.isBlank()) {
+            return new KeysetRequest(sortBy, !"desc".equalsIgnoreCase(sortDir), null, null, boundedLimit);
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+            // sortBy|dir|id[|value]: el valor va al final porque puede contener el separador
+            // y se omite cuando la última fila tenía la columna de ordenación a NULL
+            String[] parts = decoded.split("\\|", 4);
+            if (parts.length < 3) {
+                throw new BadRequestException("Cursor inválido");
+            }
+            String value = parts.length == 4 ? parts[3] : null;
+            return new KeysetRequest(parts[0], "asc".equals(parts[1]), value, Long.valueOf(parts[2]), boundedLimit);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Cursor inválido", e);
+        }
+    }
+
+    static String encodeCursor(String sortBy, boolean ascending, String value, Long id) {
+        String raw = sortBy + SEPARATOR + (ascending ? "asc" : "desc") + SEPARATOR + id
+                + (value != null ? SEPARATOR + value : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isFirstPage() {
+        return afterId == null;
+    }
+}
@@ -2,10 +2,41 @@ package com.life.master_api.repositories;
 
 import com.life.master_api.entities.NoteHistory;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
 
 public interface NoteHistoryRepository extends JpaRepository<NoteHistory, Long> {
 
-    List<NoteHistory> findByNote_IdOrderByVersionIdDesc(Long noteId);
-    List<NoteHistory> findByNote_IdAndVersionId(Long noteId, Long versionId);
-}
\ No newline at end of file
+    List<NoteHistory> findByNote_IdOrderByVersionIdAsc(Long noteId);
+
+    /**
+     * Versiones necesarias para reconstruir el texto de {@code version}: desde el último
+     * snapshot anterior o igual hasta ella, en orden.
+     */
+    @Query("""
+            select h from NoteHistory h
+            where h.note.id = :noteId and h.versionId <= :version
+              and h.versionId >= (select coalesce(max(s.versionId), 0) from NoteHistory s
+                                  where s.note.id = :noteId and s.versionId <= :version and s.textDelta is null)
+            order by h.versionId""")
+    List<NoteHistory> findChain(@Param("noteId") Long noteId, @Param("version") long version);
+
+    /**
+     * Última cadena (desde el último snapshot hasta la última versión) de cada una de las
+     * entidades, ordenadas por entidad y versión.
+     */
+    @Query("""
+            select h from NoteHistory h
+            where h.note.id in :noteIds
+              and h.versionId >= (select coalesce(max(s.versionId), 0) from NoteHistory s
+                                  where s.note.id = h.note.id and s.textDelta is null)
+            order by h.note.id, h.versionId""")
+    List<NoteHistory> findLatestChains(@Param("noteIds") Collection<Long> noteIds);
+
+    // Bloquea las filas de las entidades mientras se numeran sus nuevas versiones; devuelve las que siguen existiendo
+    @Query(value = "select id from notes where id in (:ids) order by id for update", nativeQuery = true)
+    List<Long> lockNotes(@Param("ids") Collection<Long> noteIds);
+}
@@ -11,4 +11,5 @@ import java.util.List;
 public interface NoteRepositoryCustom {
     List<Note> findByCategory(Category category);
     Page<Note> findByCategoryAndUser(Category category, User user, Pageable pageable);
+    KeysetPage<Note> findByUser(User user, KeysetRequest request);
 }
\ No newline at end of file
@@ -82,4 +82,11 @@ public class NoteRepositoryCustomImpl implements NoteRepositoryCustom {
         
         return new PageImpl<>(notes, pageable, total);
     }
+
+    @Override
+    public KeysetPage<Note> findByUser(User user, KeysetRequest request) {
+        // Paginación por cursor: sin OFFSET ni count(*)
+        return KeysetQuery.fetch(entityManager, Note.class, request,
+                (cb, note) -> cb.equal(note.get("user"), user));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.life.master_api.repositories;
+
+import com.life.master_api.entities.SampleDataSeeding;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface SampleDataSeedingRepository extends JpaRepository<SampleDataSeeding, Long> {
+
+    /**
+     * Usuarios cuyos datos de ejemplo se pueden crear ya: pendientes cuya espera terminó o
+     * en curso con el lease vencido.
+     */
+    @Query("""
+            select s.userId from SampleDataSeeding s
+            where (s.status = com.life.master_api.entities.SampleDataStatus.PENDING and s.nextAttemptAt <= :now)
+               or (s.status = com.life.master_api.entities.SampleDataStatus.RUNNING and s.leaseUntil < :now)
+            order by s.nextAttemptAt
+            """)
+    List<Long> findDueUserIds(@Param("now") Instant now, Pageable pageable);
+
+    /**
+     * Reclama la creación de forma atómica, así que un usuario nunca se procesa dos veces
+     * a la vez aunque lo encolen el registro y el barrido.
+     *
+     * @return 1 si este worker la obtuvo, 0 si no estaba pendiente
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            update SampleDataSeeding s
+            set s.status = com.life.master_api.entities.SampleDataStatus.RUNNING,
+                s.leaseUntil = :leaseUntil, s.attempts = s.attempts + 1
+            where s.userId = :userId
+              and ((s.status = com.life.master_api.entities.SampleDataStatus.PENDING and s.nextAttemptAt <= :now)
+                   or (s.status = com.life.master_api.entities.SampleDataStatus.RUNNING and s.leaseUntil < :now))
+            """)
+    int claim(@Param("userId") Long userId, @Param("leaseUntil") Instant leaseUntil, @Param("now") Instant now);
+
+    /**
+     * Se ejecuta en la misma transacción que crea los datos: o quedan creados y marcados,
+     * o ninguna de las dos cosas.
+     */
+    @Modifying
+    @Query("""
+            update SampleDataSeeding s
+            set s.status = com.life.master_api.entities.SampleDataStatus.DONE,
+                s.finishedAt = :now, s.leaseUntil = null, s.lastError = null
+            where s.userId = :userId and s.status = com.life.master_api.entities.SampleDataStatus.RUNNING
+            """)
+    int complete(@Param("userId") Long userId, @Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("""
+            update SampleDataSeeding s
+            set s.status = com.life.master_api.entities.SampleDataStatus.PENDING,
+                s.nextAttemptAt = :nextAttemptAt, s.leaseUntil = null, s.lastError = :error
+            where s.userId = :userId and s.status = com.life.master_api.entities.SampleDataStatus.RUNNING
+            """)
+    int retryLater(@Param("userId") Long userId, @Param("nextAttemptAt") Instant nextAttemptAt,
+                   @Param("error") String error);
+
+    @Modifying
+    @Transactional
+    @Query("""
+            update SampleDataSeeding s
+            set s.status = com.life.master_api.entities.SampleDataStatus.FAILED,
+                s.finishedAt = :now, s.leaseUntil = null, s.lastError = :error
+            where s.userId = :userId and s.status = com.life.master_api.entities.SampleDataStatus.RUNNING
+            """)
+    int fail(@Param("userId") Long userId, @Param("error") String error, @Param("now") Instant now);
+}
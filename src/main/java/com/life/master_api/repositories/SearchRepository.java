@@ -0,0 +1,152 @@
+package com.life.master_api.repositories;
+
+import com.life.master_api.dto.SearchHit;
+import com.life.master_api.dto.SearchResultType;
+import com.life.master_api.entities.User;
+import com.life.master_api.exceptions.BadRequestException;
+import com.life.master_api.search.SearchEngine;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Búsqueda de texto completo sobre las columnas {@code search_vector} (tsvector generado con
+ * índice GIN, ver {@code db/search.sql}) de notas, tareas, hábitos y categorías. Cada tabla
+ * se filtra con {@code @@} sobre su índice, los resultados se ordenan por relevancia y se
+ * paginan por cursor sobre {@code (rank, type, id)}; el resaltado ({@code ts_headline}, que
+ * vuelve a analizar el texto) sólo se calcula para las filas de la página.
+ */
+@Repository
+@ConditionalOnProperty(name = "search.engine", havingValue = "postgres", matchIfMissing = true)
+public class SearchRepository implements SearchEngine {
+
+    /**
+     * Configuración de texto usada en las columnas generadas; la consulta debe usar la misma.
+     */
+    public static final String TEXT_SEARCH_CONFIG = "spanish";
+
+    private static final String HEADLINE_OPTIONS = "StartSel=<mark>, StopSel=</mark>, MaxWords=30, MinWords=10, MaxFragments=2";
+    private static final String SEPARATOR = "|";
+
+    private record Source(String table, String titleColumn, String bodyColumn) {
+    }
+
+    private static final Map<SearchResultType, Source> SOURCES = Map.of(
+            SearchResultType.NOTE, new Source("notes", "title", "note"),
+            SearchResultType.TASK, new Source("task", "title", "description"),
+            SearchResultType.HABIT, new Source("habits", "name", "description"),
+            SearchResultType.CATEGORY, new Source("categories", "name", "description"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public SearchRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * La consulta sigue la sintaxis de {@code websearch_to_tsquery}: palabras, {@code "frases"},
+     * {@code or} y {@code -excluir}.
+     */
+    @Override
+    public KeysetPage<SearchHit> search(User user, String query, Collection<SearchResultType> types, String after, int limit) {
+        EnumSet<SearchResultType> selected = types == null || types.isEmpty()
+                ? EnumSet.allOf(SearchResultType.class) : EnumSet.copyOf(types);
+
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("config", TEXT_SEARCH_CONFIG)
+                .addValue("query", query)
+                .addValue("userId", user.getId())
+                .addValue("options", HEADLINE_OPTIONS)
+                .addValue("limit", limit + 1); // una fila de más para saber si hay página siguiente
+
+        String hits = selected.stream()
+                .map(type -> hits(type, SOURCES.get(type)))
+                .collect(Collectors.joining("\n    UNION ALL\n"));
+
+        String seek = "";
+        if (after != null && !after.isBlank()) {
+            Cursor cursor = Cursor.decode(after);
+            // (rank desc, type, id): negar el rank permite comparar la fila entera de una vez
+            seek = "WHERE (-rank, type, id) > (-CAST(:afterRank AS real), :afterType, :afterId)";
+            parameters.addValue("afterRank", cursor.rank())
+                    .addValue("afterType", cursor.type().name())
+                    .addValue("afterId", cursor.id());
+        }
+
+        String sql = """
+                WITH q AS (SELECT websearch_to_tsquery(CAST(:config AS regconfig), :query) AS query),
+                hits AS (
+                    %s
+                ),
+                page AS (
+                    SELECT * FROM hits
+                    %s
+                    ORDER BY rank DESC, type, id
+                    LIMIT :limit
+                )
+                SELECT p.type, p.id, p.rank,
+                       ts_headline(CAST(:config AS regconfig), p.title, q.query, :options) AS title,
+                       CASE WHEN p.body IS NOT NULL
+                            THEN ts_headline(CAST(:config AS regconfig), p.body, q.query, :options) END AS snippet
+                FROM page p, q
+                ORDER BY p.rank DESC, p.type, p.id
+                """.formatted(hits, seek);
+
+        List<SearchHit> rows = jdbcTemplate.query(sql, parameters, (rs, rowNum) -> new SearchHit(
+                SearchResultType.valueOf(rs.getString("type")),
+                rs.getLong("id"),
+                rs.getString("title"),
+                rs.getString("snippet"),
+                rs.getFloat("rank")));
+
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<SearchHit> content = new ArrayList<>(rows.subList(0, limit));
+        SearchHit last = content.get(content.size() - 1);
+        return new KeysetPage<>(content, new Cursor(last.rank(), last.type(), last.id()).encode());
+    }
+
+    private static String hits(SearchResultType type, Source source) {
+        return """
+                SELECT '%1$s' AS type, e.id, e.%3$s AS title, e.%4$s AS body,
+                           ts_rank_cd(e.search_vector, q.query) AS rank
+                    FROM %2$s e, q
+                    WHERE e.user_id = :userId AND e.search_vector @@ q.query"""
+                .formatted(type.name(), source.table(), source.titleColumn(), source.bodyColumn());
+    }
+
+    /**
+     * Posición de la última fila devuelta: {@code rank|type|id} en Base64 URL-safe. El rank
+     * se guarda con {@link Float#toString}, que vuelve a dar exactamente el mismo float.
+     */
+    private record Cursor(float rank, SearchResultType type, long id) {
+
+        String encode() {
+            String raw = rank + SEPARATOR + type.name() + SEPARATOR + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String value) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8).split("\\|");
+                if (parts.length != 3) {
+                    throw new BadRequestException("Cursor inválido");
+                }
+                return new Cursor(Float.parseFloat(parts[0]), SearchResultType.valueOf(parts[1]), Long.parseLong(parts[2]));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Cursor inválido", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.life.master_api.repositories;
+
+import com.life.master_api.entities.StoredBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+
+    // PostgreSQL no borra el large object al borrar la fila que lo referencia
+    @Query(value = "select lo_unlink(content) from attachment_blobs where hash = :hash", nativeQuery = true)
+    Integer unlinkContent(@Param("hash") String hash);
+
+    @Modifying
+    @Query("delete from StoredBlob b where b.hash = :hash")
+    int deleteByHash(@Param("hash") String hash);
+}
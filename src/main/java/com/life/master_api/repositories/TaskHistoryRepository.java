@@ -1,16 +1,42 @@
 package com.life.master_api.repositories;
 
 import com.life.master_api.entities.TaskHistory;
-import com.life.master_api.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
 
 public interface TaskHistoryRepository extends JpaRepository<TaskHistory, Long> {
 
-    List<TaskHistory> findByTask_IdOrderByVersionIdDesc(Long taskId);
-    List<TaskHistory> findByTask_IdAndVersionId(Long taskId, Long versionId);
-    
-    // User-based filtering methods for data isolation
-    List<TaskHistory> findByTask_IdAndUserOrderByVersionIdDesc(Long taskId, User user);
-    List<TaskHistory> findByTask_IdAndVersionIdAndUser(Long taskId, Long versionId, User user);
-}
\ No newline at end of file
+    List<TaskHistory> findByTask_IdOrderByVersionIdAsc(Long taskId);
+
+    /**
+     * Versiones necesarias para reconstruir el texto de {@code version}: desde el último
+     * snapshot anterior o igual hasta ella, en orden.
+     */
+    @Query("""
+            select h from TaskHistory h
+            where h.task.id = :taskId and h.versionId <= :version
+              and h.versionId >= (select coalesce(max(s.versionId), 0) from TaskHistory s
+                                  where s.task.id = :taskId and s.versionId <= :version and s.textDelta is null)
+            order by h.versionId""")
+    List<TaskHistory> findChain(@Param("taskId") Long taskId, @Param("version") long version);
+
+    /**
+     * Última cadena (desde el último snapshot hasta la última versión) de cada una de las
+     * entidades, ordenadas por entidad y versión.
+     */
+    @Query("""
+            select h from TaskHistory h
+            where h.task.id in :taskIds
+              and h.versionId >= (select coalesce(max(s.versionId), 0) from TaskHistory s
+                                  where s.task.id = h.task.id and s.textDelta is null)
+            order by h.task.id, h.versionId""")
+    List<TaskHistory> findLatestChains(@Param("taskIds") Collection<Long> taskIds);
+
+    // Bloquea las filas de las entidades mientras se numeran sus nuevas versiones; devuelve las que siguen existiendo
+    @Query(value = "select id from task where id in (:ids) order by id for update", nativeQuery = true)
+    List<Long> lockTasks(@Param("ids") Collection<Long> taskIds);
+}
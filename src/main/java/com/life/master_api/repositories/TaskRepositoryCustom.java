@@ -11,4 +11,5 @@ import java.util.List;
 public interface TaskRepositoryCustom {
     List<Task> findByCategory(Category category);
     Page<Task> findByCategoryAndUser(Category category, User user, Pageable pageable);
+    KeysetPage<Task> findByUser(User user, KeysetRequest request);
 }
\ No newline at end of file
@@ -82,4 +82,11 @@ public class TaskRepositoryCustomImpl implements TaskRepositoryCustom {
         
         return new PageImpl<>(tasks, pageable, total);
     }
+
+    @Override
+    public KeysetPage<Task> findByUser(User user, KeysetRequest request) {
+        // Paginación por cursor: sin OFFSET ni count(*)
+        return KeysetQuery.fetch(entityManager, Task.class, request,
+                (cb, task) -> cb.equal(task.get("user"), user));
+    }
 }
\ No newline at end of file
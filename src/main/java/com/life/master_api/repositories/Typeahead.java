@@ -0,0 +1,41 @@
+package com.life.master_api.repositories;
+
+/**
+ * Parámetros comunes de las consultas de autocompletado ({@code typeahead}) de los
+ * repositorios. Con {@code pg_trgm} las consultas filtran con {@code ILIKE '%texto%'} y, a
+ * partir de {@link #MIN_FUZZY_LENGTH} caracteres, también por similitud de trigramas
+ * ({@code <%}) para tolerar erratas; ambas condiciones usan los índices GIN
+ * {@code gin_trgm_ops} de {@code db/typeahead-trgm.sql}. Primero van las coincidencias por
+ * prefijo y después las más parecidas. Sin la extensión sólo se usan las consultas
+ * {@code typeaheadByPrefix}, que buscan el prefijo con el índice btree de {@code db/typeahead.sql}.
+ * {@code TypeaheadService} elige entre ellas.
+ */
+public final class Typeahead {
+
+    public static final int MAX_LIMIT = 50;
+
+    /**
+     * Con menos caracteres no hay trigramas suficientes para que la similitud signifique algo.
+     */
+    public static final int MIN_FUZZY_LENGTH = 3;
+
+    private Typeahead() {
+    }
+
+    static String containsPattern(String text) {
+        return "%" + escape(text) + "%";
+    }
+
+    static String prefixPattern(String text) {
+        return escape(text) + "%";
+    }
+
+    public static int boundedLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    // '\' es el carácter de escape declarado en las consultas (ESCAPE '\')
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
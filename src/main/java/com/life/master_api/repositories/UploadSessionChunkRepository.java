@@ -0,0 +1,23 @@
+package com.life.master_api.repositories;
+
+import com.life.master_api.entities.UploadSessionChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface UploadSessionChunkRepository extends JpaRepository<UploadSessionChunk, Long> {
+
+    boolean existsByUploadSession_IdAndChunkIndex(String uploadSessionId, Integer chunkIndex);
+
+    long countByUploadSession_Id(String uploadSessionId);
+
+    @Query("select c.chunkIndex from UploadSessionChunk c where c.uploadSession.id = :sessionId order by c.chunkIndex")
+    List<Integer> findChunkIndexes(@Param("sessionId") String sessionId);
+
+    @Modifying
+    @Query("delete from UploadSessionChunk c where c.uploadSession.id = :sessionId")
+    int deleteBySessionId(@Param("sessionId") String sessionId);
+}
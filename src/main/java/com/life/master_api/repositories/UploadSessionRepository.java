@@ -0,0 +1,61 @@
+package com.life.master_api.repositories;
+
+import com.life.master_api.entities.UploadSession;
+import com.life.master_api.entities.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    Optional<UploadSession> findByIdAndUser(String id, User user);
+
+    @Query("select s.id from UploadSession s where s.expiresAt < :now")
+    List<String> findExpiredIds(@Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("""
+            update UploadSession s set s.expiresAt = :expiresAt
+            where s.id = :id and s.status = com.life.master_api.entities.UploadSessionStatus.OPEN
+            """)
+    int extend(@Param("id") String id, @Param("expiresAt") Instant expiresAt);
+
+    /**
+     * Bloqueo compartido de la sesión mientras se publica un trozo ya recibido (renombrar su
+     * archivo y registrarlo): pueden publicarse varios a la vez, pero {@link #claimForCommit}
+     * espera a que terminen y los que lleguen después ya la ven en COMMITTING.
+     *
+     * @return el estado de la sesión, o null si ya no existe
+     */
+    @Query(value = "select status from upload_sessions where id = :id for share", nativeQuery = true)
+    String lockForChunk(@Param("id") String id);
+
+    /**
+     * Pasa la sesión a COMMITTING de forma atómica: dos confirmaciones simultáneas
+     * de la misma subida no pueden crear dos adjuntos.
+     *
+     * @return 1 si esta petición obtuvo la sesión, 0 si ya no estaba abierta
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            update UploadSession s set s.status = com.life.master_api.entities.UploadSessionStatus.COMMITTING
+            where s.id = :id and s.status = com.life.master_api.entities.UploadSessionStatus.OPEN
+            """)
+    int claimForCommit(@Param("id") String id);
+
+    @Modifying
+    @Transactional
+    @Query("""
+            update UploadSession s set s.status = com.life.master_api.entities.UploadSessionStatus.OPEN
+            where s.id = :id and s.status = com.life.master_api.entities.UploadSessionStatus.COMMITTING
+            """)
+    int reopen(@Param("id") String id);
+}
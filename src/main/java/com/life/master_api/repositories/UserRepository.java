@@ -2,7 +2,11 @@ package com.life.master_api.repositories;
 
 import com.life.master_api.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -10,4 +14,16 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+
+    @Query("select u.id from User u order by u.id")
+    List<Long> findAllIds();
+
+    @Query("select distinct u.timeZone from User u")
+    List<String> findDistinctTimeZones();
+
+    @Query("select min(u.id) from User u where u.timeZone in :zoneIds")
+    Long findMinIdByTimeZoneIn(@Param("zoneIds") Collection<String> zoneIds);
+
+    @Query("select max(u.id) from User u where u.timeZone in :zoneIds")
+    Long findMaxIdByTimeZoneIn(@Param("zoneIds") Collection<String> zoneIds);
 }
\ No newline at end of file
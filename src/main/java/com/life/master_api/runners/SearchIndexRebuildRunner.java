@@ -0,0 +1,35 @@
+package com.life.master_api.runners;
+
+import com.life.master_api.search.LuceneSearchEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reconstruye el índice de búsqueda local desde la base de datos al arrancar, si está vacío o
+ * si se pide con {@code --search.lucene.rebuild-on-startup=true} (por ejemplo tras cambiar el
+ * analizador o perder el directorio del índice).
+ */
+@Component
+@Order(2)
+@ConditionalOnProperty(name = "search.engine", havingValue = "lucene")
+public class SearchIndexRebuildRunner implements CommandLineRunner {
+
+    private final LuceneSearchEngine searchEngine;
+    private final boolean rebuildOnStartup;
+
+    public SearchIndexRebuildRunner(LuceneSearchEngine searchEngine,
+                                    @Value("${search.lucene.rebuild-on-startup:false}") boolean rebuildOnStartup) {
+        this.searchEngine = searchEngine;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (rebuildOnStartup || searchEngine.isEmpty()) {
+            searchEngine.rebuild();
+        }
+    }
+}
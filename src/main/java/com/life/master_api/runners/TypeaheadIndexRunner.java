@@ -0,0 +1,56 @@
+package com.life.master_api.runners;
+
+import com.life.master_api.services.TypeaheadService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Prepara los índices del autocompletado al arrancar. Los de prefijo ({@code db/typeahead.sql})
+ * se crean siempre; la extensión {@code pg_trgm} y sus índices ({@code db/typeahead-trgm.sql})
+ * sólo con {@code typeahead.trigram.enabled=true}, y si no se pueden crear (falta la
+ * extensión o el permiso) el autocompletado sigue sólo por prefijo en lugar de fallar. Con
+ * {@code search.engine=lucene} el autocompletado usa el índice local y no se ejecuta.
+ */
+@Component
+@Slf4j
+@Order(3)
+@ConditionalOnProperty(name = "search.engine", havingValue = "postgres", matchIfMissing = true)
+public class TypeaheadIndexRunner implements CommandLineRunner {
+
+    private final DataSource dataSource;
+    private final TypeaheadService typeaheadService;
+    private final boolean trigramEnabled;
+
+    public TypeaheadIndexRunner(DataSource dataSource,
+                                TypeaheadService typeaheadService,
+                                @Value("${typeahead.trigram.enabled:true}") boolean trigramEnabled) {
+        this.dataSource = dataSource;
+        this.typeaheadService = typeaheadService;
+        this.trigramEnabled = trigramEnabled;
+    }
+
+    @Override
+    public void run(String... args) {
+        new ResourceDatabasePopulator(new ClassPathResource("db/typeahead.sql")).execute(dataSource);
+        if (!trigramEnabled) {
+            log.info("Autocompletado sin pg_trgm (typeahead.trigram.enabled=false): sólo coincidencias por prefijo");
+            return;
+        }
+        try {
+            new ResourceDatabasePopulator(new ClassPathResource("db/typeahead-trgm.sql")).execute(dataSource);
+            typeaheadService.enableTrigrams();
+        } catch (DataAccessException e) {
+            log.warn("No se ha podido preparar pg_trgm, el autocompletado sólo usa coincidencias por prefijo: {}",
+                    e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,577 @@
+package com.life.master_api.search;
+
+import com.life.master_api.dto.SearchHit;
+import com.life.master_api.dto.SearchResultType;
+import com.life.master_api.dto.TypeaheadItem;
+import com.life.master_api.entities.Category;
+import com.life.master_api.entities.Habit;
+import com.life.master_api.entities.Note;
+import com.life.master_api.entities.Task;
+import com.life.master_api.entities.User;
+import com.life.master_api.exceptions.BadRequestException;
+import com.life.master_api.repositories.CategoryRepository;
+import com.life.master_api.repositories.HabitRepository;
+import com.life.master_api.repositories.KeysetPage;
+import com.life.master_api.repositories.NoteRepository;
+import com.life.master_api.repositories.TaskRepository;
+import com.life.master_api.repositories.UserRepository;
+import com.life.master_api.services.SampleDataCreatedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.es.SpanishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.BreakIterator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Búsqueda con un índice invertido de Lucene en disco local ({@link MMapDirectory} en
+ * {@code search.lucene.dir}), como alternativa a las columnas tsvector de PostgreSQL. Se activa
+ * con {@code search.engine=lucene}.
+ * <p>
+ * Un único índice guarda un documento por nota, tarea, hábito o categoría, con el usuario como
+ * filtro. Se mantiene al día con los eventos post-commit de Hibernate
+ * ({@link SearchIndexEventListener}) y con {@link SampleDataCreatedEvent} para los datos de
+ * ejemplo, que se insertan con SQL nativo. Los cambios se ven en las búsquedas en menos de un
+ * segundo (reapertura near-real-time) y se escriben a disco cada
+ * {@code search.lucene.commit-interval}; si la aplicación se cae antes, la reconstrucción al
+ * arrancar ({@link #rebuild()}) los recupera.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "search.engine", havingValue = "lucene")
+public class LuceneSearchEngine implements SearchEngine {
+
+    private static final String KEY = "key";
+    private static final String USER = "user";
+    private static final String TYPE = "type";
+    private static final String ID = "id";
+    private static final String TITLE = "title";
+    private static final String BODY = "body";
+    /** Título en minúsculas sin analizar: prefijos del autocompletado y orden alfabético. */
+    private static final String LABEL = "label";
+
+    // el título pesa más que el cuerpo, como setweight A/B en db/search.sql
+    private static final Map<String, Float> BOOSTS = Map.of(TITLE, 2f, BODY, 1f);
+    private static final int SNIPPET_PASSAGES = 2;
+    private static final String SEPARATOR = "|";
+    // muy por debajo del máximo de un término (32766 bytes); nadie escribe un prefijo tan largo
+    private static final int MAX_LABEL_LENGTH = 200;
+
+    /** Texto analizado que guarda los offsets en el índice, para resaltar sin volver a analizarlo. */
+    private static final FieldType TEXT_WITH_OFFSETS;
+
+    static {
+        TEXT_WITH_OFFSETS = new FieldType(TextField.TYPE_STORED);
+        TEXT_WITH_OFFSETS.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        TEXT_WITH_OFFSETS.freeze();
+    }
+
+    // relevancia descendente y, a igualdad, la clave del documento: orden total para el cursor
+    private static final Sort SORT = new Sort(SortField.FIELD_SCORE, new SortField(KEY, SortField.Type.STRING));
+    private static final Sort LABEL_SORT = new Sort(new SortField(LABEL, SortField.Type.STRING),
+            new SortField(KEY, SortField.Type.STRING));
+
+    /**
+     * Cambio recibido por evento: el documento nuevo de una entidad, o {@code indexed == null}
+     * si se ha borrado.
+     */
+    private record Change(String key, Indexed indexed) {
+    }
+
+    private record Suggestion(Long id, String label) implements TypeaheadItem {
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private record Indexed(SearchResultType type, Long id, Long userId, String title, String body) {
+
+        String key() {
+            return key(type, id);
+        }
+
+        static String key(SearchResultType type, Long id) {
+            return type.name() + ":" + id;
+        }
+    }
+
+    private final CategoryRepository categoryRepository;
+    private final TaskRepository taskRepository;
+    private final NoteRepository noteRepository;
+    private final HabitRepository habitRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Analyzer analyzer = new SpanishAnalyzer();
+    private final MMapDirectory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final ControlledRealTimeReopenThread<IndexSearcher> reopenThread;
+
+    // Mientras se reconstruye, los cambios recibidos por evento se aplican y además se guardan:
+    // la lectura de la base de datos puede ser anterior a ellos y deshacerlos, así que se vuelven
+    // a aplicar, en orden, al terminar
+    private final Object changesLock = new Object();
+    private final List<Change> recordedChanges = new ArrayList<>();
+    private int rebuilds;
+    // searcher de antes de una reconstrucción completa: las búsquedas lo usan hasta que termina
+    private volatile IndexSearcher pinned;
+
+    public LuceneSearchEngine(CategoryRepository categoryRepository,
+                              TaskRepository taskRepository,
+                              NoteRepository noteRepository,
+                              HabitRepository habitRepository,
+                              UserRepository userRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${search.lucene.dir:./data/search-index}") String indexDir,
+                              @Value("${search.lucene.max-staleness:1s}") Duration maxStaleness) throws IOException {
+        this.categoryRepository = categoryRepository;
+        this.taskRepository = taskRepository;
+        this.noteRepository = noteRepository;
+        this.habitRepository = habitRepository;
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        Path path = Path.of(indexDir);
+        Files.createDirectories(path);
+        this.directory = new MMapDirectory(path);
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, new SearcherFactory());
+        double maxStaleSeconds = maxStaleness.toMillis() / 1000.0;
+        this.reopenThread = new ControlledRealTimeReopenThread<>(writer, searcherManager, maxStaleSeconds,
+                Math.min(0.1, maxStaleSeconds));
+        this.reopenThread.setName("search-index-reopen");
+        this.reopenThread.setDaemon(true);
+        this.reopenThread.start();
+        log.info("Índice de búsqueda en {} con {} documentos", path.toAbsolutePath(), writer.getDocStats().numDocs);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        reopenThread.close();
+        searcherManager.close();
+        writer.close(); // hace commit de lo pendiente
+        directory.close();
+        analyzer.close();
+    }
+
+    /**
+     * La consulta sigue la sintaxis clásica de Lucene: palabras (todas obligatorias),
+     * {@code "frases"}, prefijos ({@code palabr*}), {@code OR}, {@code NOT} y {@code -excluir}.
+     */
+    @Override
+    public KeysetPage<SearchHit> search(User user, String query, Collection<SearchResultType> types, String after, int limit) {
+        EnumSet<SearchResultType> selected = types == null || types.isEmpty()
+                ? EnumSet.allOf(SearchResultType.class) : EnumSet.copyOf(types);
+        Query text = parse(query);
+        Query filtered = new BooleanQuery.Builder()
+                .add(text, BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term(USER, user.getId().toString())), BooleanClause.Occur.FILTER)
+                .add(new TermInSetQuery(TYPE, selected.stream().map(type -> new BytesRef(type.name())).toList()),
+                        BooleanClause.Occur.FILTER)
+                .build();
+        FieldDoc cursor = after == null || after.isBlank() ? null : decodeCursor(after);
+
+        try {
+            IndexSearcher searcher = acquireSearcher();
+            try {
+                // una fila de más para saber si hay página siguiente
+                TopFieldDocs top = searcher.searchAfter(cursor, filtered, limit + 1, SORT, true);
+                ScoreDoc[] page = Arrays.copyOf(top.scoreDocs, Math.min(limit, top.scoreDocs.length));
+
+                UnifiedHighlighter highlighter = UnifiedHighlighter.builder(searcher, analyzer)
+                        .withFormatter(new DefaultPassageFormatter("<mark>", "</mark>", "... ", false))
+                        .withBreakIterator(() -> BreakIterator.getSentenceInstance(Locale.forLanguageTag("es")))
+                        .build();
+                Map<String, String[]> highlights = highlighter.highlightFields(new String[]{TITLE, BODY}, text,
+                        new TopDocs(new TotalHits(page.length, TotalHits.Relation.EQUAL_TO), page),
+                        new int[]{1, SNIPPET_PASSAGES});
+
+                List<SearchHit> content = new ArrayList<>(page.length);
+                for (int i = 0; i < page.length; i++) {
+                    Document document = searcher.storedFields().document(page[i].doc, Set.of(TYPE, ID, TITLE));
+                    String title = highlights.get(TITLE)[i];
+                    content.add(new SearchHit(
+                            SearchResultType.valueOf(document.get(TYPE)),
+                            document.getField(ID).numericValue().longValue(),
+                            title != null ? title : document.get(TITLE),
+                            highlights.get(BODY)[i],
+                            page[i].score));
+                }
+                String nextCursor = top.scoreDocs.length > limit ? encodeCursor((FieldDoc) page[page.length - 1]) : null;
+                return new KeysetPage<>(content, nextCursor);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Autocompletado sobre el índice: las {@code limit} entidades de un tipo cuyo título empieza
+     * por {@code text}, sin distinguir mayúsculas, en orden alfabético. Los documentos indexados
+     * antes de existir el campo no aparecen hasta la siguiente reconstrucción.
+     */
+    public List<TypeaheadItem> typeahead(User user, SearchResultType type, String text, int limit) {
+        Query query = new BooleanQuery.Builder()
+                .add(new PrefixQuery(new Term(LABEL, label(text))), BooleanClause.Occur.FILTER)
+                .add(new TermQuery(new Term(USER, user.getId().toString())), BooleanClause.Occur.FILTER)
+                .add(new TermQuery(new Term(TYPE, type.name())), BooleanClause.Occur.FILTER)
+                .build();
+        try {
+            IndexSearcher searcher = acquireSearcher();
+            try {
+                TopFieldDocs top = searcher.search(query, limit, LABEL_SORT);
+                List<TypeaheadItem> items = new ArrayList<>(top.scoreDocs.length);
+                for (ScoreDoc hit : top.scoreDocs) {
+                    Document document = searcher.storedFields().document(hit.doc, Set.of(ID, TITLE));
+                    items.add(new Suggestion(document.getField(ID).numericValue().longValue(), document.get(TITLE)));
+                }
+                return items;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Añade o reemplaza el documento de una entidad. Ignora los objetos que no se indexan.
+     */
+    public void index(Object entity) {
+        Indexed indexed = indexed(entity);
+        if (indexed != null) {
+            change(new Change(indexed.key(), indexed));
+        }
+    }
+
+    /**
+     * Quita el documento de una entidad. Ignora los objetos que no se indexan.
+     */
+    public void delete(Object entity) {
+        SearchResultType type = typeOf(entity);
+        if (type != null) {
+            change(new Change(Indexed.key(type, idOf(entity)), null));
+        }
+    }
+
+    /**
+     * Vuelve a indexar todas las entidades de un usuario leyéndolas de la base de datos. Sus
+     * documentos se reemplazan de una vez, así que las búsquedas nunca lo ven sin ellos.
+     *
+     * @return documentos indexados
+     */
+    public int reindexUser(Long userId) {
+        startRecording();
+        try {
+            return replaceUser(userId);
+        } finally {
+            stopRecording();
+        }
+    }
+
+    /**
+     * Reconstruye el índice completo desde la base de datos, usuario a usuario, y lo escribe a
+     * disco. Mientras tanto las búsquedas usan el searcher abierto antes de empezar: ven el
+     * índice anterior (sin los cambios que lleguen durante la reconstrucción) y nunca uno vacío o
+     * a medias. Los cambios recibidos entre medias se vuelven a aplicar al final.
+     *
+     * @return documentos indexados
+     */
+    public int rebuild() {
+        long start = System.nanoTime();
+        try {
+            IndexSearcher previous = searcherManager.acquire();
+            pinned = previous;
+            try {
+                int documents = 0;
+                startRecording();
+                try {
+                    writer.deleteAll();
+                    for (Long userId : userRepository.findAllIds()) {
+                        documents += replaceUser(userId);
+                    }
+                } finally {
+                    stopRecording();
+                }
+                writer.commit();
+                // las búsquedas no vuelven al índice en curso hasta que ve la reconstrucción entera
+                searcherManager.maybeRefreshBlocking();
+                log.info("Índice de búsqueda reconstruido: {} documentos en {} ms", documents, (System.nanoTime() - start) / 1_000_000);
+                return documents;
+            } finally {
+                pinned = null;
+                searcherManager.release(previous);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Escribe a disco los cambios pendientes, si los hay.
+     */
+    public void commit() throws IOException {
+        if (writer.hasUncommittedChanges()) {
+            writer.commit();
+        }
+    }
+
+    public boolean isEmpty() {
+        return writer.getDocStats().numDocs == 0;
+    }
+
+    @EventListener
+    public void onSampleDataCreated(SampleDataCreatedEvent event) {
+        try {
+            reindexUser(event.userId());
+        } catch (RuntimeException e) {
+            // el índice queda incompleto para este usuario hasta la próxima reconstrucción
+            log.error("Error indexando los datos de ejemplo del usuario {}: {}", event.userId(), e.getMessage(), e);
+        }
+    }
+
+    private int replaceUser(Long userId) {
+        List<Indexed> entities = readOnlyTransaction.execute(status -> {
+            User user = userRepository.getReferenceById(userId);
+            List<Indexed> result = new ArrayList<>();
+            categoryRepository.findByUser(user).forEach(category -> result.add(indexed(category)));
+            taskRepository.findByUser(user).forEach(task -> result.add(indexed(task)));
+            noteRepository.findByUser(user).forEach(note -> result.add(indexed(note)));
+            habitRepository.findByUser(user).forEach(habit -> result.add(indexed(habit)));
+            return result;
+        });
+        try {
+            // borra los documentos del usuario y añade los nuevos de forma atómica para las búsquedas
+            writer.updateDocuments(new Term(USER, userId.toString()),
+                    entities.stream().map(LuceneSearchEngine::document).toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return entities.size();
+    }
+
+    private void change(Change change) {
+        synchronized (changesLock) {
+            apply(change);
+            if (rebuilds > 0) {
+                recordedChanges.add(change);
+            }
+        }
+    }
+
+    private void apply(Change change) {
+        try {
+            if (change.indexed() != null) {
+                writer.updateDocument(new Term(KEY, change.key()), document(change.indexed()));
+            } else {
+                writer.deleteDocuments(new Term(KEY, change.key()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void startRecording() {
+        synchronized (changesLock) {
+            rebuilds++;
+        }
+    }
+
+    /**
+     * Vuelve a aplicar los cambios recibidos durante la reconstrucción, por si la lectura de la
+     * base de datos los deshizo.
+     */
+    private void stopRecording() {
+        synchronized (changesLock) {
+            recordedChanges.forEach(this::apply);
+            if (--rebuilds == 0) {
+                recordedChanges.clear();
+            }
+        }
+    }
+
+    private IndexSearcher acquireSearcher() throws IOException {
+        IndexSearcher frozen = pinned;
+        // si la reconstrucción ya lo ha soltado, tryIncRef falla y se usa el índice en curso
+        if (frozen != null && frozen.getIndexReader().tryIncRef()) {
+            return frozen;
+        }
+        return searcherManager.acquire();
+    }
+
+    private Query parse(String query) {
+        MultiFieldQueryParser parser = new MultiFieldQueryParser(new String[]{TITLE, BODY}, analyzer, BOOSTS);
+        parser.setDefaultOperator(QueryParser.Operator.AND);
+        try {
+            return parser.parse(query);
+        } catch (ParseException e) {
+            throw new BadRequestException("Búsqueda inválida: " + query, e);
+        }
+    }
+
+    private static Document document(Indexed indexed) {
+        Document document = new Document();
+        document.add(new StringField(KEY, indexed.key(), Field.Store.NO));
+        document.add(new SortedDocValuesField(KEY, new BytesRef(indexed.key())));
+        document.add(new StringField(USER, indexed.userId().toString(), Field.Store.NO));
+        document.add(new StringField(TYPE, indexed.type().name(), Field.Store.YES));
+        document.add(new StoredField(ID, indexed.id()));
+        document.add(new Field(TITLE, indexed.title(), TEXT_WITH_OFFSETS));
+        String label = label(indexed.title());
+        document.add(new StringField(LABEL, label, Field.Store.NO));
+        document.add(new SortedDocValuesField(LABEL, new BytesRef(label)));
+        if (indexed.body() != null) {
+            document.add(new Field(BODY, indexed.body(), TEXT_WITH_OFFSETS));
+        }
+        return document;
+    }
+
+    private static String label(String title) {
+        String label = title.toLowerCase(Locale.ROOT);
+        if (label.length() <= MAX_LABEL_LENGTH) {
+            return label;
+        }
+        // sin partir un par surrogate
+        int end = Character.isHighSurrogate(label.charAt(MAX_LABEL_LENGTH - 1)) ? MAX_LABEL_LENGTH - 1 : MAX_LABEL_LENGTH;
+        return label.substring(0, end);
+    }
+
+    private static Indexed indexed(Object entity) {
+        if (entity instanceof Note note) {
+            return new Indexed(SearchResultType.NOTE, note.getId(), note.getUser().getId(), note.getTitle(), note.getNote());
+        }
+        if (entity instanceof Task task) {
+            return new Indexed(SearchResultType.TASK, task.getId(), task.getUser().getId(), task.getTitle(), task.getDescription());
+        }
+        if (entity instanceof Habit habit) {
+            return new Indexed(SearchResultType.HABIT, habit.getId(), habit.getUser().getId(), habit.getName(), habit.getDescription());
+        }
+        if (entity instanceof Category category) {
+            return new Indexed(SearchResultType.CATEGORY, category.getId(), category.getUser().getId(),
+                    category.getName(), category.getDescription());
+        }
+        return null;
+    }
+
+    private static SearchResultType typeOf(Object entity) {
+        if (entity instanceof Note) {
+            return SearchResultType.NOTE;
+        }
+        if (entity instanceof Task) {
+            return SearchResultType.TASK;
+        }
+        if (entity instanceof Habit) {
+            return SearchResultType.HABIT;
+        }
+        if (entity instanceof Category) {
+            return SearchResultType.CATEGORY;
+        }
+        return null;
+    }
+
+    private static Long idOf(Object entity) {
+        if (entity instanceof Note note) {
+            return note.getId();
+        }
+        if (entity instanceof Task task) {
+            return task.getId();
+        }
+        if (entity instanceof Habit habit) {
+            return habit.getId();
+        }
+        return ((Category) entity).getId();
+    }
+
+    /**
+     * Posición de la última fila devuelta: {@code score|key} en Base64 URL-safe. El score se
+     * guarda con {@link Float#toString}, que vuelve a dar exactamente el mismo float.
+     */
+    private static String encodeCursor(FieldDoc last) {
+        String raw = last.fields[0] + SEPARATOR + ((BytesRef) last.fields[1]).utf8ToString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static FieldDoc decodeCursor(String value) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new BadRequestException("Cursor inválido");
+            }
+            float score = Float.parseFloat(raw.substring(0, separator));
+            BytesRef key = new BytesRef(raw.substring(separator + 1));
+            // las claves son únicas, así que el doc del cursor nunca desempata
+            return new FieldDoc(Integer.MAX_VALUE, score, new Object[]{score, key});
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Cursor inválido", e);
+        }
+    }
+}
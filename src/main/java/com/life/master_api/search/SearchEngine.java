@@ -0,0 +1,23 @@
+package com.life.master_api.search;
+
+import com.life.master_api.dto.SearchHit;
+import com.life.master_api.dto.SearchResultType;
+import com.life.master_api.entities.User;
+import com.life.master_api.repositories.KeysetPage;
+
+import java.util.Collection;
+
+/**
+ * Motor de {@code /api/v1/search}, elegido con {@code search.engine}: {@code postgres}
+ * (columnas tsvector, {@link com.life.master_api.repositories.SearchRepository}) o
+ * {@code lucene} (índice local en disco, {@link LuceneSearchEngine}).
+ */
+public interface SearchEngine {
+
+    /**
+     * @param query texto de búsqueda; ambos motores admiten palabras y {@code "frases"}
+     * @param types tipos en los que buscar; todos si es {@code null} o está vacío
+     * @param after cursor devuelto como {@code nextCursor} por la página anterior (propio de cada motor)
+     */
+    KeysetPage<SearchHit> search(User user, String query, Collection<SearchResultType> types, String after, int limit);
+}
@@ -0,0 +1,100 @@
+package com.life.master_api.search;
+
+import com.life.master_api.entities.Category;
+import com.life.master_api.entities.Habit;
+import com.life.master_api.entities.Note;
+import com.life.master_api.entities.Task;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Lleva al índice de {@link LuceneSearchEngine} las altas, cambios y bajas de notas, tareas,
+ * hábitos y categorías hechos con JPA (controladores, /batch...). Se registra en Hibernate como
+ * listener post-commit: sólo ve cambios confirmados y nunca añade trabajo a la transacción.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "search.engine", havingValue = "lucene")
+public class SearchIndexEventListener implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private static final Set<Class<?>> INDEXED = Set.of(Note.class, Task.class, Habit.class, Category.class);
+
+    private final LuceneSearchEngine searchEngine;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public SearchIndexEventListener(LuceneSearchEngine searchEngine, EntityManagerFactory entityManagerFactory) {
+        this.searchEngine = searchEngine;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return INDEXED.contains(persister.getMappedClass());
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        index(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        index(event.getEntity());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        try {
+            searchEngine.delete(event.getEntity());
+        } catch (RuntimeException e) {
+            log.error("Error quitando {} del índice de búsqueda: {}", event.getId(), e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // la transacción no se confirmó: no hay nada que indexar
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    private void index(Object entity) {
+        try {
+            searchEngine.index(entity);
+        } catch (RuntimeException e) {
+            // la petición ya está confirmada; el documento se recupera en la próxima reconstrucción
+            log.error("Error indexando {}: {}", entity.getClass().getSimpleName(), e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.life.master_api.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Injects the authenticated user into a controller method parameter of type
+ * {@link com.life.master_api.entities.User}. The value is an id-only reference,
+ * enough for ownership filters such as {@code findByIdAndUser}; touching other
+ * fields triggers a load from the database.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
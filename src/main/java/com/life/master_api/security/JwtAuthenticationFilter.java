@@ -1,5 +1,6 @@
 package com.life.master_api.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -18,10 +19,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider tokenProvider;
     private final CustomUserDetailsService customUserDetailsService;
+    private final UserPrincipalCache principalCache;
 
-    public JwtAuthenticationFilter(JwtTokenProvider tokenProvider, CustomUserDetailsService customUserDetailsService) {
+    public JwtAuthenticationFilter(JwtTokenProvider tokenProvider,
+                                   CustomUserDetailsService customUserDetailsService,
+                                   UserPrincipalCache principalCache) {
         this.tokenProvider = tokenProvider;
         this.customUserDetailsService = customUserDetailsService;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -30,12 +35,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
         // get JWT token from http request
         String token = getJWTFromRequest(request);
-        // validate token
-        if(StringUtils.hasText(token) && tokenProvider.validateToken(token)){
-            // get username from token
-            String username = tokenProvider.getUsernameFromJWT(token);
-            // load user associated with token
-            UserDetails userDetails = customUserDetailsService.loadUserByUsername(username);
+        // validate token and get its claims (subject, issue time) in a single pass
+        Claims claims = StringUtils.hasText(token) ? tokenProvider.resolveClaims(token) : null;
+        if(claims != null){
+            // load user associated with token (cached between requests)
+            UserDetails userDetails = principalCache.get(claims.getSubject(), claims.getIssuedAt(),
+                    customUserDetailsService::loadUserByUsername);
 
             UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
                     userDetails, null, userDetails.getAuthorities()
@@ -3,14 +3,26 @@ package com.life.master_api.security;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Component
+@Slf4j
 public class JwtTokenProvider {
 
     @Value("${jwt.secret}")
@@ -19,6 +31,44 @@ public class JwtTokenProvider {
     @Value("${jwt.expiration}")
     private int jwtExpirationInMs;
 
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private int claimsCacheMaxSize;
+
+    private final Timer verifyHit;
+    private final Timer verifyMiss;
+
+    // signing key and parser are immutable and thread-safe, build them once
+    private Key key;
+    private JwtParser parser;
+
+    // hash of recently verified tokens -> claims, in LRU order
+    private Map<String, Claims> verifiedTokens;
+
+    public JwtTokenProvider(MeterRegistry meterRegistry) {
+        this.verifyHit = Timer.builder("security.jwt.verify")
+                .tag("cache", "hit")
+                .description("Time spent resolving the claims of a bearer token")
+                .register(meterRegistry);
+        this.verifyMiss = Timer.builder("security.jwt.verify")
+                .tag("cache", "miss")
+                .description("Time spent resolving the claims of a bearer token")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        this.key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+        this.verifiedTokens = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Claims> eldest) {
+                return size() > claimsCacheMaxSize;
+            }
+        };
+    }
+
     // generate token
     public String generateToken(Authentication authentication){
         String username = authentication.getName();
@@ -29,44 +79,84 @@ public class JwtTokenProvider {
                 .setSubject(username)
                 .setIssuedAt(new Date())
                 .setExpiration(expireDate)
-                .signWith(key())
+                .signWith(key)
                 .compact();
         return token;
     }
 
-    private Key key(){
-        return Keys.hmacShaKeyFor(
-                Decoders.BASE64.decode(jwtSecret)
-        );
+    /**
+     * Verifies the token and returns its claims, or {@code null} when the token
+     * is invalid or expired. The signature is checked once per token: later
+     * calls with the same token are served from the cache until it expires.
+     */
+    public Claims resolveClaims(String token){
+        long start = System.nanoTime();
+        String tokenHash = hash(token);
+
+        Claims cached;
+        synchronized (verifiedTokens) {
+            cached = verifiedTokens.get(tokenHash);
+        }
+        if (cached != null) {
+            if (cached.getExpiration() != null && cached.getExpiration().getTime() > System.currentTimeMillis()) {
+                verifyHit.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return cached;
+            }
+            synchronized (verifiedTokens) {
+                verifiedTokens.remove(tokenHash);
+            }
+            log.debug("Expired JWT token");
+            return null;
+        }
+
+        Claims claims = parse(token);
+        if (claims != null && claims.getExpiration() != null) {
+            synchronized (verifiedTokens) {
+                verifiedTokens.put(tokenHash, claims);
+            }
+        }
+        verifyMiss.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return claims;
     }
 
     // get username from the token
     public String getUsernameFromJWT(String token){
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        Claims claims = resolveClaims(token);
+        if (claims == null) {
+            throw new MalformedJwtException("Invalid JWT token");
+        }
         return claims.getSubject();
     }
 
     // validate JWT token
     public boolean validateToken(String token){
+        return resolveClaims(token) != null;
+    }
+
+    private Claims parse(String token){
         try{
-            Jwts.parserBuilder()
-                    .setSigningKey(key())
-                    .build()
-                    .parse(token);
-            return true;
+            return parser.parseClaimsJws(token).getBody();
         } catch (MalformedJwtException e) {
-            System.out.println("Invalid JWT token");
+            log.debug("Invalid JWT token");
         } catch (ExpiredJwtException e) {
-            System.out.println("Expired JWT token");
+            log.debug("Expired JWT token");
         } catch (UnsupportedJwtException e) {
-            System.out.println("Unsupported JWT token");
+            log.debug("Unsupported JWT token");
         } catch (IllegalArgumentException e) {
-            System.out.println("JWT claims string is empty.");
+            log.debug("JWT claims string is empty.");
+        } catch (JwtException e) {
+            log.debug("Invalid JWT signature");
+        }
+        return null;
+    }
+
+    // the cache never keeps the raw bearer token in memory
+    private static String hash(String token){
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
-        return false;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+package com.life.master_api.security;
+
+import com.life.master_api.entities.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.ZoneId;
+import java.util.Collection;
+
+/**
+ * Authenticated principal kept in the SecurityContext. Carries the user id so
+ * controllers can reference the owner without looking the user up again.
+ */
+public class UserPrincipal implements UserDetails {
+
+    private final Long id;
+    private final String username;
+    private final String password;
+    private final ZoneId zoneId;
+    private final Collection<? extends GrantedAuthority> authorities;
+
+    public UserPrincipal(Long id, String username, String password, ZoneId zoneId,
+                         Collection<? extends GrantedAuthority> authorities) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.zoneId = zoneId;
+        this.authorities = authorities;
+    }
+
+    public static UserPrincipal from(User user, Collection<? extends GrantedAuthority> authorities) {
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getPassword(),
+                ZoneId.of(user.getTimeZone()), authorities);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * The user's time zone, used to compute their local "today".
+     */
+    public ZoneId getZoneId() {
+        return zoneId;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+}
@@ -0,0 +1,115 @@
+package com.life.master_api.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bounded, TTL-evicted cache of authenticated principals keyed by JWT subject.
+ * Shared by {@link JwtAuthenticationFilter} and the controllers so that an
+ * authenticated request does not hit the Users table.
+ */
+@Component
+public class UserPrincipalCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public UserPrincipalCache(@Value("${security.principal-cache.max-size:10000}") int maxSize,
+                              @Value("${security.principal-cache.ttl:5m}") Duration ttl,
+                              MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        // access-order LinkedHashMap: the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > UserPrincipalCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        this.hits = Counter.builder("security.principal.cache")
+                .tag("result", "hit")
+                .description("Principal lookups served from the cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("security.principal.cache")
+                .tag("result", "miss")
+                .description("Principal lookups that had to load the user")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("security.principal.cache.evictions")
+                .description("Principals evicted because the cache was full")
+                .register(meterRegistry);
+        Gauge.builder("security.principal.cache.size", this, UserPrincipalCache::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached principal for the subject, loading it when absent,
+     * expired or older than the token being presented.
+     *
+     * @param subject  JWT subject (username)
+     * @param issuedAt token issue time; a principal cached before the token was
+     *                 issued (e.g. before a fresh login) is reloaded
+     * @param loader   loads the principal from the database on a miss
+     */
+    public UserPrincipal get(String subject, Date issuedAt, Function<String, UserPrincipal> loader) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(subject);
+            if (entry != null && entry.expiresAt > now
+                    && (issuedAt == null || issuedAt.getTime() <= entry.loadedAt)) {
+                hits.increment();
+                return entry.principal;
+            }
+        }
+
+        misses.increment();
+        UserPrincipal principal = loader.apply(subject);
+        synchronized (entries) {
+            entries.put(subject, new Entry(principal, now, now + ttlMillis));
+        }
+        return principal;
+    }
+
+    /**
+     * Evicts the principal so the next request reloads it. Must be called
+     * whenever the user's credentials or identity change.
+     */
+    public void invalidate(String subject) {
+        synchronized (entries) {
+            entries.remove(subject);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private record Entry(UserPrincipal principal, long loadedAt, long expiresAt) {
+    }
+}
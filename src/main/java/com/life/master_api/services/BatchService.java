@@ -0,0 +1,296 @@
+package com.life.master_api.services;
+
+import com.life.master_api.dto.BatchAction;
+import com.life.master_api.dto.BatchItemResult;
+import com.life.master_api.dto.BatchOperation;
+import com.life.master_api.entities.Category;
+import com.life.master_api.entities.Habit;
+import com.life.master_api.entities.Note;
+import com.life.master_api.entities.Task;
+import com.life.master_api.entities.User;
+import com.life.master_api.exceptions.BadRequestException;
+import com.life.master_api.repositories.CategoryRepository;
+import com.life.master_api.repositories.HabitRepository;
+import com.life.master_api.repositories.NoteRepository;
+import com.life.master_api.repositories.TaskRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Operaciones en lote ({@code POST /api/v1/{notes|tasks|categories|habits}/batch}).
+ *
+ * Todo el lote va en una transacción: las entidades de UPDATE y DELETE se cargan con
+ * una sola consulta, los cambios se acumulan en el contexto de persistencia y Hibernate
+ * los envía en lotes JDBC al confirmar ({@code hibernate.jdbc.batch_size}), junto con
+ * las filas de historial de las actualizaciones. Un UPDATE que no cambia nada no escribe
+ * historial ni llega a la base de datos.
+ *
+ * Los fallos por operación (datos inválidos, entidad inexistente o de otro usuario) no
+ * abortan el lote: esa operación se omite y se informa en su resultado. Un error de la
+ * base de datos al confirmar sí revierte el lote completo.
+ */
+@Service
+public class BatchService {
+
+    private final NoteRepository noteRepository;
+    private final TaskRepository taskRepository;
+    private final CategoryRepository categoryRepository;
+    private final HabitRepository habitRepository;
+    private final EntityHistoryService historyService;
+    private final Validator validator;
+    private final int maxOperations;
+
+    public BatchService(NoteRepository noteRepository,
+                        TaskRepository taskRepository,
+                        CategoryRepository categoryRepository,
+                        HabitRepository habitRepository,
+                        EntityHistoryService historyService,
+                        Validator validator,
+                        @Value("${batch.max-operations:1000}") int maxOperations) {
+        this.noteRepository = noteRepository;
+        this.taskRepository = taskRepository;
+        this.categoryRepository = categoryRepository;
+        this.habitRepository = habitRepository;
+        this.historyService = historyService;
+        this.validator = validator;
+        this.maxOperations = maxOperations;
+    }
+
+    @Transactional
+    public List<BatchItemResult> applyNotes(User user, List<BatchOperation<Note>> operations) {
+        return apply(user, operations, new Handler<>(
+                noteRepository::findByUserAndIdIn,
+                Note::getId,
+                (note, owner) -> {
+                    note.setId(null); // el id lo asigna la base de datos, nunca el cliente
+                    note.setUser(owner);
+                    note.setCreation(new Date());
+                },
+                (existing, details) -> {
+                    if (details.getTitle() != null) {
+                        existing.setTitle(details.getTitle());
+                    }
+                    if (details.getNote() != null) {
+                        existing.setNote(details.getNote());
+                    }
+                },
+                (note, owner) -> historyService.captureNote(note),
+                noteRepository::saveAll,
+                noteRepository::deleteAll));
+    }
+
+    @Transactional
+    public List<BatchItemResult> applyTasks(User user, List<BatchOperation<Task>> operations) {
+        return apply(user, operations, new Handler<>(
+                taskRepository::findByUserAndIdIn,
+                Task::getId,
+                (task, owner) -> {
+                    task.setId(null); // el id lo asigna la base de datos, nunca el cliente
+                    task.setUser(owner);
+                    task.setCreation(new Date());
+                },
+                (existing, details) -> {
+                    if (details.getTitle() != null) {
+                        existing.setTitle(details.getTitle());
+                    }
+                    if (details.getDescription() != null) {
+                        existing.setDescription(details.getDescription());
+                    }
+                },
+                historyService::captureTask,
+                taskRepository::saveAll,
+                taskRepository::deleteAll));
+    }
+
+    @Transactional
+    public List<BatchItemResult> applyCategories(User user, List<BatchOperation<Category>> operations) {
+        return apply(user, operations, new Handler<>(
+                categoryRepository::findByUserAndIdIn,
+                Category::getId,
+                (category, owner) -> {
+                    category.setId(null); // el id lo asigna la base de datos, nunca el cliente
+                    category.setUser(owner);
+                    category.setCreation(new Date());
+                },
+                (existing, details) -> {
+                    if (details.getName() != null) {
+                        existing.setName(details.getName());
+                    }
+                    if (details.getDescription() != null) {
+                        existing.setDescription(details.getDescription());
+                    }
+                },
+                historyService::captureCategory,
+                categoryRepository::saveAll,
+                categoryRepository::deleteAll));
+    }
+
+    @Transactional
+    public List<BatchItemResult> applyHabits(User user, List<BatchOperation<Habit>> operations) {
+        return apply(user, operations, new Handler<>(
+                habitRepository::findByUserAndIdIn,
+                Habit::getId,
+                (habit, owner) -> {
+                    habit.setId(null); // el id lo asigna la base de datos, nunca el cliente
+                    habit.setUser(owner);
+                    habit.setCreation(new Date());
+                },
+                (existing, details) -> {
+                    if (details.getName() != null) {
+                        existing.setName(details.getName());
+                    }
+                },
+                (habit, owner) -> historyService.captureHabit(habit),
+                habitRepository::saveAll,
+                habitRepository::deleteAll));
+    }
+
+    /**
+     * Lo que cambia de un tipo de entidad a otro; el recorrido del lote es común.
+     *
+     * @param prepareNew asigna los campos que fija el servidor al crear
+     * @param patch      aplica los campos no nulos de los datos a la entidad existente
+     * @param history    captura la versión anterior; se guarda tras aplicar el cambio, si cambia algo
+     */
+    private record Handler<T>(BiFunction<User, Collection<Long>, List<T>> loader,
+                              Function<T, Long> id,
+                              BiConsumer<T, User> prepareNew,
+                              BiConsumer<T, T> patch,
+                              BiFunction<T, User, EntityHistoryService.PendingVersion> history,
+                              Consumer<List<T>> saveAll,
+                              Consumer<List<T>> deleteAll) {
+    }
+
+    private <T> List<BatchItemResult> apply(User user, List<BatchOperation<T>> operations, Handler<T> handler) {
+        if (operations == null || operations.isEmpty()) {
+            throw new BadRequestException("El lote no contiene operaciones");
+        }
+        if (operations.size() > maxOperations) {
+            throw new BadRequestException("El lote no puede tener más de " + maxOperations + " operaciones");
+        }
+
+        // Una sola consulta para todas las entidades que se actualizan o eliminan
+        Set<Long> ids = operations.stream()
+                .filter(Objects::nonNull)
+                .filter(operation -> operation.action() == BatchAction.UPDATE || operation.action() == BatchAction.DELETE)
+                .map(BatchOperation::id)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, T> existing = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (T entity : handler.loader().apply(user, ids)) {
+                existing.put(handler.id().apply(entity), entity);
+            }
+        }
+
+        BatchItemResult[] results = new BatchItemResult[operations.size()];
+        Map<Integer, T> created = new LinkedHashMap<>();
+        List<T> deleted = new ArrayList<>();
+        Set<Long> deletedIds = new HashSet<>();
+        Set<Long> updatedIds = new HashSet<>();
+
+        for (int index = 0; index < operations.size(); index++) {
+            BatchOperation<T> operation = operations.get(index);
+            BatchAction action = operation != null ? operation.action() : null;
+            Long id = operation != null ? operation.id() : null;
+            if (action == null) {
+                results[index] = BatchItemResult.failure(index, null, id, HttpStatus.BAD_REQUEST.value(), "Falta la acción");
+                continue;
+            }
+
+            if (action == BatchAction.CREATE) {
+                T entity = operation.data();
+                if (entity == null) {
+                    results[index] = BatchItemResult.failure(index, action, null, HttpStatus.BAD_REQUEST.value(), "Faltan los datos");
+                    continue;
+                }
+                handler.prepareNew().accept(entity, user);
+                String error = violations(validator.validate(entity), false);
+                if (error != null) {
+                    results[index] = BatchItemResult.failure(index, action, null, HttpStatus.BAD_REQUEST.value(), error);
+                } else {
+                    created.put(index, entity);
+                }
+                continue;
+            }
+
+            T entity = id != null ? existing.get(id) : null;
+            if (entity == null || deletedIds.contains(id)) {
+                results[index] = BatchItemResult.failure(index, action, id, HttpStatus.NOT_FOUND.value(),
+                        id == null ? "Falta el id" : "No encontrado o no pertenece al usuario");
+                continue;
+            }
+
+            if (action == BatchAction.DELETE) {
+                if (updatedIds.contains(id)) {
+                    // su fila de historial aún no escrita quedaría apuntando a una entidad borrada
+                    results[index] = BatchItemResult.failure(index, action, id, HttpStatus.CONFLICT.value(),
+                            "Actualizado en este mismo lote");
+                    continue;
+                }
+                deleted.add(entity);
+                deletedIds.add(id);
+                results[index] = BatchItemResult.success(index, action, id, HttpStatus.NO_CONTENT.value());
+                continue;
+            }
+
+            T details = operation.data();
+            if (details == null) {
+                results[index] = BatchItemResult.failure(index, action, id, HttpStatus.BAD_REQUEST.value(), "Faltan los datos");
+                continue;
+            }
+            // Como en PATCH sólo se validan los campos presentes en los datos
+            String error = violations(validator.validate(details), true);
+            if (error != null) {
+                results[index] = BatchItemResult.failure(index, action, id, HttpStatus.BAD_REQUEST.value(), error);
+                continue;
+            }
+            EntityHistoryService.PendingVersion version = handler.history().apply(entity, user);
+            handler.patch().accept(entity, details);
+            version.record();
+            updatedIds.add(id);
+            results[index] = BatchItemResult.success(index, action, id, HttpStatus.OK.value());
+        }
+
+        // Los ids se asignan al persistir; el INSERT/UPDATE/DELETE real se agrupa al hacer flush
+        List<T> toCreate = new ArrayList<>(created.values());
+        handler.saveAll().accept(toCreate);
+        created.forEach((index, entity) -> results[index] = BatchItemResult.success(index, BatchAction.CREATE,
+                handler.id().apply(entity), HttpStatus.CREATED.value()));
+        if (!deleted.isEmpty()) {
+            historyService.awaitPending(deleted); // que no quede una versión suya por escribir
+            handler.deleteAll().accept(deleted);
+        }
+        return Arrays.asList(results);
+    }
+
+    private static <T> String violations(Set<ConstraintViolation<T>> violations, boolean presentFieldsOnly) {
+        String message = violations.stream()
+                .filter(violation -> !presentFieldsOnly || violation.getInvalidValue() != null)
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+        return message.isEmpty() ? null : message;
+    }
+}
@@ -0,0 +1,292 @@
+package com.life.master_api.services;
+
+import com.life.master_api.entities.Category;
+import com.life.master_api.entities.CategoryHistory;
+import com.life.master_api.entities.Habit;
+import com.life.master_api.entities.HabitHistory;
+import com.life.master_api.entities.Note;
+import com.life.master_api.entities.NoteHistory;
+import com.life.master_api.entities.Task;
+import com.life.master_api.entities.TaskHistory;
+import com.life.master_api.entities.TextHistory;
+import com.life.master_api.entities.User;
+import com.life.master_api.repositories.CategoryHistoryRepository;
+import com.life.master_api.repositories.NoteHistoryRepository;
+import com.life.master_api.repositories.TaskHistoryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Guarda la versión anterior de una entidad cuando se modifica. Lo usan tanto los
+ * endpoints individuales como los de lote, así que el historial es el mismo por
+ * cualquiera de los dos caminos. Quien modifica captura el estado antes de cambiar nada
+ * ({@code capture*}) y lo registra después ({@link PendingVersion#record()}, o
+ * {@link PendingVersion#saveIfChanged} tras guardar la entidad fuera de una transacción): si
+ * nada ha cambiado no se escribe historial y el llamante tampoco necesita guardar la entidad. La
+ * versión la escribe {@link HistoryWriter}, por defecto en segundo plano y por lotes.
+ * <p>
+ * Cada entidad numera sus versiones desde 1. El texto largo (contenido de la nota, descripción
+ * de tareas y categorías) se guarda completo cada {@code history.snapshot-interval} versiones y,
+ * entre medias, como {@link TextDelta} respecto a la versión anterior, así que el historial
+ * crece con lo editado y no con el tamaño del texto. Para leer una versión se parte del snapshot
+ * anterior y se aplican los deltas.
+ */
+@Service
+public class EntityHistoryService {
+
+    // history.writes{entity, result}: actualizaciones que no cambiaban nada (unchanged); las
+    // versiones escritas y agrupadas las cuenta HistoryWriter
+    private static final String WRITES_METRIC = "history.writes";
+    private static final String NOTE = "note";
+    private static final String TASK = "task";
+    private static final String CATEGORY = "category";
+    private static final String HABIT = "habit";
+
+    private final NoteHistoryRepository noteHistoryRepository;
+    private final TaskHistoryRepository taskHistoryRepository;
+    private final CategoryHistoryRepository categoryHistoryRepository;
+    private final HistoryWriter historyWriter;
+    private final MeterRegistry meterRegistry;
+    private final Timer recordTimer;
+
+    public EntityHistoryService(NoteHistoryRepository noteHistoryRepository,
+                                TaskHistoryRepository taskHistoryRepository,
+                                CategoryHistoryRepository categoryHistoryRepository,
+                                HistoryWriter historyWriter,
+                                MeterRegistry meterRegistry) {
+        this.noteHistoryRepository = noteHistoryRepository;
+        this.taskHistoryRepository = taskHistoryRepository;
+        this.categoryHistoryRepository = categoryHistoryRepository;
+        this.historyWriter = historyWriter;
+        this.meterRegistry = meterRegistry;
+        // lo que añade el historial a cada actualización; mode permite comparar ambos modos
+        this.recordTimer = Timer.builder("history.record")
+                .description("Tiempo que tarda una actualización en registrar su versión del historial")
+                .tag("mode", historyWriter.isWriteBehind() ? "write-behind" : "sync")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Estado de una entidad capturado antes de modificarla.
+     */
+    public interface PendingVersion {
+
+        /**
+         * Compara el estado capturado con el actual de la entidad y, si ha cambiado, lo guarda
+         * como nueva versión, salvo que la última versión sea de hace menos de
+         * {@code history.coalesce-window}: entonces la ráfaga de ediciones queda en esa versión.
+         * Dentro de una transacción la versión sólo se escribe si esta se confirma; fuera de ella
+         * se registra en el acto, así que hay que llamarlo después de guardar la entidad (ver
+         * {@link #saveIfChanged}).
+         *
+         * @return si la entidad ha cambiado; si no, no hace falta guardarla
+         */
+        boolean record();
+
+        /**
+         * Si la entidad ha cambiado la guarda con {@code save} y, sólo cuando el guardado ha
+         * terminado bien, registra la versión como {@link #record()}. Para quien guarda sin
+         * transacción propia: si el guardado falla no queda una versión de un cambio que no existe.
+         *
+         * @return la entidad guardada, o vacío si no había cambios (ni historial ni UPDATE)
+         */
+        <T> Optional<T> saveIfChanged(Supplier<T> save);
+    }
+
+    /**
+     * Implementación de {@link PendingVersion}: el estado anterior, ya copiado en su
+     * {@code *History}, y cómo saber si la entidad ha cambiado desde entonces.
+     */
+    private final class CapturedVersion implements PendingVersion {
+
+        private final String entity;
+        private final Object previous;
+        private final Consumer<Date> setTimestamp;
+        private final BooleanSupplier changed;
+
+        private CapturedVersion(String entity, Object previous, Consumer<Date> setTimestamp, BooleanSupplier changed) {
+            this.entity = entity;
+            this.previous = previous;
+            this.setTimestamp = setTimestamp;
+            this.changed = changed;
+        }
+
+        @Override
+        public boolean record() {
+            if (!changed.getAsBoolean()) {
+                return unchanged(entity);
+            }
+            return EntityHistoryService.this.record(previous, setTimestamp);
+        }
+
+        @Override
+        public <T> Optional<T> saveIfChanged(Supplier<T> save) {
+            if (!changed.getAsBoolean()) {
+                unchanged(entity);
+                return Optional.empty();
+            }
+            T saved = save.get();
+            EntityHistoryService.this.record(previous, setTimestamp);
+            return Optional.of(saved);
+        }
+    }
+
+    public PendingVersion captureNote(Note note) {
+        NoteHistory previous = new NoteHistory();
+        previous.setNote(note);
+        previous.setTitle(note.getTitle());
+        previous.setNoteContent(note.getNote());
+        previous.setCreation(note.getCreation());
+        return new CapturedVersion(NOTE, previous, previous::setTimestamp,
+                () -> !Objects.equals(previous.getTitle(), note.getTitle())
+                        || !Objects.equals(previous.getNoteContent(), note.getNote()));
+    }
+
+    public PendingVersion captureTask(Task task, User user) {
+        TaskHistory previous = new TaskHistory();
+        previous.setTask(task);
+        previous.setUser(user); // Assign current user for data isolation
+        previous.setTitle(task.getTitle());
+        previous.setDescription(task.getDescription());
+        previous.setCreation(task.getCreation());
+        return new CapturedVersion(TASK, previous, previous::setTimestamp,
+                () -> !Objects.equals(previous.getTitle(), task.getTitle())
+                        || !Objects.equals(previous.getDescription(), task.getDescription()));
+    }
+
+    public PendingVersion captureCategory(Category category, User user) {
+        CategoryHistory previous = new CategoryHistory();
+        previous.setCategory(category);
+        previous.setUser(user); // Assign current user for data isolation
+        previous.setName(category.getName());
+        previous.setDescription(category.getDescription());
+        previous.setCreation(category.getCreation());
+        return new CapturedVersion(CATEGORY, previous, previous::setTimestamp,
+                () -> !Objects.equals(previous.getName(), category.getName())
+                        || !Objects.equals(previous.getDescription(), category.getDescription()));
+    }
+
+    public PendingVersion captureHabit(Habit habit) {
+        HabitHistory previous = new HabitHistory();
+        previous.setHabit(habit);
+        previous.setName(habit.getName());
+        previous.setCreation(habit.getCreation());
+        return new CapturedVersion(HABIT, previous, previous::setTimestamp,
+                () -> !Objects.equals(previous.getName(), habit.getName()));
+    }
+
+    /**
+     * Espera (como mucho unos segundos) a que estén escritas las versiones ya registradas de
+     * una entidad. Quien lee su historial lo llama antes, para ver la última edición, y quien la
+     * borra también, para que una versión pendiente no se escriba en medio del borrado. Mejor
+     * fuera de una transacción: la espera no debe retener una conexión.
+     */
+    public void awaitPending(Object entity) {
+        awaitPending(List.of(entity));
+    }
+
+    public void awaitPending(Collection<?> entities) {
+        historyWriter.awaitWritten(entities);
+    }
+
+    /**
+     * Historial de una nota, de la versión más reciente a la más antigua, con el texto de
+     * cada versión reconstruido.
+     */
+    @Transactional(readOnly = true)
+    public List<NoteHistory> getNoteHistory(Long noteId) {
+        return withText(noteHistoryRepository.findByNote_IdOrderByVersionIdAsc(noteId), NoteHistory::setNoteContent);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<NoteHistory> getNoteVersion(Long noteId, long versionId) {
+        return version(noteHistoryRepository.findChain(noteId, versionId), versionId, NoteHistory::setNoteContent);
+    }
+
+    @Transactional(readOnly = true)
+    public List<TaskHistory> getTaskHistory(Long taskId) {
+        return withText(taskHistoryRepository.findByTask_IdOrderByVersionIdAsc(taskId), TaskHistory::setDescription);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<TaskHistory> getTaskVersion(Long taskId, long versionId) {
+        return version(taskHistoryRepository.findChain(taskId, versionId), versionId, TaskHistory::setDescription);
+    }
+
+    @Transactional(readOnly = true)
+    public List<CategoryHistory> getCategoryHistory(Long categoryId) {
+        return withText(categoryHistoryRepository.findByCategory_IdOrderByVersionIdAsc(categoryId), CategoryHistory::setDescription);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<CategoryHistory> getCategoryVersion(Long categoryId, long versionId) {
+        return version(categoryHistoryRepository.findChain(categoryId, versionId), versionId, CategoryHistory::setDescription);
+    }
+
+    private boolean unchanged(String entity) {
+        meterRegistry.counter(WRITES_METRIC, "entity", entity, "result", "unchanged").increment();
+        return false;
+    }
+
+    private boolean record(Object version, Consumer<Date> setTimestamp) {
+        // hora de la edición: con la escritura en segundo plano es la que cuenta para agrupar
+        setTimestamp.accept(new Date());
+        recordTimer.record(() -> historyWriter.submit(version));
+        return true;
+    }
+
+    /**
+     * Texto de la última versión de {@code chain}, que empieza en un snapshot.
+     */
+    static String text(List<? extends TextHistory> chain) {
+        String text = null;
+        for (TextHistory version : chain) {
+            text = next(text, version);
+        }
+        return text;
+    }
+
+    private static String next(String previous, TextHistory version) {
+        if (version.getTextDelta() == null) {
+            return version.getTextSnapshot();
+        }
+        if (previous == null) {
+            throw new IllegalStateException("La versión " + version.getVersionId() + " del historial es un delta sin versión base");
+        }
+        return TextDelta.apply(previous, version.getTextDelta());
+    }
+
+    private static <H extends TextHistory> List<H> withText(List<H> ascending, BiConsumer<H, String> setText) {
+        String text = null;
+        for (H version : ascending) {
+            text = next(text, version);
+            setText.accept(version, text);
+        }
+        List<H> descending = new ArrayList<>(ascending);
+        Collections.reverse(descending);
+        return descending;
+    }
+
+    private static <H extends TextHistory> Optional<H> version(List<H> chain, long versionId, BiConsumer<H, String> setText) {
+        if (chain.isEmpty() || chain.get(chain.size() - 1).getVersionId() != versionId) {
+            return Optional.empty();
+        }
+        H version = chain.get(chain.size() - 1);
+        setText.accept(version, text(chain));
+        return Optional.of(version);
+    }
+}
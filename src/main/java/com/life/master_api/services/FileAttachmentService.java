@@ -0,0 +1,223 @@
+package com.life.master_api.services;
+
+import com.life.master_api.entities.FileAttachment;
+import com.life.master_api.entities.FileThumbnail;
+import com.life.master_api.entities.User;
+import com.life.master_api.exceptions.ResourceNotFoundException;
+import com.life.master_api.repositories.FileAttachmentRepository;
+import com.life.master_api.repositories.FileThumbnailRepository;
+import com.life.master_api.storage.AttachmentCompression;
+import com.life.master_api.storage.BlobStore;
+import com.life.master_api.storage.BlobStoreRegistry;
+import com.life.master_api.storage.StagedContent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Alta, lectura y borrado del contenido de los adjuntos. El contenido vive en un
+ * {@link BlobStore} direccionado por SHA-256 y siempre se mueve por streaming, así
+ * que la memoria por transferencia no depende del tamaño del archivo.
+ */
+@Service
+@Slf4j
+public class FileAttachmentService {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final FileAttachmentRepository fileAttachmentRepository;
+    private final FileThumbnailRepository thumbnailRepository;
+    private final BlobStoreRegistry blobStores;
+    private final AttachmentCompression compression;
+    private final Path stagingDir;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate cleanupTransaction;
+
+    public FileAttachmentService(FileAttachmentRepository fileAttachmentRepository,
+                                 FileThumbnailRepository thumbnailRepository,
+                                 BlobStoreRegistry blobStores,
+                                 AttachmentCompression compression,
+                                 @Value("${attachments.storage.staging-dir:${java.io.tmpdir}}") String stagingDir,
+                                 PlatformTransactionManager transactionManager) {
+        this.fileAttachmentRepository = fileAttachmentRepository;
+        this.thumbnailRepository = thumbnailRepository;
+        this.blobStores = blobStores;
+        this.compression = compression;
+        this.stagingDir = Paths.get(stagingDir);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        // tras confirmar el borrado los recursos de su transacción siguen enlazados al hilo
+        this.cleanupTransaction = new TransactionTemplate(transactionManager);
+        this.cleanupTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Guarda el adjunto: el multipart se vuelca a un temporal calculando su hash y
+     * después se entrega al backend actual, que no lo duplica si ya lo tiene. Los tipos
+     * de texto se guardan comprimidos cuando compensa (ver {@link AttachmentCompression}).
+     */
+    @Transactional
+    public FileAttachment store(User user, MultipartFile file, String entityType, Long entityId) throws IOException {
+        try (InputStream in = file.getInputStream();
+             StagedContent staged = StagedContent.stage(in, stagingDir)) {
+            return store(user, staged, file.getOriginalFilename(), file.getContentType(), entityType, entityId);
+        }
+    }
+
+    /**
+     * Guarda como adjunto un contenido ya volcado a disco (p. ej. una subida por trozos).
+     * El archivo puede moverse al backend; quien lo creó sigue siendo responsable de cerrarlo.
+     */
+    @Transactional
+    public FileAttachment store(User user, StagedContent staged, String originalFileName, String fileType,
+                                String entityType, Long entityId) throws IOException {
+        BlobStore store = blobStores.current();
+        StagedContent compressed = compression.appliesTo(fileType, staged.size())
+                ? compression.compress(staged)
+                : null;
+        StagedContent stored = compressed != null ? compressed : staged;
+        String hash = stored.sha256();
+        try (compressed) {
+            // hasta confirmar la fila nadie puede borrar el blob por no tener referencias
+            fileAttachmentRepository.lockContentHash(hash);
+            store.put(hash, stored.path());
+        }
+        // el blob de la base de datos se descarta con la transacción; el de disco hay que borrarlo
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    deleteIfUnreferenced(hash, store.name());
+                }
+            }
+        });
+
+        FileAttachment fileAttachment = new FileAttachment();
+        fileAttachment.setOriginalFileName(originalFileName);
+        fileAttachment.setFileType(fileType);
+        fileAttachment.setFileSize(staged.size());
+        fileAttachment.setUploadDate(new Date()); // Usar java.util.Date en lugar de LocalDateTime
+        fileAttachment.setContentHash(hash);
+        fileAttachment.setStorageBackend(store.name());
+        fileAttachment.setContentEncoding(compressed != null ? AttachmentCompression.DEFLATE : null);
+        fileAttachment.setEntityType(entityType);
+        fileAttachment.setEntityId(entityId);
+        fileAttachment.setUser(user);
+
+        return fileAttachmentRepository.save(fileAttachment);
+    }
+
+    /**
+     * Copia en {@code out} hasta {@code count} bytes del adjunto a partir de {@code position},
+     * leyendo sólo ese tramo del almacenamiento. Se invoca desde el hilo de
+     * {@code StreamingResponseBody}, después de que el controlador haya devuelto la respuesta.
+     */
+    public void writeContent(FileAttachment fileAttachment, long position, long count, OutputStream out) throws IOException {
+        if (fileAttachment.getContentHash() == null) {
+            writeInlineContent(fileAttachment.getId(), position, count, out);
+            return;
+        }
+        BlobStore store = blobStores.get(fileAttachment.getStorageBackend());
+        if (fileAttachment.getContentEncoding() != null) {
+            compression.transferDecoded(store, fileAttachment.getContentHash(), fileAttachment.getContentEncoding(),
+                    position, count, out);
+        } else {
+            store.transferTo(fileAttachment.getContentHash(), position, count, out);
+        }
+    }
+
+    /**
+     * Borra el adjunto con sus miniaturas y, una vez confirmado, los blobs que ya no
+     * use ningún otro adjunto ni miniatura.
+     */
+    @Transactional
+    public void delete(FileAttachment fileAttachment) {
+        // una miniatura que se esté guardando termina antes y aparece en la lista, o ya no se guarda
+        fileAttachmentRepository.lockForDelete(fileAttachment.getId());
+        Map<String, String> blobs = new LinkedHashMap<>();
+        for (FileThumbnail thumbnail : thumbnailRepository.findByFileAttachment_Id(fileAttachment.getId())) {
+            blobs.put(thumbnail.getContentHash(), thumbnail.getStorageBackend());
+            thumbnailRepository.delete(thumbnail);
+        }
+
+        if (fileAttachment.getContentHash() == null) {
+            // PostgreSQL no borra el large object al borrar la fila que lo referencia
+            fileAttachmentRepository.unlinkInlineData(fileAttachment.getId());
+        } else {
+            blobs.put(fileAttachment.getContentHash(), fileAttachment.getStorageBackend());
+        }
+        fileAttachmentRepository.delete(fileAttachment);
+        if (blobs.isEmpty()) {
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                blobs.forEach((hash, backend) -> deleteIfUnreferenced(hash, backend));
+            }
+        });
+    }
+
+    /**
+     * Con el bloqueo del hash, una subida del mismo contenido o termina antes (y su fila cuenta
+     * como referencia) o espera a que se borre el blob y lo vuelve a guardar.
+     */
+    private void deleteIfUnreferenced(String hash, String backend) {
+        try {
+            cleanupTransaction.executeWithoutResult(status -> {
+                fileAttachmentRepository.lockContentHash(hash);
+                if (fileAttachmentRepository.countByContentHashAndStorageBackend(hash, backend) > 0
+                        || thumbnailRepository.countByContentHashAndStorageBackend(hash, backend) > 0) {
+                    return;
+                }
+                try {
+                    blobStores.get(backend).delete(hash);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("No se pudo borrar el blob {} del backend {}: {}", hash, backend, e.getMessage());
+        }
+    }
+
+    // Adjuntos anteriores al BlobStore: el large object sólo se puede leer dentro de una transacción
+    private void writeInlineContent(Long fileId, long position, long count, OutputStream out) {
+        readTransaction.executeWithoutResult(status -> {
+            FileAttachment fileAttachment = fileAttachmentRepository.findById(fileId)
+                    .orElseThrow(() -> new ResourceNotFoundException("File", "id", fileId));
+            // Blob.getBinaryStream(pos, length) hace seek en el large object (posiciones desde 1)
+            try (InputStream in = fileAttachment.getFileData().getBinaryStream(position + 1, count)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (SQLException e) {
+                throw new IllegalStateException("No se pudo leer el archivo " + fileId, e);
+            }
+        });
+    }
+}
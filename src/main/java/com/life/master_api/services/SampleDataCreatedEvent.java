@@ -0,0 +1,9 @@
+package com.life.master_api.services;
+
+/**
+ * Publicado cuando se han creado los datos de ejemplo de un usuario. Esos datos se insertan
+ * con SQL nativo ({@link SampleDataService}), sin pasar por los eventos de Hibernate, así que
+ * quien mantenga copias de las entidades (el índice de búsqueda local) debe escucharlo.
+ */
+public record SampleDataCreatedEvent(Long userId) {
+}
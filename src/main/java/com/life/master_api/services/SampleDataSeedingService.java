@@ -0,0 +1,192 @@
+package com.life.master_api.services;
+
+import com.life.master_api.entities.SampleDataSeeding;
+import com.life.master_api.entities.User;
+import com.life.master_api.exceptions.ResourceNotFoundException;
+import com.life.master_api.repositories.SampleDataSeedingRepository;
+import com.life.master_api.repositories.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Crea los datos de ejemplo de los usuarios nuevos en segundo plano, para que el registro
+ * no espere a los INSERT. El registro guarda la fila de estado con el usuario y lo encola en
+ * un pool acotado; si la cola está llena, la aplicación se reinicia o un intento falla, el
+ * barrido periódico ({@link #resubmitDue()}) lo vuelve a encolar, con espera exponencial
+ * entre intentos hasta {@code sample-data.seeding.max-attempts}.
+ */
+@Service
+@Slf4j
+public class SampleDataSeedingService {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final SampleDataSeedingRepository seedingRepository;
+    private final UserRepository userRepository;
+    private final SampleDataService sampleDataService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int queueCapacity;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration lease;
+
+    private final ThreadPoolExecutor executor;
+    // usuarios ya en la cola en memoria, para que el barrido no los encole otra vez
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+
+    public SampleDataSeedingService(SampleDataSeedingRepository seedingRepository,
+                                    UserRepository userRepository,
+                                    SampleDataService sampleDataService,
+                                    PlatformTransactionManager transactionManager,
+                                    ApplicationEventPublisher eventPublisher,
+                                    @Value("${sample-data.seeding.workers:2}") int workers,
+                                    @Value("${sample-data.seeding.queue-capacity:500}") int queueCapacity,
+                                    @Value("${sample-data.seeding.max-attempts:3}") int maxAttempts,
+                                    @Value("${sample-data.seeding.retry-backoff:30s}") Duration retryBackoff,
+                                    @Value("${sample-data.seeding.lease:5m}") Duration lease) {
+        this.seedingRepository = seedingRepository;
+        this.userRepository = userRepository;
+        this.sampleDataService = sampleDataService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.queueCapacity = queueCapacity;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.lease = lease;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "sample-data-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Guarda un usuario nuevo junto con su petición de datos de ejemplo, en la misma
+     * transacción: no puede quedar un usuario sin la fila que el barrido usa para reintentar.
+     * Una vez confirmado lo encola; no espera a que se creen los datos.
+     */
+    public User register(User user) {
+        User saved = transactionTemplate.execute(status -> {
+            User created = userRepository.save(user);
+            Instant now = Instant.now();
+            SampleDataSeeding seeding = new SampleDataSeeding();
+            seeding.setUserId(created.getId());
+            seeding.setRequestedAt(now);
+            seeding.setNextAttemptAt(now);
+            seedingRepository.save(seeding);
+            return created;
+        });
+
+        if (!submit(saved.getId())) {
+            log.debug("Cola de datos de ejemplo llena; el usuario {} lo recogerá el barrido", saved.getId());
+        }
+        return saved;
+    }
+
+    public Optional<SampleDataSeeding> getStatus(User user) {
+        return seedingRepository.findById(user.getId());
+    }
+
+    /**
+     * Vuelve a encolar las creaciones pendientes cuya espera terminó y las que se quedaron
+     * en curso con el lease vencido, hasta llenar la cola.
+     *
+     * @return usuarios encolados
+     */
+    public int resubmitDue() {
+        int capacity = executor.getQueue().remainingCapacity();
+        if (capacity == 0) {
+            return 0;
+        }
+        List<Long> due = seedingRepository.findDueUserIds(Instant.now(), PageRequest.of(0, Math.min(capacity, queueCapacity)));
+        int submitted = 0;
+        for (Long userId : due) {
+            if (submit(userId)) {
+                submitted++;
+            }
+        }
+        return submitted;
+    }
+
+    private boolean submit(Long userId) {
+        if (!queued.add(userId)) {
+            return true;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    seed(userId);
+                } finally {
+                    queued.remove(userId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            queued.remove(userId);
+            return false;
+        }
+    }
+
+    private void seed(Long userId) {
+        Instant now = Instant.now();
+        if (seedingRepository.claim(userId, now.plus(lease), now) == 0) {
+            return;
+        }
+        try {
+            // los datos y la marca DONE van en la misma transacción: un reintento nunca los duplica
+            transactionTemplate.executeWithoutResult(status -> {
+                User user = userRepository.findById(userId)
+                        .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
+                sampleDataService.createSampleDataForUser(user);
+                seedingRepository.complete(userId, Instant.now());
+            });
+            eventPublisher.publishEvent(new SampleDataCreatedEvent(userId));
+        } catch (RuntimeException e) {
+            String error = truncate(e.getClass().getSimpleName() + ": " + e.getMessage());
+            int attempts = seedingRepository.findById(userId).map(SampleDataSeeding::getAttempts).orElse(maxAttempts);
+            if (attempts >= maxAttempts) {
+                seedingRepository.fail(userId, error, Instant.now());
+                log.error("No se pudieron crear los datos de ejemplo del usuario {} tras {} intentos: {}",
+                        userId, attempts, e.getMessage(), e);
+            } else {
+                // espera exponencial: backoff, 2·backoff, 4·backoff...
+                Instant nextAttempt = Instant.now().plus(retryBackoff.multipliedBy(1L << Math.min(attempts - 1, 20)));
+                seedingRepository.retryLater(userId, nextAttempt, error);
+                log.warn("Error creando los datos de ejemplo del usuario {} (intento {}/{}), se reintentará a las {}: {}",
+                        userId, attempts, maxAttempts, nextAttempt, e.getMessage());
+            }
+        }
+    }
+
+    private static String truncate(String error) {
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+}
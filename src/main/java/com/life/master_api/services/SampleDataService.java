@@ -1,205 +1,207 @@
 package com.life.master_api.services;
 
-import com.life.master_api.entities.Category;
-import com.life.master_api.entities.Habit;
-import com.life.master_api.entities.Note;
-import com.life.master_api.entities.Task;
+import com.life.master_api.entities.TrackingType;
 import com.life.master_api.entities.User;
-import com.life.master_api.repositories.CategoryRepository;
-import com.life.master_api.repositories.HabitRepository;
-import com.life.master_api.repositories.NoteRepository;
-import com.life.master_api.repositories.TaskRepository;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.SqlArrayValue;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.*;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
+/**
+ * Crea los datos de ejemplo de un usuario a partir de {@link SampleDataTemplate}. Toda la
+ * plantilla (entidades y tablas de relación) se inserta con una única sentencia de
+ * INSERT ... SELECT encadenados en CTEs que recibe la plantilla como arrays, así que crear
+ * los datos de un usuario cuesta un solo viaje a la base de datos sea cual sea su tamaño.
+ */
 @Service
 public class SampleDataService {
 
-    private final CategoryRepository categoryRepository;
-    private final TaskRepository taskRepository;
-    private final NoteRepository noteRepository;
-    private final HabitRepository habitRepository;
-
-    public SampleDataService(CategoryRepository categoryRepository,
-                           TaskRepository taskRepository,
-                           NoteRepository noteRepository,
-                           HabitRepository habitRepository) {
-        this.categoryRepository = categoryRepository;
-        this.taskRepository = taskRepository;
-        this.noteRepository = noteRepository;
-        this.habitRepository = habitRepository;
+    /**
+     * Ids de un bloque de la secuencia: debe coincidir con el {@code allocationSize} de las
+     * entidades. Como el optimizador pooled de Hibernate, cada {@code nextval} reserva los
+     * ids {@code [valor - 49, valor]}.
+     */
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private static final String INSERT_SQL = """
+            WITH category_src AS (
+                SELECT * FROM unnest(CAST(:categoryNames AS text[]), CAST(:categoryDescriptions AS text[]))
+                    WITH ORDINALITY AS s(name, description, ord)
+            ),
+            task_src AS (
+                SELECT * FROM unnest(CAST(:taskTitles AS text[]), CAST(:taskDescriptions AS text[]))
+                    WITH ORDINALITY AS s(title, description, ord)
+            ),
+            note_src AS (
+                SELECT * FROM unnest(CAST(:noteTitles AS text[]), CAST(:noteContents AS text[]))
+                    WITH ORDINALITY AS s(title, note, ord)
+            ),
+            habit_src AS (
+                SELECT * FROM unnest(CAST(:habitNames AS text[])) WITH ORDINALITY AS s(name, ord)
+            ),
+            """
+            + ids("category", "categories_seq") + ",\n"
+            + ids("task", "task_seq") + ",\n"
+            + ids("note", "notes_seq") + ",\n"
+            + ids("habit", "habits_seq") + ",\n"
+            + """
+            new_categories AS (
+                INSERT INTO categories (id, name, description, creation, user_id)
+                SELECT i.id, s.name, s.description, :now, :userId
+                FROM category_src s JOIN category_ids i USING (ord)
+            ),
+            new_tasks AS (
+                INSERT INTO task (id, title, description, creation, user_id)
+                SELECT i.id, s.title, s.description, :now, :userId
+                FROM task_src s JOIN task_ids i USING (ord)
+            ),
+            new_notes AS (
+                INSERT INTO notes (id, title, note, creation, user_id)
+                SELECT i.id, s.title, s.note, :now, :userId
+                FROM note_src s JOIN note_ids i USING (ord)
+            ),
+            new_habits AS (
+                INSERT INTO habits (id, name, creation, tracking_type, active, color,
+                                    today_completed, today_quantity, current_streak, best_streak, user_id)
+                SELECT i.id, s.name, :now, :trackingType, true, :color, false, 0, 0, 0, :userId
+                FROM habit_src s JOIN habit_ids i USING (ord)
+            ),
+            """
+            + link("task_categories", "task_id", "category_id", "task", "category") + ",\n"
+            + link("note_categories", "note_id", "category_id", "note", "category") + ",\n"
+            + link("note_tasks", "note_id", "task_id", "note", "task") + ",\n"
+            + link("habit_categories", "habit_id", "category_id", "habit", "category") + ",\n"
+            + link("habit_notes", "habit_id", "note_id", "habit", "note") + "\n"
+            + linkInsert("habit_tasks", "habit_id", "task_id", "habit", "task");
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final SampleDataTemplate template;
+    private final Map<String, Object> templateParameters;
+
+    public SampleDataService(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.template = SampleDataTemplate.DEFAULT;
+        this.templateParameters = bind(template);
     }
 
     @Transactional
     public void createSampleDataForUser(User user) {
-        System.out.println("Creando datos de ejemplo para el usuario: " + user.getUsername());
-        
-        // Crear categorías de ejemplo
-        List<Category> categories = createSampleCategories(user);
-        
-        // Crear tareas de ejemplo
-        List<Task> tasks = createSampleTasks(user, categories);
-        
-        // Crear notas de ejemplo
-        List<Note> notes = createSampleNotes(user, categories, tasks);
-        
-        // Crear hábitos de ejemplo
-        createSampleHabits(user, categories, notes, tasks);
-        
-        System.out.println("Datos de ejemplo creados exitosamente para: " + user.getUsername());
+        MapSqlParameterSource parameters = new MapSqlParameterSource();
+        // el SqlArrayValue guarda el java.sql.Array creado al enlazarlo: uno nuevo en cada llamada
+        templateParameters.forEach((name, value) -> parameters.addValue(name, sqlValue(value)));
+        parameters.addValue("userId", user.getId());
+        parameters.addValue("now", new Timestamp(System.currentTimeMillis()));
+        jdbcTemplate.update(INSERT_SQL, parameters);
     }
 
-    private List<Category> createSampleCategories(User user) {
-        List<Category> categories = new ArrayList<>();
-        
-        String[] categoryNames = {
-            "Personal", "Trabajo", "Salud", "Educación", "Hobbies"
-        };
-        
-        String[] descriptions = {
-            "Tareas y actividades personales",
-            "Proyectos y responsabilidades laborales",
-            "Cuidado de la salud y bienestar",
-            "Aprendizaje y desarrollo personal",
-            "Actividades de entretenimiento y pasatiempos"
-        };
-        
-        for (int i = 0; i < categoryNames.length; i++) {
-            Category category = new Category();
-            category.setName(categoryNames[i]);
-            category.setDescription(descriptions[i]);
-            category.setCreation(new Date());
-            category.setUser(user);
-            categories.add(categoryRepository.save(category));
-        }
-        
-        return categories;
+    public SampleDataTemplate getTemplate() {
+        return template;
     }
 
-    private List<Task> createSampleTasks(User user, List<Category> categories) {
-        List<Task> tasks = new ArrayList<>();
-        Random random = new Random();
-        
-        String[] taskTitles = {
-            "Revisar correos electrónicos",
-            "Hacer ejercicio",
-            "Leer un libro",
-            "Planificar la semana",
-            "Llamar a un amigo",
-            "Organizar el escritorio",
-            "Estudiar nuevo tema",
-            "Preparar comida saludable"
-        };
-        
-        for (String title : taskTitles) {
-            Task task = new Task();
-            task.setTitle(title);
-            task.setDescription("Descripción para: " + title);
-            task.setCreation(new Date());
-            task.setUser(user);
-            
-            // Asignar 1-2 categorías aleatorias
-            int numCategories = random.nextInt(2) + 1;
-            Set<Integer> catIndices = new HashSet<>();
-            while (catIndices.size() < numCategories) {
-                catIndices.add(random.nextInt(categories.size()));
-            }
-            
-            for (Integer index : catIndices) {
-                task.getCategories().add(categories.get(index));
-            }
-            
-            tasks.add(taskRepository.save(task));
-        }
-        
-        return tasks;
+    /**
+     * Valores de la plantilla para la sentencia: columnas como arrays paralelos y relaciones
+     * como pares de posiciones (1-based) en esos arrays.
+     */
+    private static Map<String, Object> bind(SampleDataTemplate template) {
+        List<String> categories = template.categories().stream().map(SampleDataTemplate.CategorySpec::name).toList();
+        List<String> tasks = template.tasks().stream().map(SampleDataTemplate.TaskSpec::title).toList();
+        List<String> notes = template.notes().stream().map(SampleDataTemplate.NoteSpec::title).toList();
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("categoryNames", texts(template.categories(), SampleDataTemplate.CategorySpec::name));
+        parameters.put("categoryDescriptions", texts(template.categories(), SampleDataTemplate.CategorySpec::description));
+        parameters.put("taskTitles", texts(template.tasks(), SampleDataTemplate.TaskSpec::title));
+        parameters.put("taskDescriptions", texts(template.tasks(), SampleDataTemplate.TaskSpec::description));
+        parameters.put("noteTitles", texts(template.notes(), SampleDataTemplate.NoteSpec::title));
+        parameters.put("noteContents", texts(template.notes(), SampleDataTemplate.NoteSpec::note));
+        parameters.put("habitNames", texts(template.habits(), SampleDataTemplate.HabitSpec::name));
+        parameters.put("categoryBlocks", blocks(template.categories().size()));
+        parameters.put("taskBlocks", blocks(template.tasks().size()));
+        parameters.put("noteBlocks", blocks(template.notes().size()));
+        parameters.put("habitBlocks", blocks(template.habits().size()));
+        parameters.put("trackingType", TrackingType.BOOLEAN.name());
+        parameters.put("color", "#007bff");
+        links(parameters, "task_categories", template.tasks(), SampleDataTemplate.TaskSpec::categories, categories);
+        links(parameters, "note_categories", template.notes(), SampleDataTemplate.NoteSpec::categories, categories);
+        links(parameters, "note_tasks", template.notes(), SampleDataTemplate.NoteSpec::tasks, tasks);
+        links(parameters, "habit_categories", template.habits(), SampleDataTemplate.HabitSpec::categories, categories);
+        links(parameters, "habit_notes", template.habits(), SampleDataTemplate.HabitSpec::notes, notes);
+        links(parameters, "habit_tasks", template.habits(), SampleDataTemplate.HabitSpec::tasks, tasks);
+        return Map.copyOf(parameters);
     }
 
-    private List<Note> createSampleNotes(User user, List<Category> categories, List<Task> tasks) {
-        List<Note> notes = new ArrayList<>();
-        Random random = new Random();
-        
-        String[] noteTitles = {
-            "Ideas para proyectos",
-            "Lista de compras",
-            "Notas de reunión",
-            "Recordatorios importantes",
-            "Objetivos del mes"
-        };
-        
-        for (String title : noteTitles) {
-            Note note = new Note();
-            note.setTitle(title);
-            note.setNote("Contenido de la nota: " + title + "\n\nEsta es una nota de ejemplo que puedes editar o eliminar.");
-            note.setCreation(new Date());
-            note.setUser(user);
-            
-            // Asignar 1-2 categorías aleatorias
-            int numCategories = random.nextInt(2) + 1;
-            Set<Integer> catIndices = new HashSet<>();
-            while (catIndices.size() < numCategories) {
-                catIndices.add(random.nextInt(categories.size()));
-            }
-            
-            for (Integer index : catIndices) {
-                note.getCategories().add(categories.get(index));
-            }
-            
-            // Asignar 0-1 tareas aleatorias
-            if (random.nextBoolean() && !tasks.isEmpty()) {
-                int taskIndex = random.nextInt(tasks.size());
-                note.getTasks().add(tasks.get(taskIndex));
-            }
-            
-            notes.add(noteRepository.save(note));
+    private static Object sqlValue(Object value) {
+        if (value instanceof String[] texts) {
+            return new SqlArrayValue("text", (Object[]) texts);
+        }
+        if (value instanceof Integer[] numbers) {
+            return new SqlArrayValue("integer", (Object[]) numbers);
         }
-        
-        return notes;
+        return value;
     }
 
-    private void createSampleHabits(User user, List<Category> categories, List<Note> notes, List<Task> tasks) {
-        Random random = new Random();
-        
-        String[] habitNames = {
-            "Ejercicio diario",
-            "Leer 30 minutos",
-            "Meditar",
-            "Beber agua",
-            "Escribir en diario"
-        };
-        
-        for (String name : habitNames) {
-            Habit habit = new Habit();
-            habit.setName(name);
-            habit.setCreation(new Date());
-            habit.setUser(user);
-            
-            // Asignar 1-2 categorías aleatorias
-            int numCategories = random.nextInt(2) + 1;
-            Set<Integer> catIndices = new HashSet<>();
-            while (catIndices.size() < numCategories) {
-                catIndices.add(random.nextInt(categories.size()));
-            }
-            
-            for (Integer index : catIndices) {
-                habit.getCategories().add(categories.get(index));
-            }
-            
-            // Asignar 0-1 notas aleatorias
-            if (random.nextBoolean() && !notes.isEmpty()) {
-                int noteIndex = random.nextInt(notes.size());
-                habit.getNotes().add(notes.get(noteIndex));
-            }
-            
-            // Asignar 0-1 tareas aleatorias
-            if (random.nextBoolean() && !tasks.isEmpty()) {
-                int taskIndex = random.nextInt(tasks.size());
-                habit.getTasks().add(tasks.get(taskIndex));
+    private static <T> String[] texts(List<T> specs, Function<T, String> column) {
+        return specs.stream().map(column).toArray(String[]::new);
+    }
+
+    private static <T> void links(Map<String, Object> parameters, String table, List<T> owners,
+                                  Function<T, List<String>> references, List<String> targets) {
+        List<Integer> from = new ArrayList<>();
+        List<Integer> to = new ArrayList<>();
+        for (int i = 0; i < owners.size(); i++) {
+            for (String reference : references.apply(owners.get(i))) {
+                from.add(i + 1);
+                to.add(targets.indexOf(reference) + 1);
             }
-            
-            habitRepository.save(habit);
         }
+        parameters.put(table + "_from", from.toArray(Integer[]::new));
+        parameters.put(table + "_to", to.toArray(Integer[]::new));
+    }
+
+    /**
+     * Bloques de ids a pedir para {@code rows} filas. Uno más de los necesarios: el primer
+     * {@code nextval} de una secuencia recién creada devuelve 1 y su bloque sólo aporta ese id.
+     */
+    private static int blocks(int rows) {
+        return (rows + ID_BLOCK_SIZE - 1) / ID_BLOCK_SIZE + 1;
+    }
+
+    /**
+     * Ids de las filas de {@code prefix}, numerados por {@code ord} para unirlos con la
+     * plantilla. Los {@code nextval} van en su propio CTE materializado para evaluarse una vez
+     * por bloque.
+     */
+    private static String ids(String prefix, String sequence) {
+        return """
+                %1$s_blocks AS MATERIALIZED (
+                    SELECT nextval('%2$s') AS hi FROM generate_series(1, :%1$sBlocks)
+                ),
+                %1$s_ids AS MATERIALIZED (
+                    SELECT id, row_number() OVER (ORDER BY id) AS ord
+                    FROM (SELECT b.hi - %3$d + g.n AS id
+                          FROM %1$s_blocks b CROSS JOIN generate_series(1, %3$d) AS g(n)) candidates
+                    WHERE id > 0
+                )""".formatted(prefix, sequence, ID_BLOCK_SIZE);
+    }
+
+    private static String link(String table, String fromColumn, String toColumn, String from, String to) {
+        return "%s_links AS (\n%s\n)".formatted(table, linkInsert(table, fromColumn, toColumn, from, to));
+    }
+
+    private static String linkInsert(String table, String fromColumn, String toColumn, String from, String to) {
+        return """
+                INSERT INTO %1$s (%2$s, %3$s)
+                SELECT f.id, t.id
+                FROM unnest(CAST(:%1$s_from AS integer[]), CAST(:%1$s_to AS integer[])) AS l(from_ord, to_ord)
+                JOIN %4$s_ids f ON f.ord = l.from_ord
+                JOIN %5$s_ids t ON t.ord = l.to_ord""".formatted(table, fromColumn, toColumn, from, to);
     }
-}
\ No newline at end of file
+}
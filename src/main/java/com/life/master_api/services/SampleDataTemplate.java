@@ -0,0 +1,123 @@
+package com.life.master_api.services;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Conjunto de datos de ejemplo que recibe cada usuario nuevo. Es inmutable y se define una
+ * sola vez; {@link SampleDataService} lo instancia para cada usuario con una única sentencia.
+ * Las relaciones se indican por el nombre o título de la entidad relacionada.
+ */
+public record SampleDataTemplate(List<CategorySpec> categories,
+                                 List<TaskSpec> tasks,
+                                 List<NoteSpec> notes,
+                                 List<HabitSpec> habits) {
+
+    public record CategorySpec(String name, String description) {
+    }
+
+    public record TaskSpec(String title, String description, List<String> categories) {
+        public TaskSpec {
+            categories = List.copyOf(categories);
+        }
+    }
+
+    public record NoteSpec(String title, String note, List<String> categories, List<String> tasks) {
+        public NoteSpec {
+            categories = List.copyOf(categories);
+            tasks = List.copyOf(tasks);
+        }
+    }
+
+    public record HabitSpec(String name, List<String> categories, List<String> notes, List<String> tasks) {
+        public HabitSpec {
+            categories = List.copyOf(categories);
+            notes = List.copyOf(notes);
+            tasks = List.copyOf(tasks);
+        }
+    }
+
+    public SampleDataTemplate {
+        categories = List.copyOf(categories);
+        tasks = List.copyOf(tasks);
+        notes = List.copyOf(notes);
+        habits = List.copyOf(habits);
+
+        // Un nombre repetido o una relación a algo que no existe se detecta al arrancar, no al registrar usuarios
+        List<String> categoryNames = unique(categories.stream().map(CategorySpec::name).toList(), "categoría");
+        List<String> taskTitles = unique(tasks.stream().map(TaskSpec::title).toList(), "tarea");
+        List<String> noteTitles = unique(notes.stream().map(NoteSpec::title).toList(), "nota");
+        unique(habits.stream().map(HabitSpec::name).toList(), "hábito");
+        tasks.forEach(task -> requireAll(categoryNames, task.categories(), task.title()));
+        notes.forEach(note -> {
+            requireAll(categoryNames, note.categories(), note.title());
+            requireAll(taskTitles, note.tasks(), note.title());
+        });
+        habits.forEach(habit -> {
+            requireAll(categoryNames, habit.categories(), habit.name());
+            requireAll(noteTitles, habit.notes(), habit.name());
+            requireAll(taskTitles, habit.tasks(), habit.name());
+        });
+    }
+
+    public int size() {
+        return categories.size() + tasks.size() + notes.size() + habits.size();
+    }
+
+    public static final SampleDataTemplate DEFAULT = new SampleDataTemplate(
+            List.of(
+                    new CategorySpec("Personal", "Tareas y actividades personales"),
+                    new CategorySpec("Trabajo", "Proyectos y responsabilidades laborales"),
+                    new CategorySpec("Salud", "Cuidado de la salud y bienestar"),
+                    new CategorySpec("Educación", "Aprendizaje y desarrollo personal"),
+                    new CategorySpec("Hobbies", "Actividades de entretenimiento y pasatiempos")),
+            List.of(
+                    task("Revisar correos electrónicos", "Trabajo"),
+                    task("Hacer ejercicio", "Salud"),
+                    task("Leer un libro", "Educación", "Hobbies"),
+                    task("Planificar la semana", "Personal", "Trabajo"),
+                    task("Llamar a un amigo", "Personal"),
+                    task("Organizar el escritorio", "Trabajo", "Personal"),
+                    task("Estudiar nuevo tema", "Educación"),
+                    task("Preparar comida saludable", "Salud", "Personal")),
+            List.of(
+                    note("Ideas para proyectos", List.of("Trabajo", "Hobbies"), List.of()),
+                    note("Lista de compras", List.of("Personal"), List.of("Preparar comida saludable")),
+                    note("Notas de reunión", List.of("Trabajo"), List.of("Revisar correos electrónicos")),
+                    note("Recordatorios importantes", List.of("Personal"), List.of()),
+                    note("Objetivos del mes", List.of("Personal", "Educación"), List.of("Planificar la semana"))),
+            List.of(
+                    new HabitSpec("Ejercicio diario", List.of("Salud"), List.of(), List.of("Hacer ejercicio")),
+                    new HabitSpec("Leer 30 minutos", List.of("Educación", "Hobbies"), List.of(), List.of("Leer un libro")),
+                    new HabitSpec("Meditar", List.of("Salud"), List.of("Recordatorios importantes"), List.of()),
+                    new HabitSpec("Beber agua", List.of("Salud"), List.of(), List.of()),
+                    new HabitSpec("Escribir en diario", List.of("Personal"), List.of("Objetivos del mes"), List.of())));
+
+    private static TaskSpec task(String title, String... categories) {
+        return new TaskSpec(title, "Descripción para: " + title, List.of(categories));
+    }
+
+    private static NoteSpec note(String title, List<String> categories, List<String> tasks) {
+        return new NoteSpec(title, "Contenido de la nota: " + title + "\n\nEsta es una nota de ejemplo que puedes editar o eliminar.",
+                categories, tasks);
+    }
+
+    private static List<String> unique(List<String> names, String kind) {
+        Set<String> seen = new HashSet<>();
+        for (String name : names) {
+            if (!seen.add(name)) {
+                throw new IllegalArgumentException("Nombre de " + kind + " repetido en la plantilla: " + name);
+            }
+        }
+        return names;
+    }
+
+    private static void requireAll(List<String> available, List<String> references, String owner) {
+        for (String reference : references) {
+            if (!available.contains(reference)) {
+                throw new IllegalArgumentException("'" + owner + "' hace referencia a '" + reference + "', que no está en la plantilla");
+            }
+        }
+    }
+}
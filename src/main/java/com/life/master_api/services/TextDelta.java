@@ -0,0 +1,160 @@
+package com.life.master_api.services;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Delta compacto entre dos textos, para guardar versiones del historial sin repetir el texto
+ * entero. El delta es una secuencia de operaciones que construyen el texto nuevo:
+ * <ul>
+ *     <li>{@code c<offset>,<longitud>;} copia un tramo del texto base</li>
+ *     <li>{@code i<longitud>:<texto>} inserta texto literal</li>
+ * </ul>
+ * Primero se descartan el prefijo y el sufijo comunes (el caso típico de una edición en un solo
+ * sitio) y en el resto se buscan tramos del texto base por bloques de {@value #BLOCK} caracteres,
+ * así que varias ediciones separadas o un párrafo movido tampoco cuestan el texto entero. El
+ * tamaño del delta depende de lo editado, no del tamaño del texto.
+ */
+public final class TextDelta {
+
+    private static final int BLOCK = 16;
+
+    private TextDelta() {
+    }
+
+    public static String diff(String base, String target) {
+        StringBuilder delta = new StringBuilder();
+        int prefix = codePointBoundary(target, commonPrefix(base, target), -1);
+        int suffix = target.length() - codePointBoundary(target, target.length() - commonSuffix(base, target, prefix), 1);
+        int end = target.length() - suffix;
+        copy(delta, 0, prefix);
+
+        Map<Integer, Integer> blocks = index(base);
+        int literalStart = prefix;
+        int position = prefix;
+        while (position + BLOCK <= end) {
+            Integer offset = blocks.get(hash(target, position));
+            if (offset == null || !target.regionMatches(position, base, offset, BLOCK)) {
+                position++;
+                continue;
+            }
+            int start = position;
+            int from = offset;
+            int length = BLOCK;
+            while (start + length < end && from + length < base.length()
+                    && target.charAt(start + length) == base.charAt(from + length)) {
+                length++;
+            }
+            while (start > literalStart && from > 0 && target.charAt(start - 1) == base.charAt(from - 1)) {
+                start--;
+                from--;
+                length++;
+            }
+            // los literales no pueden partir un par suplente: no se podrían guardar como UTF-8
+            if (codePointBoundary(target, start, 1) != start) {
+                start++;
+                from++;
+                length--;
+            }
+            if (codePointBoundary(target, start + length, -1) != start + length) {
+                length--;
+            }
+            insert(delta, target, literalStart, start);
+            copy(delta, from, length);
+            position = start + length;
+            literalStart = position;
+        }
+        insert(delta, target, literalStart, end);
+        copy(delta, base.length() - suffix, suffix);
+        return delta.toString();
+    }
+
+    public static String apply(String base, String delta) {
+        StringBuilder text = new StringBuilder();
+        int position = 0;
+        try {
+            while (position < delta.length()) {
+                char operation = delta.charAt(position++);
+                if (operation == 'c') {
+                    int comma = delta.indexOf(',', position);
+                    int semicolon = delta.indexOf(';', comma);
+                    int offset = Integer.parseInt(delta, position, comma, 10);
+                    int length = Integer.parseInt(delta, comma + 1, semicolon, 10);
+                    text.append(base, offset, offset + length);
+                    position = semicolon + 1;
+                } else if (operation == 'i') {
+                    int colon = delta.indexOf(':', position);
+                    int length = Integer.parseInt(delta, position, colon, 10);
+                    text.append(delta, colon + 1, colon + 1 + length);
+                    position = colon + 1 + length;
+                } else {
+                    throw new IllegalArgumentException("Operación desconocida '" + operation + "'");
+                }
+            }
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Delta inválido en la posición " + position, e);
+        }
+        return text.toString();
+    }
+
+    private static void copy(StringBuilder delta, int offset, int length) {
+        if (length > 0) {
+            delta.append('c').append(offset).append(',').append(length).append(';');
+        }
+    }
+
+    private static void insert(StringBuilder delta, String target, int start, int end) {
+        if (end > start) {
+            delta.append('i').append(end - start).append(':').append(target, start, end);
+        }
+    }
+
+    /**
+     * Primer desplazamiento de cada bloque alineado del texto base, por hash.
+     */
+    private static Map<Integer, Integer> index(String base) {
+        Map<Integer, Integer> blocks = new HashMap<>();
+        for (int offset = 0; offset + BLOCK <= base.length(); offset += BLOCK) {
+            blocks.putIfAbsent(hash(base, offset), offset);
+        }
+        return blocks;
+    }
+
+    private static int hash(String text, int offset) {
+        int hash = 0;
+        for (int i = offset; i < offset + BLOCK; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int length = 0;
+        while (length < max && a.charAt(length) == b.charAt(length)) {
+            length++;
+        }
+        return length;
+    }
+
+    private static int commonSuffix(String a, String b, int prefix) {
+        int max = Math.min(a.length(), b.length()) - prefix;
+        int length = 0;
+        while (length < max && a.charAt(a.length() - 1 - length) == b.charAt(b.length() - 1 - length)) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Ajusta {@code index} un carácter en {@code direction} si cae entre las dos mitades de un
+     * par suplente.
+     */
+    private static int codePointBoundary(String text, int index, int direction) {
+        if (index > 0 && index < text.length()
+                && Character.isHighSurrogate(text.charAt(index - 1)) && Character.isLowSurrogate(text.charAt(index))) {
+            return index + direction;
+        }
+        return index;
+    }
+}
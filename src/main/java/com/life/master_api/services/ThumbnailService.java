@@ -0,0 +1,343 @@
+package com.life.master_api.services;
+
+import com.life.master_api.entities.FileAttachment;
+import com.life.master_api.entities.FileThumbnail;
+import com.life.master_api.exceptions.BadRequestException;
+import com.life.master_api.exceptions.ResourceNotFoundException;
+import com.life.master_api.repositories.FileAttachmentRepository;
+import com.life.master_api.repositories.FileThumbnailRepository;
+import com.life.master_api.storage.BlobStore;
+import com.life.master_api.storage.BlobStoreRegistry;
+import com.life.master_api.storage.StagedContent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Miniaturas de los adjuntos de imagen. Se generan en segundo plano al subir el archivo,
+ * con ImageIO y en un pool acotado de hilos, y se guardan en el mismo {@link BlobStore}
+ * que los adjuntos. Si se piden antes de estar listas (o la cola estaba llena al subir)
+ * se generan a demanda en ese mismo pool.
+ */
+@Service
+@Slf4j
+public class ThumbnailService {
+
+    private final FileAttachmentRepository fileAttachmentRepository;
+    private final FileThumbnailRepository thumbnailRepository;
+    private final FileAttachmentService fileAttachmentService;
+    private final BlobStoreRegistry blobStores;
+    private final TransactionTemplate transactionTemplate;
+    private final Path stagingDir;
+
+    private final SortedSet<Integer> sizes;
+    private final long maxSourceSize;
+    private final long maxSourcePixels;
+    private final Duration waitTimeout;
+
+    private final ThreadPoolExecutor executor;
+    // una sola generación en curso por adjunto; las peticiones que llegan mientras tanto la esperan
+    private final Map<Long, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    public ThumbnailService(FileAttachmentRepository fileAttachmentRepository,
+                            FileThumbnailRepository thumbnailRepository,
+                            FileAttachmentService fileAttachmentService,
+                            BlobStoreRegistry blobStores,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${attachments.storage.staging-dir:${java.io.tmpdir}}") String stagingDir,
+                            @Value("${attachments.thumbnails.sizes:128,256,512}") int[] sizes,
+                            @Value("${attachments.thumbnails.workers:2}") int workers,
+                            @Value("${attachments.thumbnails.queue-capacity:100}") int queueCapacity,
+                            @Value("${attachments.thumbnails.max-source-size:25MB}") DataSize maxSourceSize,
+                            @Value("${attachments.thumbnails.max-source-pixels:50000000}") long maxSourcePixels,
+                            @Value("${attachments.thumbnails.wait-timeout:10s}") Duration waitTimeout) {
+        this.fileAttachmentRepository = fileAttachmentRepository;
+        this.thumbnailRepository = thumbnailRepository;
+        this.fileAttachmentService = fileAttachmentService;
+        this.blobStores = blobStores;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.stagingDir = Paths.get(stagingDir);
+        this.sizes = Arrays.stream(sizes).boxed().collect(Collectors.toCollection(TreeSet::new));
+        this.maxSourceSize = maxSourceSize.toBytes();
+        this.maxSourcePixels = maxSourcePixels;
+        this.waitTimeout = waitTimeout;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "thumbnail-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean supports(FileAttachment fileAttachment) {
+        String type = fileAttachment.getFileType();
+        return type != null && type.startsWith("image/")
+                && !Boolean.TRUE.equals(fileAttachment.getThumbnailFailed())
+                && fileAttachment.getFileSize() != null && fileAttachment.getFileSize() <= maxSourceSize
+                && ImageIO.getImageReadersByMIMEType(type).hasNext();
+    }
+
+    /**
+     * Encola la generación de las miniaturas de un adjunto recién subido. Si la cola está
+     * llena no se espera: se generarán cuando alguien las pida.
+     */
+    public void scheduleFor(FileAttachment fileAttachment) {
+        if (!supports(fileAttachment)) {
+            return;
+        }
+        try {
+            submit(fileAttachment.getId());
+        } catch (RejectedExecutionException e) {
+            log.debug("Cola de miniaturas llena; el adjunto {} se procesará a demanda", fileAttachment.getId());
+        }
+    }
+
+    /**
+     * Devuelve la miniatura de {@code size} píxeles, generándola si aún no existe.
+     * Vacío si no ha podido generarse a tiempo (pool saturado).
+     */
+    public Optional<FileThumbnail> getThumbnail(FileAttachment fileAttachment, int size) {
+        if (!sizes.contains(size)) {
+            throw new BadRequestException("Tamaño de miniatura no válido: " + size + ". Disponibles: " + sizes);
+        }
+        if (!supports(fileAttachment)) {
+            throw new ResourceNotFoundException("Thumbnail", "fileId", fileAttachment.getId());
+        }
+        Optional<FileThumbnail> thumbnail = thumbnailRepository.findByFileAttachment_IdAndSize(fileAttachment.getId(), size);
+        if (thumbnail.isPresent()) {
+            return thumbnail;
+        }
+
+        try {
+            submit(fileAttachment.getId()).get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException | TimeoutException e) {
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (ExecutionException e) {
+            log.warn("No se pudieron generar las miniaturas del adjunto {}: {}", fileAttachment.getId(), e.getCause().getMessage());
+        }
+        return Optional.of(thumbnailRepository.findByFileAttachment_IdAndSize(fileAttachment.getId(), size)
+                .orElseThrow(() -> new ResourceNotFoundException("Thumbnail", "fileId", fileAttachment.getId())));
+    }
+
+    public void writeContent(FileThumbnail thumbnail, OutputStream out) throws IOException {
+        blobStores.get(thumbnail.getStorageBackend())
+                .transferTo(thumbnail.getContentHash(), 0, thumbnail.getByteSize(), out);
+    }
+
+    private CompletableFuture<Void> submit(Long fileId) {
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlight.putIfAbsent(fileId, created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(fileId);
+                    created.complete(null);
+                } catch (Throwable e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(fileId, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(fileId, created);
+            throw e;
+        }
+        return created;
+    }
+
+    /**
+     * Genera todos los tamaños que falten decodificando el original una sola vez.
+     */
+    private void generate(Long fileId) throws IOException {
+        FileAttachment fileAttachment = fileAttachmentRepository.findById(fileId).orElse(null);
+        if (fileAttachment == null) {
+            return;
+        }
+        Set<Integer> existing = thumbnailRepository.findByFileAttachment_Id(fileId).stream()
+                .map(FileThumbnail::getSize)
+                .collect(Collectors.toSet());
+        SortedSet<Integer> missing = new TreeSet<>(sizes);
+        missing.removeAll(existing);
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        // ImageIO necesita poder hacer seek: el original se copia a un temporal por streaming
+        Files.createDirectories(stagingDir);
+        Path source = Files.createTempFile(stagingDir, "thumbnail-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(source)) {
+                fileAttachmentService.writeContent(fileAttachment, 0, fileAttachment.getFileSize(), out);
+            }
+            BufferedImage image;
+            try {
+                image = decode(source, missing.last());
+            } catch (IOException | RuntimeException e) {
+                log.debug("No se pudo decodificar el adjunto {}: {}", fileId, e.getMessage());
+                image = null; // imagen corrupta: ImageIO falla con excepciones de todo tipo
+            }
+            if (image == null) {
+                // el original no va a cambiar: las siguientes peticiones responden 404 sin copiarlo
+                fileAttachmentRepository.markThumbnailFailed(fileId);
+                throw new IOException("Formato de imagen no soportado, imagen corrupta o demasiado grande");
+            }
+            BlobStore store = blobStores.current();
+            for (Integer size : missing) {
+                save(fileAttachment, size, scale(image, size), store);
+            }
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    /**
+     * Decodifica la imagen submuestreando al leer, de modo que en memoria nunca hay más
+     * que unas dos veces la miniatura más grande aunque el original sea de muchos megapíxeles.
+     */
+    private BufferedImage decode(Path source, int largestSize) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxSourcePixels) {
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.max(width, height) / (2 * largestSize));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image, int size) {
+        double ratio = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        boolean alpha = image.getColorModel().hasAlpha();
+
+        BufferedImage target = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private void save(FileAttachment fileAttachment, int size, BufferedImage image, BlobStore store) throws IOException {
+        // JPEG para imágenes opacas; PNG si hay transparencia
+        boolean alpha = image.getColorModel().hasAlpha();
+        String format = alpha ? "png" : "jpeg";
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, format, encoded)) {
+            throw new IOException("No hay codificador " + format + " disponible");
+        }
+
+        try (InputStream in = new ByteArrayInputStream(encoded.toByteArray());
+             StagedContent staged = StagedContent.stage(in, stagingDir)) {
+            FileThumbnail thumbnail = new FileThumbnail();
+            thumbnail.setFileAttachment(fileAttachment);
+            thumbnail.setSize(size);
+            thumbnail.setContentType(alpha ? "image/png" : "image/jpeg");
+            thumbnail.setByteSize(staged.size());
+            thumbnail.setContentHash(staged.sha256());
+            thumbnail.setStorageBackend(store.name());
+            thumbnail.setCreated(new Date());
+            try {
+                Boolean saved = transactionTemplate.execute(status -> {
+                    // el adjunto pudo borrarse mientras se generaba: entonces nadie borraría este blob
+                    if (fileAttachmentRepository.lockForThumbnail(fileAttachment.getId()).isEmpty()) {
+                        return false;
+                    }
+                    // como al subir un adjunto: el blob no puede borrarse hasta confirmar la fila
+                    fileAttachmentRepository.lockContentHash(staged.sha256());
+                    try {
+                        store.put(staged.sha256(), staged.path());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    thumbnailRepository.save(thumbnail);
+                    return true;
+                });
+                if (!Boolean.TRUE.equals(saved)) {
+                    log.debug("Miniatura {} no guardada: el adjunto {} se borró mientras se generaba", size, fileAttachment.getId());
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (DataIntegrityViolationException e) {
+                // otra instancia ya la generó
+                log.debug("Miniatura {} del adjunto {} no guardada: {}", size, fileAttachment.getId(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.life.master_api.services;
+
+import com.life.master_api.dto.SearchResultType;
+import com.life.master_api.dto.TypeaheadItem;
+import com.life.master_api.entities.User;
+import com.life.master_api.repositories.CategoryRepository;
+import com.life.master_api.repositories.NoteRepository;
+import com.life.master_api.repositories.TaskRepository;
+import com.life.master_api.repositories.Typeahead;
+import com.life.master_api.search.LuceneSearchEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Autocompletado de notas, tareas y categorías. Con {@code search.engine=lucene} se resuelve
+ * con prefijos sobre el título en el índice local, sin consultar la base de datos. Con
+ * PostgreSQL usa las consultas de trigramas de los repositorios (contiene el texto y tolera
+ * erratas) cuando {@code TypeaheadIndexRunner} ha podido preparar {@code pg_trgm}; hasta
+ * entonces, o si la extensión no está disponible, sólo las coincidencias por prefijo.
+ */
+@Service
+@Slf4j
+public class TypeaheadService {
+
+    private final NoteRepository noteRepository;
+    private final TaskRepository taskRepository;
+    private final CategoryRepository categoryRepository;
+    private final LuceneSearchEngine luceneSearchEngine;
+
+    private volatile boolean trigramAvailable;
+
+    public TypeaheadService(NoteRepository noteRepository,
+                            TaskRepository taskRepository,
+                            CategoryRepository categoryRepository,
+                            ObjectProvider<LuceneSearchEngine> luceneSearchEngine) {
+        this.noteRepository = noteRepository;
+        this.taskRepository = taskRepository;
+        this.categoryRepository = categoryRepository;
+        this.luceneSearchEngine = luceneSearchEngine.getIfAvailable();
+    }
+
+    public List<TypeaheadItem> notes(User user, String text, int limit) {
+        if (luceneSearchEngine != null) {
+            return luceneSearchEngine.typeahead(user, SearchResultType.NOTE, text, Typeahead.boundedLimit(limit));
+        }
+        return trigramAvailable
+                ? noteRepository.typeahead(user, text, limit)
+                : noteRepository.typeaheadByPrefix(user, text, limit);
+    }
+
+    public List<TypeaheadItem> tasks(User user, String text, int limit) {
+        if (luceneSearchEngine != null) {
+            return luceneSearchEngine.typeahead(user, SearchResultType.TASK, text, Typeahead.boundedLimit(limit));
+        }
+        return trigramAvailable
+                ? taskRepository.typeahead(user, text, limit)
+                : taskRepository.typeaheadByPrefix(user, text, limit);
+    }
+
+    public List<TypeaheadItem> categories(User user, String text, int limit) {
+        if (luceneSearchEngine != null) {
+            return luceneSearchEngine.typeahead(user, SearchResultType.CATEGORY, text, Typeahead.boundedLimit(limit));
+        }
+        return trigramAvailable
+                ? categoryRepository.typeahead(user, text, limit)
+                : categoryRepository.typeaheadByPrefix(user, text, limit);
+    }
+
+    /**
+     * Activa las consultas de trigramas, una vez creados la extensión y sus índices.
+     */
+    public void enableTrigrams() {
+        trigramAvailable = true;
+        log.info("Autocompletado con pg_trgm activado");
+    }
+}
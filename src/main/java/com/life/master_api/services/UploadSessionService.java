@@ -0,0 +1,334 @@
+package com.life.master_api.services;
+
+import com.life.master_api.entities.FileAttachment;
+import com.life.master_api.entities.UploadSession;
+import com.life.master_api.entities.UploadSessionChunk;
+import com.life.master_api.entities.UploadSessionStatus;
+import com.life.master_api.entities.User;
+import com.life.master_api.exceptions.BadRequestException;
+import com.life.master_api.exceptions.ResourceNotFoundException;
+import com.life.master_api.repositories.UploadSessionChunkRepository;
+import com.life.master_api.repositories.UploadSessionRepository;
+import com.life.master_api.storage.StagedContent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Subidas por trozos para archivos grandes. Cada trozo se escribe en su propio archivo de
+ * la sesión, así que pueden llegar en paralelo y en cualquier orden sin pasar por memoria ni
+ * por el límite de multipart. Al confirmar se concatenan en orden, se comprueba el SHA-256
+ * del archivo completo y se guarda como un adjunto normal.
+ * <p>
+ * El cuerpo de cada trozo se lee del cliente sin transacción ni conexión del pool; sólo
+ * publicar el trozo ya escrito (renombrarlo y registrarlo) se hace con la sesión bloqueada.
+ */
+@Service
+@Slf4j
+public class UploadSessionService {
+
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-fA-F]{64}");
+    private static final String CHUNK_SUFFIX = ".chunk";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final UploadSessionRepository sessionRepository;
+    private final UploadSessionChunkRepository chunkRepository;
+    private final FileAttachmentService fileAttachmentService;
+    private final TransactionTemplate transactionTemplate;
+    private final Path uploadsDir;
+    private final int chunkSize;
+    private final long maxFileSize;
+    private final Duration expiry;
+
+    public UploadSessionService(UploadSessionRepository sessionRepository,
+                                UploadSessionChunkRepository chunkRepository,
+                                FileAttachmentService fileAttachmentService,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${attachments.uploads.dir:${java.io.tmpdir}}") String uploadsDir,
+                                @Value("${attachments.uploads.chunk-size:8MB}") DataSize chunkSize,
+                                @Value("${attachments.uploads.max-file-size:5GB}") DataSize maxFileSize,
+                                @Value("${attachments.uploads.expiry:24h}") Duration expiry) {
+        this.sessionRepository = sessionRepository;
+        this.chunkRepository = chunkRepository;
+        this.fileAttachmentService = fileAttachmentService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.uploadsDir = Paths.get(uploadsDir);
+        this.chunkSize = Math.toIntExact(chunkSize.toBytes());
+        this.maxFileSize = maxFileSize.toBytes();
+        this.expiry = expiry;
+    }
+
+    public UploadSession start(User user, String originalFileName, String fileType, long fileSize,
+                               String entityType, Long entityId) throws IOException {
+        if (fileSize <= 0 || fileSize > maxFileSize) {
+            throw new BadRequestException("El tamaño del archivo debe estar entre 1 y " + maxFileSize + " bytes");
+        }
+        String id = UUID.randomUUID().toString();
+        Files.createDirectories(uploadsDir);
+
+        Instant now = Instant.now();
+        UploadSession session = new UploadSession();
+        session.setId(id);
+        session.setUser(user);
+        session.setOriginalFileName(originalFileName);
+        session.setFileType(fileType);
+        session.setEntityType(entityType);
+        session.setEntityId(entityId);
+        session.setTotalSize(fileSize);
+        session.setChunkSize(chunkSize);
+        session.setTotalChunks(Math.toIntExact((fileSize + chunkSize - 1) / chunkSize));
+        session.setCreatedAt(now);
+        session.setExpiresAt(now.plus(expiry));
+        return sessionRepository.save(session);
+    }
+
+    public UploadSession get(User user, String id) {
+        return sessionRepository.findByIdAndUser(id, user)
+                .filter(session -> session.getExpiresAt().isAfter(Instant.now()))
+                .orElseThrow(() -> new ResourceNotFoundException("UploadSession", "id", id));
+    }
+
+    public List<Integer> receivedChunks(UploadSession session) {
+        return chunkRepository.findChunkIndexes(session.getId());
+    }
+
+    public List<Integer> missingChunks(UploadSession session) {
+        Set<Integer> received = new HashSet<>(receivedChunks(session));
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < session.getTotalChunks(); i++) {
+            if (!received.contains(i)) {
+                missing.add(i);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Escribe el trozo {@code index} en su archivo. Reenviar un trozo ya recibido lo
+     * sustituye, así que los reintentos del cliente son seguros.
+     *
+     * @param contentLength longitud declarada por el cliente o -1 si no la envió
+     */
+    public void writeChunk(User user, String id, int index, long contentLength, InputStream in) throws IOException {
+        UploadSession session = get(user, id);
+        if (index < 0 || index >= session.getTotalChunks()) {
+            throw new BadRequestException("Índice de trozo fuera de rango: " + index + " (0-" + (session.getTotalChunks() - 1) + ")");
+        }
+        long offset = (long) index * session.getChunkSize();
+        long expected = Math.min(session.getChunkSize(), session.getTotalSize() - offset);
+        if (contentLength >= 0 && contentLength != expected) {
+            throw new BadRequestException("El trozo " + index + " debe tener " + expected + " bytes");
+        }
+
+        // el cuerpo llega a la velocidad del cliente: se recibe en un temporal sin tocar la base de datos
+        Path temp = Files.createTempFile(uploadsDir, id + "." + index + ".", TEMP_SUFFIX);
+        try {
+            receive(temp, index, expected, in);
+            transactionTemplate.executeWithoutResult(status -> {
+                // con la fila bloqueada: una confirmación nunca lee los trozos mientras se publica uno
+                if (!UploadSessionStatus.OPEN.name().equals(sessionRepository.lockForChunk(id))) {
+                    throw new BadRequestException("La subida " + id + " ya se está confirmando");
+                }
+                try {
+                    Files.move(temp, chunkPath(id, index), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (!chunkRepository.existsByUploadSession_IdAndChunkIndex(id, index)) {
+                    UploadSessionChunk chunk = new UploadSessionChunk();
+                    chunk.setUploadSession(session);
+                    chunk.setChunkIndex(index);
+                    chunk.setSize((int) expected);
+                    chunkRepository.saveAndFlush(chunk);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (DataIntegrityViolationException e) {
+            // el mismo trozo llegó dos veces en paralelo: ya lo registró la otra petición
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        sessionRepository.extend(id, Instant.now().plus(expiry));
+    }
+
+    private static void receive(Path temp, int index, long expected, InputStream in) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ReadableByteChannel source = Channels.newChannel(in);
+            long written = 0;
+            while (written < expected) {
+                long transferred = channel.transferFrom(source, written, expected - written);
+                if (transferred <= 0) {
+                    break;
+                }
+                written += transferred;
+            }
+            if (written != expected || in.read() != -1) {
+                throw new BadRequestException("El trozo " + index + " debe tener " + expected + " bytes");
+            }
+            // el trozo sólo se registra cuando ya está en disco: uno registrado nunca hay que reenviarlo
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Comprueba que están todos los trozos y que el SHA-256 del archivo coincide con
+     * {@code sha256}, y lo guarda como adjunto. Si algo falla la sesión vuelve a quedar
+     * abierta para reenviar trozos y reintentar.
+     */
+    public FileAttachment commit(User user, String id, String sha256) throws IOException {
+        if (sha256 == null || !SHA256_HEX.matcher(sha256).matches()) {
+            throw new BadRequestException("sha256 debe ser el SHA-256 del archivo en hexadecimal");
+        }
+        UploadSession session = get(user, id);
+        if (sessionRepository.claimForCommit(id) == 0) {
+            throw new BadRequestException("La subida " + id + " ya se está confirmando");
+        }
+
+        boolean committed = false;
+        try {
+            List<Integer> missing = missingChunks(session);
+            if (!missing.isEmpty()) {
+                throw new BadRequestException("Faltan trozos de la subida " + id + ": " + missing);
+            }
+            // se confirma una copia: los trozos de la sesión siguen ahí si hay que reintentar
+            FileAttachment fileAttachment;
+            try (InputStream in = chunks(id, session.getTotalChunks());
+                 StagedContent staged = StagedContent.stage(in, uploadsDir)) {
+                if (!staged.sha256().equalsIgnoreCase(sha256)) {
+                    throw new BadRequestException("El SHA-256 del archivo recibido (" + staged.sha256() + ") no coincide con el indicado");
+                }
+                fileAttachment = transactionTemplate.execute(status -> {
+                    try {
+                        FileAttachment saved = fileAttachmentService.store(user, staged, session.getOriginalFileName(),
+                                session.getFileType(), session.getEntityType(), session.getEntityId());
+                        chunkRepository.deleteBySessionId(id);
+                        sessionRepository.deleteById(id);
+                        return saved;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            committed = true;
+            deleteFiles(id);
+            return fileAttachment;
+        } finally {
+            if (!committed) {
+                sessionRepository.reopen(id);
+            }
+        }
+    }
+
+    // Los trozos en orden, abiertos de uno en uno según se van leyendo
+    private InputStream chunks(String id, int totalChunks) {
+        Enumeration<InputStream> streams = new Enumeration<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasMoreElements() {
+                return next < totalChunks;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return Files.newInputStream(chunkPath(id, next++));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return new SequenceInputStream(streams);
+    }
+
+    public void abort(User user, String id) throws IOException {
+        discard(get(user, id).getId());
+    }
+
+    /**
+     * Elimina la sesión, sus trozos y sus archivos.
+     */
+    public void discard(String id) throws IOException {
+        transactionTemplate.executeWithoutResult(status -> {
+            chunkRepository.deleteBySessionId(id);
+            sessionRepository.deleteById(id);
+        });
+        deleteFiles(id);
+    }
+
+    /**
+     * Barre las sesiones caducadas y los archivos huérfanos (trozos de sesiones que ya no
+     * existen o temporales de peticiones que se cortaron).
+     *
+     * @return sesiones eliminadas
+     */
+    public int discardExpired() throws IOException {
+        Instant now = Instant.now();
+        int discarded = 0;
+        for (String id : sessionRepository.findExpiredIds(now)) {
+            try {
+                discard(id);
+                discarded++;
+            } catch (IOException | RuntimeException e) {
+                log.warn("No se pudo eliminar la subida caducada {}: {}", id, e.getMessage());
+            }
+        }
+
+        if (Files.isDirectory(uploadsDir)) {
+            Instant cutoff = now.minus(expiry);
+            try (var files = Files.newDirectoryStream(uploadsDir, "*.{chunk,tmp}")) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    String id = name.substring(0, name.indexOf('.'));
+                    if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)
+                            && (name.endsWith(TEMP_SUFFIX) || !sessionRepository.existsById(id))) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+        return discarded;
+    }
+
+    private Path chunkPath(String id, int index) {
+        return uploadsDir.resolve(id + "." + index + CHUNK_SUFFIX);
+    }
+
+    private void deleteFiles(String id) throws IOException {
+        if (!Files.isDirectory(uploadsDir)) {
+            return;
+        }
+        try (var files = Files.newDirectoryStream(uploadsDir, id + ".*")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.life.master_api.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterOutputStream;
+
+/**
+ * Compresión de los adjuntos en el límite del {@link BlobStore}. Sólo se comprimen los
+ * tipos de contenido configurados (texto, CSV, JSON, logs...) a partir de un tamaño
+ * mínimo, y sólo se guarda comprimido si el resultado ahorra lo suficiente. El códec
+ * usado queda en {@code FileAttachment.contentEncoding}; la descompresión se hace por
+ * streaming al descargar.
+ */
+@Component
+public class AttachmentCompression {
+
+    /**
+     * Deflate con cabecera zlib ({@link Deflater} por defecto), el mismo formato que
+     * {@code Content-Encoding: deflate}.
+     */
+    public static final String DEFLATE = "deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final boolean enabled;
+    private final long minSize;
+    private final List<MediaType> contentTypes;
+    private final int level;
+    private final double maxRatio;
+
+    private final Timer compressTimer;
+    private final Timer decompressTimer;
+    private final DistributionSummary ratioSummary;
+    private final Counter savedBytes;
+    private final Counter incompressible;
+
+    public AttachmentCompression(@Value("${attachments.compression.enabled:true}") boolean enabled,
+                                 @Value("${attachments.compression.min-size:4KB}") DataSize minSize,
+                                 @Value("${attachments.compression.content-types:text/*,application/json,application/xml}") String[] contentTypes,
+                                 @Value("${attachments.compression.level:6}") int level,
+                                 @Value("${attachments.compression.max-ratio:0.9}") double maxRatio,
+                                 MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.minSize = minSize.toBytes();
+        this.contentTypes = Arrays.stream(contentTypes).map(String::trim).map(MediaType::parseMediaType).toList();
+        this.level = level;
+        this.maxRatio = maxRatio;
+        this.compressTimer = Timer.builder("attachments.compression")
+                .description("Tiempo de compresión de adjuntos")
+                .tag("codec", DEFLATE)
+                .register(meterRegistry);
+        this.decompressTimer = Timer.builder("attachments.decompression")
+                .description("Tiempo de descompresión de adjuntos al descargar")
+                .tag("codec", DEFLATE)
+                .register(meterRegistry);
+        this.ratioSummary = DistributionSummary.builder("attachments.compression.ratio")
+                .description("Tamaño original / tamaño comprimido de los adjuntos guardados comprimidos")
+                .register(meterRegistry);
+        this.savedBytes = meterRegistry.counter("attachments.compression.saved.bytes");
+        this.incompressible = meterRegistry.counter("attachments.compression.incompressible");
+    }
+
+    /**
+     * Si un adjunto de este tipo y tamaño debe intentar comprimirse.
+     */
+    public boolean appliesTo(String contentType, long size) {
+        if (!enabled || contentType == null || size < minSize) {
+            return false;
+        }
+        try {
+            MediaType type = MediaType.parseMediaType(contentType);
+            return contentTypes.stream().anyMatch(candidate -> candidate.includes(type));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Comprime el contenido ya volcado a disco, dejando el resultado junto al original.
+     * Devuelve {@code null} si no compensa (el resultado supera {@code max-ratio} del original),
+     * en cuyo caso debe guardarse sin comprimir.
+     */
+    public StagedContent compress(StagedContent raw) throws IOException {
+        long start = System.nanoTime();
+        StagedContent compressed;
+        Deflater deflater = new Deflater(level);
+        try (InputStream in = new DeflaterInputStream(Files.newInputStream(raw.path()), deflater, BUFFER_SIZE)) {
+            compressed = StagedContent.stage(in, raw.path().getParent());
+        } finally {
+            deflater.end();
+        }
+        compressTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (compressed.size() > raw.size() * maxRatio) {
+            compressed.close();
+            incompressible.increment();
+            return null;
+        }
+        ratioSummary.record((double) raw.size() / Math.max(1, compressed.size()));
+        savedBytes.increment(raw.size() - compressed.size());
+        return compressed;
+    }
+
+    /**
+     * Escribe en {@code out} los bytes {@code [position, position + count)} del contenido
+     * descomprimido. Deflate no permite saltar a una posición, así que se descomprime desde
+     * el principio descartando lo anterior, y se deja de leer en cuanto se completa el tramo.
+     */
+    public void transferDecoded(BlobStore store, String key, String encoding,
+                                long position, long count, OutputStream out) throws IOException {
+        if (!DEFLATE.equals(encoding)) {
+            throw new IllegalStateException("Unsupported content encoding: " + encoding);
+        }
+        long start = System.nanoTime();
+        RangeOutputStream range = new RangeOutputStream(out, position, count);
+        Inflater inflater = new Inflater();
+        try {
+            InflaterOutputStream inflating = new InflaterOutputStream(range, inflater, BUFFER_SIZE);
+            store.transferTo(key, 0, Long.MAX_VALUE, inflating);
+            inflating.finish();
+        } catch (RangeComplete e) {
+            // tramo completo: el resto del blob no hace falta
+        } finally {
+            inflater.end();
+            decompressTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        out.flush();
+    }
+
+    // Señal interna para cortar la lectura del blob cuando ya se ha escrito el tramo pedido
+    private static final class RangeComplete extends IOException {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * Deja pasar sólo los bytes del tramo pedido. No cierra el stream de destino.
+     */
+    private static final class RangeOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private long skip;
+        private long remaining;
+
+        RangeOutputStream(OutputStream out, long skip, long remaining) {
+            this.out = out;
+            this.skip = skip;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (skip > 0) {
+                int skipped = (int) Math.min(skip, len);
+                skip -= skipped;
+                off += skipped;
+                len -= skipped;
+            }
+            int writable = (int) Math.min(remaining, len);
+            if (writable > 0) {
+                out.write(b, off, writable);
+                remaining -= writable;
+            }
+            if (remaining == 0) {
+                throw new RangeComplete();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.life.master_api.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * Almacén de contenido direccionado por hash: la clave de cada blob es el SHA-256
+ * (hex) de su contenido, de modo que subir dos veces el mismo archivo sólo lo guarda
+ * una vez. Las implementaciones se registran como beans y se eligen por {@link #name()}.
+ */
+public interface BlobStore {
+
+    /**
+     * Nombre del backend tal como se guarda en {@code FileAttachment.storageBackend}.
+     */
+    String name();
+
+    boolean exists(String key);
+
+    /**
+     * Guarda el contenido de {@code source} bajo {@code key}. Si la clave ya existe no hace
+     * nada. El archivo de origen puede moverse o consumirse.
+     */
+    void put(String key, Path source) throws IOException;
+
+    /**
+     * Escribe en {@code out} hasta {@code count} bytes desde {@code position}, leyendo
+     * sólo ese tramo del almacenamiento.
+     *
+     * @return bytes escritos
+     */
+    long transferTo(String key, long position, long count, OutputStream out) throws IOException;
+
+    void delete(String key) throws IOException;
+}
@@ -0,0 +1,42 @@
+package com.life.master_api.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Backends de almacenamiento disponibles. Los adjuntos nuevos van al configurado en
+ * {@code attachments.storage.backend}; los existentes se leen del backend con el que
+ * se guardaron, así que cambiar la configuración no rompe las descargas.
+ */
+@Component
+public class BlobStoreRegistry {
+
+    private final Map<String, BlobStore> stores;
+    private final BlobStore current;
+
+    public BlobStoreRegistry(List<BlobStore> stores,
+                             @Value("${attachments.storage.backend:" + DatabaseBlobStore.NAME + "}") String backend) {
+        this.stores = stores.stream().collect(Collectors.toMap(BlobStore::name, Function.identity()));
+        this.current = get(backend);
+    }
+
+    /**
+     * Backend en el que se guardan los adjuntos nuevos.
+     */
+    public BlobStore current() {
+        return current;
+    }
+
+    public BlobStore get(String name) {
+        BlobStore store = stores.get(name);
+        if (store == null) {
+            throw new IllegalStateException("Unknown attachment storage backend: " + name + ", available: " + stores.keySet());
+        }
+        return store;
+    }
+}
@@ -0,0 +1,121 @@
+package com.life.master_api.storage;
+
+import com.life.master_api.entities.StoredBlob;
+import com.life.master_api.repositories.StoredBlobRepository;
+import org.hibernate.engine.jdbc.BlobProxy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Date;
+
+/**
+ * Blobs en la tabla AttachmentBlobs de PostgreSQL. Las escrituras se unen a la transacción
+ * de quien llama, que ya tiene el bloqueo del hash: el blob se confirma o se descarta junto
+ * con la fila que lo referencia y no hace falta una segunda conexión del pool mientras se
+ * mantiene la primera. Las lecturas abren su propia transacción porque los large objects
+ * sólo se pueden leer dentro de una y la descarga se hace desde el hilo de
+ * {@code StreamingResponseBody}.
+ */
+@Component
+public class DatabaseBlobStore implements BlobStore {
+
+    public static final String NAME = "database";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final StoredBlobRepository storedBlobRepository;
+    private final TransactionTemplate writeTransaction;
+    private final TransactionTemplate readTransaction;
+
+    public DatabaseBlobStore(StoredBlobRepository storedBlobRepository, PlatformTransactionManager transactionManager) {
+        this.storedBlobRepository = storedBlobRepository;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return storedBlobRepository.existsById(key);
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        // con el bloqueo del hash nadie más puede estar guardándolo: basta con mirar si existe
+        if (exists(key)) {
+            return; // mismo contenido ya almacenado
+        }
+        long size = Files.size(source);
+        try (InputStream in = Files.newInputStream(source)) {
+            writeTransaction.executeWithoutResult(status -> {
+                StoredBlob blob = new StoredBlob();
+                blob.setHash(key);
+                blob.setSize(size);
+                blob.setContent(BlobProxy.generateProxy(in, size));
+                blob.setCreated(new Date());
+                storedBlobRepository.saveAndFlush(blob);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // sólo sin transacción de quien llama: otra subida con el mismo contenido se adelantó
+        }
+    }
+
+    @Override
+    public long transferTo(String key, long position, long count, OutputStream out) throws IOException {
+        try {
+            return readTransaction.execute(status -> {
+                StoredBlob blob = storedBlobRepository.findById(key)
+                        .orElseThrow(() -> new UncheckedIOException(new NoSuchFileException(key)));
+                long length = Math.min(count, blob.getSize() - position);
+                if (length <= 0) {
+                    return 0L;
+                }
+                // Blob.getBinaryStream(pos, length) hace seek en el large object (posiciones desde 1)
+                try (InputStream in = blob.getContent().getBinaryStream(position + 1, length)) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    long transferred = 0;
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                        transferred += read;
+                    }
+                    out.flush();
+                    return transferred;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (SQLException e) {
+                    throw new IllegalStateException("No se pudo leer el blob " + key, e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        writeTransaction.executeWithoutResult(status -> {
+            if (storedBlobRepository.existsById(key)) {
+                storedBlobRepository.unlinkContent(key);
+                storedBlobRepository.deleteByHash(key);
+            }
+        });
+    }
+}
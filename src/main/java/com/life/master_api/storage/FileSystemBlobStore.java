@@ -0,0 +1,106 @@
+package com.life.master_api.storage;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+/**
+ * Blobs en disco bajo {@code attachments.storage.filesystem.root}, repartidos en
+ * subdirectorios por los primeros caracteres del hash ({@code ab/cd/abcd...}) para
+ * no acumular miles de archivos en un único directorio.
+ */
+@Component
+public class FileSystemBlobStore implements BlobStore {
+
+    public static final String NAME = "filesystem";
+
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+
+    public FileSystemBlobStore(@Value("${attachments.storage.filesystem.root:./data/attachments}") String root) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        Files.createDirectories(root);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(pathFor(key));
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        Path target = pathFor(key);
+        if (Files.exists(target)) {
+            return; // mismo contenido ya almacenado
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // origen en otro sistema de archivos: copiar junto al destino y renombrar atómicamente
+            Path temp = Files.createTempFile(target.getParent(), key, ".tmp");
+            try {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    @Override
+    public long transferTo(String key, long position, long count, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(pathFor(key), StandardOpenOption.READ)) {
+            // el destino es el OutputStream de la respuesta, no un canal de socket, así que transferTo
+            // copia a través de un buffer como cualquier otro bucle; lo que importa es leer sólo el tramo
+            WritableByteChannel target = Channels.newChannel(out);
+            long end = Math.min(position + count, channel.size());
+            long transferred = 0;
+            while (position + transferred < end) {
+                long written = channel.transferTo(position + transferred, end - position - transferred, target);
+                if (written <= 0) {
+                    break;
+                }
+                transferred += written;
+            }
+            out.flush();
+            return transferred;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(pathFor(key));
+    }
+
+    private Path pathFor(String key) {
+        // la clave acaba en una ruta: sólo se aceptan hashes para evitar path traversal
+        if (key == null || !SHA256_HEX.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+}
@@ -0,0 +1,37 @@
+-- Migra el historial al formato versionado: numera las versiones de cada entidad por orden de
+-- escritura y pasa el texto completo que guardaba cada fila a text_snapshot (todas quedan como
+-- snapshots; las versiones nuevas se guardarán como deltas). Con ddl-auto=create-drop no hace
+-- falta; es para bases que se conservan. Ejecutar una vez con la aplicación parada:
+--   psql -d <base> -f src/main/resources/db/history-versions.sql
+DO $$
+DECLARE
+    t record;
+BEGIN
+    FOR t IN SELECT * FROM (VALUES
+        ('note_history', 'note_id', 'note_content'),
+        ('task_history', 'task_id', 'description'),
+        ('category_history', 'category_id', 'description'),
+        ('habit_history', 'habit_id', NULL)
+    ) AS v(table_name, parent_column, text_column)
+    LOOP
+        IF to_regclass(t.table_name) IS NULL THEN
+            CONTINUE;
+        END IF;
+        IF t.text_column IS NOT NULL THEN
+            EXECUTE format('ALTER TABLE %I ADD COLUMN IF NOT EXISTS text_snapshot text, ADD COLUMN IF NOT EXISTS text_delta text',
+                           t.table_name);
+            IF EXISTS (SELECT 1 FROM information_schema.columns
+                       WHERE table_name = t.table_name AND column_name = t.text_column) THEN
+                EXECUTE format('UPDATE %I SET text_snapshot = %I', t.table_name, t.text_column);
+                EXECUTE format('ALTER TABLE %I DROP COLUMN %I', t.table_name, t.text_column);
+            END IF;
+        END IF;
+        EXECUTE format('UPDATE %1$I h SET version_id = v.version_id
+                        FROM (SELECT history_id, row_number() OVER (PARTITION BY %2$I ORDER BY timestamp, history_id) AS version_id
+                              FROM %1$I) v
+                        WHERE h.history_id = v.history_id', t.table_name, t.parent_column);
+        EXECUTE format('ALTER TABLE %1$I DROP CONSTRAINT IF EXISTS uk_%1$s_version', t.table_name);
+        EXECUTE format('ALTER TABLE %1$I ADD CONSTRAINT uk_%1$s_version UNIQUE (%2$I, version_id)',
+                       t.table_name, t.parent_column);
+    END LOOP;
+END $$;
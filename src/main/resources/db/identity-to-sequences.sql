@@ -0,0 +1,41 @@
+-- Migra las claves primarias de IDENTITY a secuencias con INCREMENT BY 50, que es lo que
+-- esperan los @SequenceGenerator(allocationSize = 50) de las entidades (optimizador pooled).
+-- Con ddl-auto=create-drop no hace falta; es para bases creadas antes del cambio que se
+-- conservan (ddl-auto=update/validate). Ejecutar una vez con la aplicación parada:
+--   psql -d <base> -f src/main/resources/db/identity-to-sequences.sql
+DO $$
+DECLARE
+    t record;
+    max_id bigint;
+BEGIN
+    FOR t IN SELECT * FROM (VALUES
+        ('users', 'id'),
+        ('categories', 'id'),
+        ('category_history', 'history_id'),
+        ('task', 'id'),
+        ('task_history', 'history_id'),
+        ('notes', 'id'),
+        ('note_history', 'history_id'),
+        ('habits', 'id'),
+        ('habit_history', 'history_id'),
+        ('habit_reset_partitions', 'id'),
+        ('file_attachments', 'id'),
+        ('file_thumbnails', 'id'),
+        ('upload_session_chunks', 'id')
+    ) AS v(table_name, id_column) LOOP
+        IF to_regclass(t.table_name) IS NULL THEN
+            CONTINUE;
+        END IF;
+
+        -- IDENTITY (Hibernate 6) o serial (esquemas más antiguos)
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN %I DROP IDENTITY IF EXISTS', t.table_name, t.id_column);
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN %I DROP DEFAULT', t.table_name, t.id_column);
+
+        EXECUTE format('CREATE SEQUENCE IF NOT EXISTS %I INCREMENT BY 50', t.table_name || '_seq');
+        EXECUTE format('ALTER SEQUENCE %I INCREMENT BY 50', t.table_name || '_seq');
+        EXECUTE format('SELECT COALESCE(MAX(%I), 0) FROM %I', t.id_column, t.table_name) INTO max_id;
+        -- pooled toma del valor devuelto por nextval el bloque [valor - 49, valor]: el
+        -- primer nextval (max + 100) deja el bloque entero por encima de los ids existentes
+        PERFORM setval(t.table_name || '_seq', max_id + 50);
+    END LOOP;
+END $$;
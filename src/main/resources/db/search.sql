@@ -0,0 +1,25 @@
+-- Búsqueda de texto completo: columna tsvector generada (título con peso A, cuerpo con peso B)
+-- e índice GIN en cada tabla buscable. Hibernate lo ejecuta tras crear el esquema
+-- (hibernate.hbm2ddl.import_files); en bases que se conservan se puede ejecutar a mano,
+-- todas las sentencias son idempotentes. La configuración 'spanish' debe coincidir con
+-- SearchRepository.TEXT_SEARCH_CONFIG.
+
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('spanish', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('spanish', coalesce(note, '')), 'B')) STORED;
+CREATE INDEX IF NOT EXISTS idx_notes_search ON notes USING GIN (search_vector);
+
+ALTER TABLE task ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('spanish', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('spanish', coalesce(description, '')), 'B')) STORED;
+CREATE INDEX IF NOT EXISTS idx_task_search ON task USING GIN (search_vector);
+
+ALTER TABLE habits ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('spanish', coalesce(name, '')), 'A') ||
+    setweight(to_tsvector('spanish', coalesce(description, '')), 'B')) STORED;
+CREATE INDEX IF NOT EXISTS idx_habits_search ON habits USING GIN (search_vector);
+
+ALTER TABLE categories ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('spanish', coalesce(name, '')), 'A') ||
+    setweight(to_tsvector('spanish', coalesce(description, '')), 'B')) STORED;
+CREATE INDEX IF NOT EXISTS idx_categories_search ON categories USING GIN (search_vector);
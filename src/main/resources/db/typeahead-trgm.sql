@@ -0,0 +1,11 @@
+-- Autocompletado (typeahead) con trigramas: índices GIN que sirven tanto para ILIKE '%texto%'
+-- como para la similitud (<%) de las consultas typeahead de los repositorios. Opcional: la
+-- extensión requiere permiso de CREATE en la base de datos, y si no se puede crear
+-- TypeaheadIndexRunner lo registra y el autocompletado se queda en las consultas por prefijo
+-- de db/typeahead.sql. Se desactiva con typeahead.trigram.enabled=false. Idempotente.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_categories_name_trgm ON categories USING GIN (name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_notes_title_trgm ON notes USING GIN (title gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_task_title_trgm ON task USING GIN (title gin_trgm_ops);
@@ -0,0 +1,7 @@
+-- Autocompletado (typeahead) por prefijo: índices btree sobre el título o nombre en minúsculas
+-- que sirven a lower(col) LIKE 'texto%' dentro de los datos de cada usuario. No necesitan
+-- extensiones; los ejecuta TypeaheadIndexRunner al arrancar y son idempotentes.
+
+CREATE INDEX IF NOT EXISTS idx_categories_name_prefix ON categories (user_id, lower(name) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_notes_title_prefix ON notes (user_id, lower(title) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_task_title_prefix ON task (user_id, lower(title) text_pattern_ops);
@@ -0,0 +1,233 @@
+package com.life.master_api.controllers;
+
+import com.life.master_api.entities.FileAttachment;
+import com.life.master_api.entities.User;
+import com.life.master_api.repositories.FileAttachmentRepository;
+import com.life.master_api.security.CurrentUser;
+import com.life.master_api.services.FileAttachmentService;
+import com.life.master_api.services.ThumbnailService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Comprueba cómo responde la descarga de adjuntos a Range e If-Range: un único rango es un 206
+ * con sólo ese tramo, y cualquier otra cosa que no sea un rango imposible es el archivo completo.
+ */
+@ExtendWith(MockitoExtension.class)
+class FileAttachmentControllerRangeTest {
+
+    private static final long FILE_ID = 1L;
+    private static final String CONTENT_HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+    private static final String ETAG = "\"" + CONTENT_HASH + "\"";
+    // las fechas HTTP no tienen milisegundos
+    private static final Instant UPLOADED = Instant.parse("2024-05-01T10:00:00Z");
+
+    @Mock
+    private FileAttachmentRepository fileAttachmentRepository;
+
+    @Mock
+    private FileAttachmentService fileAttachmentService;
+
+    @Mock
+    private ThumbnailService thumbnailService;
+
+    @InjectMocks
+    private FileAttachmentController controller;
+
+    private MockMvc mockMvc;
+    private final byte[] content = new byte[100];
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        User user = new User();
+        FileAttachment attachment = new FileAttachment();
+        attachment.setId(FILE_ID);
+        attachment.setOriginalFileName("datos.bin");
+        attachment.setFileType("application/octet-stream");
+        attachment.setFileSize((long) content.length);
+        attachment.setUploadDate(Date.from(UPLOADED));
+        attachment.setContentHash(CONTENT_HASH);
+        attachment.setUser(user);
+        when(fileAttachmentRepository.findByIdAndUser(eq(FILE_ID), any())).thenReturn(Optional.of(attachment));
+        // sólo se llama cuando hay cuerpo
+        lenient().doAnswer(invocation -> {
+            long position = invocation.getArgument(1);
+            long count = invocation.getArgument(2);
+            OutputStream out = invocation.getArgument(3);
+            out.write(content, (int) position, (int) count);
+            return null;
+        }).when(fileAttachmentService).writeContent(eq(attachment), anyLong(), anyLong(), any(OutputStream.class));
+
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setCustomArgumentResolvers(new FixedUserResolver(user))
+                .build();
+    }
+
+    @Test
+    void withoutRangeSendsTheWholeFile() throws Exception {
+        MockHttpServletResponse response = download(new HttpHeaders());
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void singleRangeSendsOnlyThatSlice() throws Exception {
+        MockHttpServletResponse response = download(range("bytes=10-19"));
+        assertPartial(response, 10, 19);
+    }
+
+    @Test
+    void suffixRangeSendsTheLastBytes() throws Exception {
+        MockHttpServletResponse response = download(range("bytes=-10"));
+        assertPartial(response, 90, 99);
+    }
+
+    @Test
+    void openEndedRangeSendsUpToTheEnd() throws Exception {
+        MockHttpServletResponse response = download(range("bytes=95-"));
+        assertPartial(response, 95, 99);
+    }
+
+    @Test
+    void rangePastTheEndIsClamped() throws Exception {
+        MockHttpServletResponse response = download(range("bytes=90-1000"));
+        assertPartial(response, 90, 99);
+    }
+
+    @Test
+    void multipleRangesFallBackToTheWholeFile() throws Exception {
+        MockHttpServletResponse response = download(range("bytes=0-9,20-29"));
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void malformedRangeIsIgnored() throws Exception {
+        MockHttpServletResponse response = download(range("bytes=abc"));
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void unsatisfiableRangeIs416() throws Exception {
+        MockHttpServletResponse response = download(range("bytes=100-200"));
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentLength());
+    }
+
+    @Test
+    void openEndedRangeFromTheEndIs416() throws Exception {
+        MockHttpServletResponse response = download(range("bytes=100-"));
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void ifRangeWithCurrentETagKeepsTheRange() throws Exception {
+        HttpHeaders headers = range("bytes=-10");
+        headers.set(HttpHeaders.IF_RANGE, ETAG);
+        assertPartial(download(headers), 90, 99);
+    }
+
+    @Test
+    void ifRangeWithStaleETagSendsTheWholeFile() throws Exception {
+        HttpHeaders headers = range("bytes=-10");
+        headers.set(HttpHeaders.IF_RANGE, "\"otra-version\"");
+        MockHttpServletResponse response = download(headers);
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void ifRangeWithLastModifiedDateKeepsTheRange() throws Exception {
+        HttpHeaders headers = range("bytes=0-9");
+        headers.setDate(HttpHeaders.IF_RANGE, UPLOADED.toEpochMilli());
+        assertPartial(download(headers), 0, 9);
+    }
+
+    @Test
+    void ifRangeWithOtherDateSendsTheWholeFile() throws Exception {
+        HttpHeaders headers = range("bytes=0-9");
+        headers.setDate(HttpHeaders.IF_RANGE, UPLOADED.minusSeconds(60).toEpochMilli());
+        MockHttpServletResponse response = download(headers);
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    private MockHttpServletResponse download(HttpHeaders headers) throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/files/download/{fileId}", FILE_ID).headers(headers)).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            // el cuerpo es un StreamingResponseBody: se escribe en el despacho asíncrono
+            result = mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+        return result.getResponse();
+    }
+
+    private void assertPartial(MockHttpServletResponse response, int start, int end) {
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes " + start + "-" + end + "/" + content.length, response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(end - start + 1, response.getContentLength());
+        assertArrayEquals(Arrays.copyOfRange(content, start, end + 1), response.getContentAsByteArray());
+    }
+
+    private static HttpHeaders range(String range) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, range);
+        return headers;
+    }
+
+    /**
+     * Resuelve {@link CurrentUser} sin pasar por la seguridad.
+     */
+    private record FixedUserResolver(User user) implements HandlerMethodArgumentResolver {
+
+        @Override
+        public boolean supportsParameter(MethodParameter parameter) {
+            return parameter.hasParameterAnnotation(CurrentUser.class);
+        }
+
+        @Override
+        public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                      NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+            return user;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.life.master_api.repositories;
+
+import com.life.master_api.dto.FileAttachmentSummary;
+import com.life.master_api.entities.FileAttachment;
+import com.life.master_api.entities.User;
+import org.hibernate.engine.jdbc.BlobProxy;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.life.master_api.repositories.FileAttachmentRepositoryTest$RecordingStatementInspector")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class FileAttachmentRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private FileAttachmentRepository fileAttachmentRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("files-test");
+        user.setEmail("files-test@masterapi.com");
+        user.setPassword("secret");
+        user.setCreatedAt(new Date());
+        entityManager.persist(user);
+
+        for (int i = 0; i < 3; i++) {
+            byte[] content = new byte[64 * 1024];
+            FileAttachment attachment = new FileAttachment();
+            attachment.setOriginalFileName("file-" + i + ".bin");
+            attachment.setFileType("application/octet-stream");
+            attachment.setFileSize((long) content.length);
+            attachment.setUploadDate(new Date());
+            attachment.setFileData(BlobProxy.generateProxy(content));
+            attachment.setEntityType("NOTE");
+            attachment.setEntityId(1L);
+            attachment.setUser(user);
+            entityManager.persist(attachment);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        RecordingStatementInspector.STATEMENTS.clear();
+    }
+
+    @Test
+    void listingByEntityNeverSelectsFileData() {
+        List<FileAttachmentSummary> files = fileAttachmentRepository
+                .findSummariesByEntityTypeAndEntityIdAndUserOrderByIdAsc("NOTE", 1L, user);
+
+        assertEquals(3, files.size());
+        assertEquals("file-0.bin", files.get(0).getOriginalFileName());
+        assertFalse(RecordingStatementInspector.STATEMENTS.isEmpty());
+        RecordingStatementInspector.STATEMENTS.forEach(sql ->
+                assertFalse(sql.toLowerCase().contains("file_data"), "listing selected file_data: " + sql));
+    }
+
+    @Test
+    void listingIsScopedToTheOwner() {
+        User other = new User();
+        other.setUsername("files-test-other");
+        other.setEmail("files-test-other@masterapi.com");
+        other.setPassword("secret");
+        other.setCreatedAt(new Date());
+        entityManager.persistAndFlush(other);
+
+        assertTrue(fileAttachmentRepository
+                .findSummariesByEntityTypeAndEntityIdAndUserOrderByIdAsc("NOTE", 1L, other).isEmpty());
+    }
+
+    /**
+     * Hibernate instancia el inspector por reflexión, por eso guarda el SQL en un campo estático.
+     */
+    public static class RecordingStatementInspector implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.life.master_api.repositories;
+
+import com.life.master_api.entities.Habit;
+import com.life.master_api.entities.TrackingType;
+import com.life.master_api.entities.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class HabitRepositoryTest {
+
+    private static final LocalDate RUN_DATE = LocalDate.of(2024, 5, 2);
+    private static final LocalDate YESTERDAY = RUN_DATE.minusDays(1);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private HabitRepository habitRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("habits-test");
+        user.setEmail("habits-test@masterapi.com");
+        user.setPassword("secret");
+        user.setCreatedAt(new Date());
+        user.setTimeZone("UTC");
+        entityManager.persist(user);
+    }
+
+    @Test
+    void rollOverClosesYesterday() {
+        Habit habit = persistHabitCompletedYesterday();
+
+        assertEquals(1, rollOver());
+
+        Habit rolled = entityManager.find(Habit.class, habit.getId());
+        assertEquals(3, rolled.getCurrentStreak());
+        assertEquals(3, rolled.getBestStreak());
+        assertEquals(false, rolled.getTodayCompleted());
+        assertNull(rolled.getLastTrackedDate());
+        assertEquals(RUN_DATE, rolled.getLastRolloverDate());
+        // repetirla el mismo día no tiene efecto
+        assertEquals(0, rollOver());
+    }
+
+    @Test
+    void trackingBeforeThePartitionRunsIsKept() {
+        Habit habit = persistHabitCompletedYesterday();
+
+        // el usuario marca el hábito pasada su medianoche, antes de que llegue su partición
+        habit.rollOverTo(RUN_DATE);
+        habit.setTodayCompleted(true);
+        habit.setLastTrackedDate(RUN_DATE);
+        habitRepository.saveAndFlush(habit);
+        entityManager.clear();
+
+        assertEquals(0, rollOver());
+
+        Habit tracked = entityManager.find(Habit.class, habit.getId());
+        assertTrue(tracked.getTodayCompleted());
+        assertEquals(RUN_DATE, tracked.getLastTrackedDate());
+        // ayer se cerró al registrar el seguimiento, igual que lo habría hecho la partición
+        assertEquals(3, tracked.getCurrentStreak());
+        assertEquals(3, tracked.getBestStreak());
+    }
+
+    @Test
+    void trackingTodayIsKeptEvenWithoutAnEarlierRollover() {
+        Habit habit = persistHabitCompletedYesterday();
+        habit.setLastTrackedDate(RUN_DATE);
+        habitRepository.saveAndFlush(habit);
+        entityManager.clear();
+
+        assertEquals(0, rollOver());
+
+        Habit tracked = entityManager.find(Habit.class, habit.getId());
+        assertTrue(tracked.getTodayCompleted());
+        assertEquals(RUN_DATE, tracked.getLastTrackedDate());
+        assertEquals(2, tracked.getCurrentStreak());
+    }
+
+    private Habit persistHabitCompletedYesterday() {
+        Habit habit = new Habit();
+        habit.setName("Leer");
+        habit.setUser(user);
+        habit.setTrackingType(TrackingType.BOOLEAN);
+        habit.setCurrentStreak(2);
+        habit.setBestStreak(2);
+        habit.setTodayCompleted(true);
+        habit.setLastTrackedDate(YESTERDAY);
+        habit.setLastRolloverDate(YESTERDAY);
+        entityManager.persist(habit);
+        entityManager.flush();
+        entityManager.clear();
+        return habit;
+    }
+
+    private int rollOver() {
+        int rows = habitRepository.rollOverDay(RUN_DATE, YESTERDAY, TrackingType.BOOLEAN, List.of("UTC"),
+                user.getId(), user.getId());
+        entityManager.clear();
+        return rows;
+    }
+}
@@ -0,0 +1,85 @@
+package com.life.master_api.services;
+
+import com.life.master_api.entities.Note;
+import com.life.master_api.entities.NoteHistory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Comprueba que una actualización sin transacción sólo registra la versión del historial
+ * cuando la entidad se ha guardado.
+ */
+class EntityHistoryServiceTest {
+
+    private HistoryWriter historyWriter;
+    private EntityHistoryService historyService;
+    private Note note;
+
+    @BeforeEach
+    void setUp() {
+        historyWriter = mock(HistoryWriter.class);
+        historyService = new EntityHistoryService(null, null, null, historyWriter, new SimpleMeterRegistry());
+        note = new Note();
+        note.setId(1L);
+        note.setTitle("Compra");
+        note.setNote("leche");
+    }
+
+    @Test
+    void recordsTheVersionAfterSaving() {
+        EntityHistoryService.PendingVersion version = historyService.captureNote(note);
+        note.setNote("leche y pan");
+        Runnable save = mock(Runnable.class);
+
+        Optional<Note> saved = version.saveIfChanged(() -> {
+            save.run();
+            return note;
+        });
+
+        assertSame(note, saved.orElseThrow());
+        InOrder order = inOrder(save, historyWriter);
+        order.verify(save).run();
+        order.verify(historyWriter).submit(argThat(submitted -> submitted instanceof NoteHistory history
+                && "leche".equals(history.getNoteContent())));
+    }
+
+    @Test
+    void failedSaveLeavesNoVersion() {
+        EntityHistoryService.PendingVersion version = historyService.captureNote(note);
+        note.setTitle("Compra semanal");
+
+        assertThrows(IllegalStateException.class, () -> version.saveIfChanged(() -> {
+            throw new IllegalStateException("fallo al guardar");
+        }));
+        verify(historyWriter, never()).submit(any());
+    }
+
+    @Test
+    void unchangedEntityIsNeitherSavedNorRecorded() {
+        EntityHistoryService.PendingVersion version = historyService.captureNote(note);
+        note.setNote("leche");
+
+        Optional<Note> saved = version.saveIfChanged(() -> {
+            throw new AssertionError("no debería guardarse");
+        });
+
+        assertTrue(saved.isEmpty());
+        verify(historyWriter, never()).submit(any());
+        assertEquals(false, version.record());
+    }
+}
@@ -0,0 +1,104 @@
+package com.life.master_api.services;
+
+import com.life.master_api.entities.Note;
+import com.life.master_api.entities.NoteHistory;
+import com.life.master_api.repositories.NoteHistoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Comprueba que quien lee o borra una entidad sólo espera a las versiones pendientes de esa
+ * entidad, no a todo lo que haya en la cola del escritor en segundo plano.
+ */
+class HistoryWriterTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private HistoryWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        NoteHistoryRepository noteHistoryRepository = mock(NoteHistoryRepository.class);
+        // el escritor se queda bloqueado con la primera versión hasta que el test lo suelta
+        when(noteHistoryRepository.lockNotes(any())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return List.of(); // la nota ya no existe: la versión se descarta
+        });
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        writer = new HistoryWriter(noteHistoryRepository, null, null, null, transactionManager, new SimpleMeterRegistry(),
+                20, Duration.ZERO, true, 100, 10, Duration.ofSeconds(1));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        writer.shutdown();
+    }
+
+    @Test
+    void otherEntitiesDoNotWaitForThePendingVersion() throws InterruptedException {
+        writer.submit(version(note(1L)));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        writer.awaitWritten(List.of(note(2L)));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) < 0);
+    }
+
+    @Test
+    void sameEntityWaitsUntilItsVersionIsWritten() throws InterruptedException {
+        writer.submit(version(note(1L)));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+        long start = System.nanoTime();
+        releaser.start();
+        writer.awaitWritten(List.of(note(1L)));
+        long waited = System.nanoTime() - start;
+        releaser.join();
+
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(300), "esperó " + waited + " ns");
+        // ya escrita: no vuelve a esperar
+        long again = System.nanoTime();
+        writer.awaitWritten(List.of(note(1L)));
+        assertTrue(Duration.ofNanos(System.nanoTime() - again).compareTo(Duration.ofSeconds(1)) < 0);
+    }
+
+    private static Note note(Long id) {
+        Note note = new Note();
+        note.setId(id);
+        return note;
+    }
+
+    private static NoteHistory version(Note note) {
+        NoteHistory version = new NoteHistory();
+        version.setNote(note);
+        version.setNoteContent("texto");
+        version.setTimestamp(new Date());
+        return version;
+    }
+}
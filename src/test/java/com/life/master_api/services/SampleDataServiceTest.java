@@ -0,0 +1,76 @@
+package com.life.master_api.services;
+
+import com.life.master_api.entities.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Comprueba que {@link SampleDataService#createSampleDataForUser} instancia la plantilla
+ * completa (entidades y relaciones) para cada usuario, sin mezclar los datos de uno con otro.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(SampleDataService.class)
+class SampleDataServiceTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SampleDataService sampleDataService;
+
+    @Test
+    void seedsTheWholeTemplateForEachUser() {
+        User first = persistUser("seed-first");
+        User second = persistUser("seed-second");
+
+        sampleDataService.createSampleDataForUser(first);
+        sampleDataService.createSampleDataForUser(second);
+
+        SampleDataTemplate template = sampleDataService.getTemplate();
+        for (User user : List.of(first, second)) {
+            Long userId = user.getId();
+            assertEquals(template.categories().size(), count("select count(*) from categories where user_id = ?", userId));
+            assertEquals(template.tasks().size(), count("select count(*) from task where user_id = ?", userId));
+            assertEquals(template.notes().size(), count("select count(*) from notes where user_id = ?", userId));
+            assertEquals(template.habits().size(), count("select count(*) from habits where user_id = ?", userId));
+            assertEquals(template.tasks().stream().mapToInt(task -> task.categories().size()).sum(),
+                    count("select count(*) from task_categories l join task t on t.id = l.task_id where t.user_id = ?", userId));
+            assertEquals(template.habits().stream().mapToInt(habit -> habit.tasks().size()).sum(),
+                    count("select count(*) from habit_tasks l join habits h on h.id = l.habit_id where h.user_id = ?", userId));
+            // las relaciones nunca cruzan usuarios
+            assertEquals(0, count("""
+                    select count(*) from note_categories l
+                    join notes n on n.id = l.note_id join categories c on c.id = l.category_id
+                    where n.user_id = ? and c.user_id <> n.user_id""", userId));
+        }
+    }
+
+    private User persistUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@masterapi.com");
+        user.setPassword("secret");
+        user.setCreatedAt(new Date());
+        User persisted = entityManager.persist(user);
+        entityManager.flush();
+        return persisted;
+    }
+
+    private int count(String sql, Long userId) {
+        return jdbcTemplate.queryForObject(sql, Integer.class, userId);
+    }
+}
@@ -0,0 +1,177 @@
+package com.life.master_api.services;
+
+import com.life.master_api.entities.NoteHistory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comprueba que {@link TextDelta} reconstruye exactamente el texto editado y que una cadena del
+ * historial (snapshot más deltas) se lee igual que se escribió, también al llegar a
+ * {@code history.snapshot-interval}.
+ */
+class TextDeltaTest {
+
+    private static final int SNAPSHOT_INTERVAL = 3;
+
+    private static final String PARAGRAPH = "Lista de la compra: leche, pan, huevos y café para toda la semana.\n";
+
+    @Test
+    void roundTripsTypicalEdits() {
+        String base = PARAGRAPH.repeat(20);
+        List<String> targets = List.of(
+                base,
+                base + "Y fruta.",
+                "Título\n" + base,
+                base.replace("pan", "pan integral"),
+                base.substring(0, base.length() / 2),
+                // un párrafo movido al principio
+                base.substring(PARAGRAPH.length() * 10, PARAGRAPH.length() * 11) + base,
+                "otro texto que no tiene nada que ver");
+        for (String target : targets) {
+            assertEquals(target, TextDelta.apply(base, TextDelta.diff(base, target)));
+        }
+    }
+
+    @Test
+    void deltaOfAnEditIsSmallerThanTheText() {
+        String base = PARAGRAPH.repeat(200);
+        int middle = base.length() / 2;
+        String target = base.substring(0, middle) + "una línea añadida en medio\n" + base.substring(middle);
+        String delta = TextDelta.diff(base, target);
+        assertTrue(delta.length() < target.length() / 10, "delta de " + delta.length() + " caracteres");
+        assertEquals(target, TextDelta.apply(base, delta));
+    }
+
+    @Test
+    void roundTripsEmptyTexts() {
+        assertEquals("", TextDelta.apply("", TextDelta.diff("", "")));
+        assertEquals(PARAGRAPH, TextDelta.apply("", TextDelta.diff("", PARAGRAPH)));
+        assertEquals("", TextDelta.apply(PARAGRAPH, TextDelta.diff(PARAGRAPH, "")));
+    }
+
+    @Test
+    void roundTripsMultiByteAndEmojiText() {
+        String base = "Ñandú, café y pingüino 😀 — 日本語のメモ 👨‍👩‍👧 fin";
+        List<String> targets = List.of(
+                base.replace("😀", "😁"), // mismo surrogate alto: el prefijo común no puede partir el par
+                base.replace("👨‍👩‍👧", "👨‍👩‍👧‍👦"),
+                "🎉" + base + "🎉",
+                base.replace("日本語", "한국어"),
+                base.replace("😀 ", ""));
+        for (String target : targets) {
+            String delta = TextDelta.diff(base, target);
+            // el delta se guarda como texto: no puede llevar surrogates sueltos
+            assertEquals(delta, new String(delta.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+            assertEquals(target, TextDelta.apply(base, delta));
+        }
+    }
+
+    @Test
+    void roundTripsRandomEdits() {
+        Random random = new Random(42);
+        String alphabet = "abc de\nñ😀€";
+        for (int i = 0; i < 500; i++) {
+            String base = randomText(random, alphabet, random.nextInt(200));
+            String target = randomText(random, alphabet, random.nextInt(200));
+            if (random.nextBoolean()) {
+                // la mayoría de las ediciones tocan un solo sitio de un texto que ya existe
+                int cut = base.offsetByCodePoints(0, random.nextInt(base.codePointCount(0, base.length()) + 1));
+                target = base.substring(0, cut) + target + base.substring(cut);
+            }
+            assertEquals(target, TextDelta.apply(base, TextDelta.diff(base, target)));
+        }
+    }
+
+    @Test
+    void rejectsMalformedDeltas() {
+        assertThrows(IllegalArgumentException.class, () -> TextDelta.apply("abc", "x1:a"));
+        assertThrows(IllegalArgumentException.class, () -> TextDelta.apply("abc", "c0,10;"));
+        assertThrows(IllegalArgumentException.class, () -> TextDelta.apply("abc", "i5:ab"));
+    }
+
+    @Test
+    void chainStartsANewSnapshotAtTheInterval() {
+        HistoryWriter writer = historyWriter();
+        List<NoteHistory> chain = new ArrayList<>();
+        List<NoteHistory> all = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        String text = PARAGRAPH.repeat(10);
+        for (int i = 0; i < 2 * SNAPSHOT_INTERVAL + 1; i++) {
+            text = text + "Edición " + i + ".\n";
+            texts.add(text);
+            all.add(append(writer, chain, i, text));
+        }
+
+        for (int i = 0; i < all.size(); i++) {
+            NoteHistory version = all.get(i);
+            assertEquals(i + 1, version.getVersionId());
+            if (i % SNAPSHOT_INTERVAL == 0) {
+                assertEquals(texts.get(i), version.getTextSnapshot(), "versión " + (i + 1));
+                assertNull(version.getTextDelta());
+            } else {
+                assertNull(version.getTextSnapshot(), "versión " + (i + 1));
+                assertNotNull(version.getTextDelta());
+            }
+            // se lee como EntityHistoryService: desde el principio, reiniciando en cada snapshot
+            assertEquals(texts.get(i), EntityHistoryService.text(all.subList(0, i + 1)));
+        }
+        assertEquals(1, chain.size());
+    }
+
+    @Test
+    void nullTextIsStoredAsSnapshot() {
+        HistoryWriter writer = historyWriter();
+        List<NoteHistory> chain = new ArrayList<>();
+        List<String> texts = Arrays.asList(PARAGRAPH, null, PARAGRAPH + "otra", PARAGRAPH + "otra más");
+        List<NoteHistory> all = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            all.add(append(writer, chain, i, texts.get(i)));
+        }
+
+        NoteHistory cleared = all.get(1);
+        assertNull(cleared.getTextSnapshot());
+        assertNull(cleared.getTextDelta());
+        // tras un texto vacío no hay base para un delta
+        assertEquals(PARAGRAPH + "otra", all.get(2).getTextSnapshot());
+        assertNotNull(all.get(3).getTextDelta());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(texts.get(i), EntityHistoryService.text(all.subList(0, i + 1)));
+        }
+    }
+
+    private static HistoryWriter historyWriter() {
+        // sin escritura en segundo plano ni agrupación: sólo se usa la construcción de la cadena
+        return new HistoryWriter(null, null, null, null, null, new SimpleMeterRegistry(),
+                SNAPSHOT_INTERVAL, Duration.ZERO, false, 1, 1, Duration.ZERO);
+    }
+
+    private static NoteHistory append(HistoryWriter writer, List<NoteHistory> chain, int minute, String text) {
+        NoteHistory version = new NoteHistory();
+        version.setTimestamp(new Date(Duration.ofMinutes(minute).toMillis()));
+        assertTrue(writer.append("note", chain, version, text));
+        return version;
+    }
+
+    private static String randomText(Random random, String alphabet, int codePoints) {
+        int[] available = alphabet.codePoints().toArray();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < codePoints; i++) {
+            text.appendCodePoint(available[random.nextInt(available.length)]);
+        }
+        return text.toString();
+    }
+}
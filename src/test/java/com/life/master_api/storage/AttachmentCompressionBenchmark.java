@@ -0,0 +1,82 @@
+package com.life.master_api.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Coste de CPU y ratio de la compresión de adjuntos sobre {@link AttachmentCorpus}. No forma
+ * parte de la suite (las comprobaciones están en {@link AttachmentCompressionTest}); se lanza
+ * a mano al cambiar el nivel o el códec:
+ * <pre>
+ * mvn test -Dtest=AttachmentCompressionBenchmark -Dbenchmark=true
+ * </pre>
+ * En producción los medidores {@code attachments.compression*} dan el tiempo y el ratio reales.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AttachmentCompressionBenchmark {
+
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 10;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void reportsRatioAndCpuTime() throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        FileSystemBlobStore store = new FileSystemBlobStore(tempDir.resolve("blobs").toString());
+
+        System.out.printf("%-6s %10s %8s %14s %14s%n", "corpus", "bytes", "ratio", "deflate cpu/MB", "inflate cpu/MB");
+        for (int level : new int[]{1, 6, 9}) {
+            AttachmentCompression compression = new AttachmentCompression(true, DataSize.ofKilobytes(4),
+                    new String[]{"text/*", "application/json"}, level, 1.0, new SimpleMeterRegistry());
+            System.out.printf("nivel %d%n", level);
+            for (Map.Entry<String, byte[]> entry : AttachmentCorpus.all().entrySet()) {
+                byte[] original = entry.getValue();
+                long storedSize = 0;
+                String key = null;
+                long deflateCpu = 0;
+                for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+                    try (StagedContent raw = StagedContent.stage(new ByteArrayInputStream(original), tempDir.resolve("staging"))) {
+                        long cpu = threads.getCurrentThreadCpuTime();
+                        StagedContent compressed = compression.compress(raw);
+                        if (i >= WARMUP) {
+                            deflateCpu += threads.getCurrentThreadCpuTime() - cpu;
+                        }
+                        try (compressed) {
+                            storedSize = compressed.size();
+                            key = compressed.sha256();
+                            store.put(key, compressed.path());
+                        }
+                    }
+                }
+
+                long inflateCpu = 0;
+                for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+                    long cpu = threads.getCurrentThreadCpuTime();
+                    compression.transferDecoded(store, key, AttachmentCompression.DEFLATE, 0, original.length,
+                            OutputStream.nullOutputStream());
+                    if (i >= WARMUP) {
+                        inflateCpu += threads.getCurrentThreadCpuTime() - cpu;
+                    }
+                }
+
+                double megabytes = original.length / (1024.0 * 1024.0);
+                System.out.printf("%-6s %10d %7.1fx %11.1f ms %11.1f ms%n", entry.getKey(), original.length,
+                        (double) original.length / storedSize,
+                        deflateCpu / 1e6 / ITERATIONS / megabytes,
+                        inflateCpu / 1e6 / ITERATIONS / megabytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.life.master_api.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comprueba el códec de adjuntos y que comprime bien un corpus representativo (CSV, JSON,
+ * logs y texto de notas).
+ */
+class AttachmentCompressionTest {
+
+    @TempDir
+    Path tempDir;
+
+    private AttachmentCompression compression;
+    private FileSystemBlobStore store;
+
+    @BeforeEach
+    void setUp() {
+        compression = new AttachmentCompression(true, DataSize.ofKilobytes(4),
+                new String[]{"text/*", "application/json"}, 6, 0.9, new SimpleMeterRegistry());
+        store = new FileSystemBlobStore(tempDir.resolve("blobs").toString());
+    }
+
+    @Test
+    void selectsByContentTypeAndSize() {
+        assertTrue(compression.appliesTo("text/csv", 10_000));
+        assertTrue(compression.appliesTo("application/json; charset=UTF-8", 10_000));
+        assertFalse(compression.appliesTo("text/plain", 100));
+        assertFalse(compression.appliesTo("image/png", 10_000));
+        assertFalse(compression.appliesTo("not a type", 10_000));
+    }
+
+    @Test
+    void compressesRepresentativeCorpusAndRestoresIt() throws Exception {
+        for (Map.Entry<String, byte[]> entry : AttachmentCorpus.all().entrySet()) {
+            byte[] original = entry.getValue();
+            try (StagedContent raw = stage(original)) {
+                StagedContent compressed = compression.compress(raw);
+                assertNotNull(compressed, entry.getKey() + " should be worth compressing");
+
+                long storedSize = compressed.size();
+                String key = compressed.sha256();
+                try (compressed) {
+                    store.put(key, compressed.path());
+                }
+
+                assertArrayEquals(original, read(key, 0, original.length));
+
+                double ratio = (double) original.length / storedSize;
+                assertTrue(ratio > 3, entry.getKey() + " compressed only " + ratio + "x");
+            }
+        }
+    }
+
+    @Test
+    void servesRangesOfDecompressedContent() throws Exception {
+        byte[] original = AttachmentCorpus.log();
+        String key;
+        try (StagedContent raw = stage(original); StagedContent compressed = compression.compress(raw)) {
+            key = compressed.sha256();
+            store.put(key, compressed.path());
+        }
+
+        assertArrayEquals(Arrays.copyOfRange(original, 0, 100), read(key, 0, 100));
+        assertArrayEquals(Arrays.copyOfRange(original, 1_000_000, 1_065_536), read(key, 1_000_000, 65_536));
+        assertArrayEquals(Arrays.copyOfRange(original, original.length - 10, original.length),
+                read(key, original.length - 10, 10));
+    }
+
+    @Test
+    void keepsIncompressibleContentRaw() throws Exception {
+        byte[] random = new byte[256 * 1024];
+        new Random(42).nextBytes(random);
+        try (StagedContent raw = stage(random)) {
+            assertNull(compression.compress(raw));
+        }
+    }
+
+    private StagedContent stage(byte[] content) throws Exception {
+        return StagedContent.stage(new ByteArrayInputStream(content), tempDir.resolve("staging"));
+    }
+
+    private byte[] read(String key, long position, long count) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        compression.transferDecoded(store, key, AttachmentCompression.DEFLATE, position, count, out);
+        return out.toByteArray();
+    }
+}
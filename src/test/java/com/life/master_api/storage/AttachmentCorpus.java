@@ -0,0 +1,82 @@
+package com.life.master_api.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Corpus representativo de adjuntos de texto (CSV, JSON, logs y notas) de unos 2 MB cada uno,
+ * generado con semillas fijas para que los resultados sean comparables entre ejecuciones.
+ */
+final class AttachmentCorpus {
+
+    static final int CORPUS_SIZE = 2 * 1024 * 1024;
+
+    private AttachmentCorpus() {
+    }
+
+    static Map<String, byte[]> all() {
+        Map<String, byte[]> corpus = new LinkedHashMap<>();
+        corpus.put("csv", csv());
+        corpus.put("json", json());
+        corpus.put("log", log());
+        corpus.put("notes", notes());
+        return corpus;
+    }
+
+    static byte[] csv() {
+        Random random = new Random(1);
+        StringBuilder sb = new StringBuilder("id,date,category,amount,description\n");
+        for (int i = 1; sb.length() < CORPUS_SIZE; i++) {
+            sb.append(i).append(",2024-").append(1 + random.nextInt(12)).append('-').append(1 + random.nextInt(28))
+                    .append(',').append(pick(random, "groceries", "rent", "transport", "health", "leisure"))
+                    .append(',').append(random.nextInt(100_000) / 100.0)
+                    .append(",\"").append(pick(random, "weekly shopping", "monthly payment", "bus pass", "gym"))
+                    .append("\"\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] json() {
+        Random random = new Random(2);
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 1; sb.length() < CORPUS_SIZE; i++) {
+            sb.append(i > 1 ? "," : "").append("{\"id\":").append(i)
+                    .append(",\"title\":\"Task ").append(i).append("\",\"status\":\"")
+                    .append(pick(random, "TODO", "IN_PROGRESS", "DONE")).append("\",\"priority\":")
+                    .append(random.nextInt(5)).append(",\"categories\":[").append(random.nextInt(50))
+                    .append("],\"createdAt\":\"2024-05-").append(10 + random.nextInt(18)).append("T10:15:30Z\"}");
+        }
+        return sb.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] log() {
+        Random random = new Random(3);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < CORPUS_SIZE; i++) {
+            sb.append("2024-05-14T10:").append(10 + random.nextInt(50)).append(':').append(10 + random.nextInt(50))
+                    .append('.').append(random.nextInt(1000)).append(" ")
+                    .append(pick(random, " INFO", " WARN", "ERROR", "DEBUG")).append(" [http-nio-8080-exec-")
+                    .append(1 + random.nextInt(10)).append("] c.l.m.controllers.TaskController : ")
+                    .append(pick(random, "Fetched tasks for user ", "Updated task ", "Deleted note ", "Habit completed by "))
+                    .append(random.nextInt(10_000)).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] notes() {
+        Random random = new Random(4);
+        String[] words = ("hoy revisar la lista de tareas pendientes antes de la reunión con el equipo sobre el "
+                + "presupuesto del proyecto y preparar las notas para la presentación del viernes").split(" ");
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < CORPUS_SIZE) {
+            sb.append(words[random.nextInt(words.length)]).append(random.nextInt(12) == 0 ? ".\n" : " ");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String pick(Random random, String... values) {
+        return values[random.nextInt(values.length)];
+    }
+}